@@ -0,0 +1,139 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.benchmark;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.store.HeapTransactionStore;
+import com.anshul.store.OffHeapTransactionStore;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.TransactionStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of writers and readers sharing one {@link TransactionStore}.
+ * Store is cleared before every iteration and transactions are spread over
+ * the window, so population is whatever writers manage to add during the
+ * iteration. Writers burn writerBackoff tokens between transactions to
+ * model request handling, otherwise heap store grows faster than its
+ * readers can traverse it and an iteration never completes.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class ConcurrentStoreBenchmark {
+
+  private static final int SPREAD_IN_MILLI = 50000;
+
+  /**
+   * Value of transaction.store.type.
+   */
+  @Param({"heap", "bucket", "primitive", "offheap"})
+  private String storeType;
+
+  /**
+   * Blackhole.consumeCPU tokens spent by writer per transaction.
+   */
+  @Param({"1000"})
+  private long writerBackoff;
+
+  private TransactionStore transactionStore;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    switch (storeType) {
+      case "bucket":
+        transactionStore = new RingBufferTransactionStore();
+        break;
+      case "offheap":
+        transactionStore = new OffHeapTransactionStore();
+        break;
+      case "primitive":
+        transactionStore = new PrimitiveTransactionStore();
+        break;
+      default:
+        transactionStore = new HeapTransactionStore();
+    }
+    transactionStore.clearStore();
+  }
+
+  @Setup(Level.Iteration)
+  public void clear() {
+    transactionStore.clearStore();
+  }
+
+  @Benchmark
+  @Group("writeHeavy")
+  @GroupThreads(3)
+  public boolean writeHeavyAdd() {
+    return add();
+  }
+
+  @Benchmark
+  @Group("writeHeavy")
+  @GroupThreads(1)
+  public StatisticsResource writeHeavyGet() {
+    return transactionStore.getStatistics();
+  }
+
+  @Benchmark
+  @Group("readHeavy")
+  @GroupThreads(1)
+  public boolean readHeavyAdd() {
+    return add();
+  }
+
+  @Benchmark
+  @Group("readHeavy")
+  @GroupThreads(3)
+  public StatisticsResource readHeavyGet() {
+    return transactionStore.getStatistics();
+  }
+
+  private boolean add() {
+    Blackhole.consumeCPU(writerBackoff);
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long epochMilli = System.currentTimeMillis() - random.nextInt(SPREAD_IN_MILLI);
+    return transactionStore.addElement(random.nextInt(100000) / 100.0, epochMilli);
+  }
+}
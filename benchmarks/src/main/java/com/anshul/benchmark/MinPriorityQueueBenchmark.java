@@ -0,0 +1,166 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.benchmark;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.util.HeapNode;
+import com.anshul.util.MinPriorityQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded cost of {@link MinPriorityQueue#addElement},
+ * {@link MinPriorityQueue#getStatisticsFromHeap()} and
+ * {@link MinPriorityQueue#cleanStaleData(Instant)} for different window
+ * populations. Heap is static, so every state starts from an empty heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class MinPriorityQueueBenchmark {
+
+  private static final MinPriorityQueue<HeapNode> HEAP = MinPriorityQueue.heapNodeFactory;
+
+  /**
+   * Transactions are spread over the last few seconds so none of them
+   * leaves the 60 seconds window while an iteration runs.
+   */
+  private static final int SPREAD_IN_MILLI = 5000;
+
+  @State(Scope.Thread)
+  public static class AddState {
+
+    private HeapNode[] nodes;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      HEAP.clearHeap();
+      nodes = newNodes(1 << 16, Instant.now().toEpochMilli(), 0);
+      next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+      HEAP.clearHeap();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class PopulatedState {
+
+    @Param({"1000", "10000", "100000"})
+    private int population;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      HEAP.clearHeap();
+      for (HeapNode node : newNodes(population, Instant.now().toEpochMilli(), 0)) {
+        HEAP.addElement(node);
+      }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+      HEAP.clearHeap();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class StaleState {
+
+    @Param({"1000", "10000", "100000"})
+    private int population;
+
+    private HeapNode[] nodes;
+    private Instant threshold;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+      long currentMilli = Instant.now().toEpochMilli();
+      // half of the population is older than threshold
+      nodes = newNodes(population, currentMilli, 2 * SPREAD_IN_MILLI);
+      threshold = Instant.ofEpochMilli(currentMilli - SPREAD_IN_MILLI);
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() {
+      HEAP.clearHeap();
+      for (HeapNode node : nodes) {
+        HEAP.addElement(node);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      HEAP.clearHeap();
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public boolean addElement(AddState state) {
+    HeapNode[] nodes = state.nodes;
+    return HEAP.addElement(nodes[state.next++ & (nodes.length - 1)]);
+  }
+
+  @Benchmark
+  public StatisticsResource getStatisticsFromHeap(PopulatedState state) {
+    return HEAP.getStatisticsFromHeap();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 20)
+  public int cleanStaleData(StaleState state) {
+    return HEAP.cleanStaleData(state.threshold);
+  }
+
+  private static HeapNode[] newNodes(int count, long currentMilli, int spreadInMilli) {
+    Random random = new Random(42);
+    int spread = Math.max(spreadInMilli, SPREAD_IN_MILLI);
+    HeapNode[] nodes = new HeapNode[count];
+    for (int i = 0; i < count; i++) {
+      nodes[i] = new HeapNode(random.nextInt(100000) / 100.0, Instant.ofEpochMilli(currentMilli - random.nextInt(spread)));
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.benchmark;
+
+import com.anshul.exception.FutureDatedOrNonParsableFieldException;
+import com.anshul.exception.StaleTransactionException;
+import com.anshul.model.TransactionResource;
+import com.anshul.util.TransactionInputValidationUtil;
+import com.anshul.util.TransactionPayload;
+import com.anshul.util.TransactionPayloadParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a request body into a transaction, ObjectMapper based
+ * {@link TransactionInputValidationUtil#transformJSONToObject(String)}
+ * followed by {@link TransactionInputValidationUtil#validateInput} against
+ * byte level {@link TransactionPayloadParser}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformationBenchmark {
+
+  private static final int WORKLOAD_SIZE = 1024;
+
+  private final TransactionInputValidationUtil validationUtil = new TransactionInputValidationUtil();
+  private final TransactionPayloadParser payloadParser = new TransactionPayloadParser();
+  private String[] jsonWorkload;
+  private byte[][] byteWorkload;
+  private Instant currentUTC;
+  private Instant threshold;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(42);
+    jsonWorkload = new String[WORKLOAD_SIZE];
+    byteWorkload = new byte[WORKLOAD_SIZE][];
+    currentUTC = Instant.now();
+    threshold = currentUTC.minusMillis(60000);
+    for (int i = 0; i < WORKLOAD_SIZE; i++) {
+      String json = "{\"amount\":\"" + random.nextInt(100000) / 100.0 + "\",\"timestamp\":\""
+          + currentUTC.minusMillis(random.nextInt(59000)) + "\"}";
+      jsonWorkload[i] = json;
+      byteWorkload[i] = json.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  @Benchmark
+  public TransactionResource transformJSONToObject() throws IOException {
+    return validationUtil.transformJSONToObject(jsonWorkload[next++ & (WORKLOAD_SIZE - 1)]);
+  }
+
+  @Benchmark
+  public TransactionResource transformAndValidate() throws IOException, StaleTransactionException,
+      FutureDatedOrNonParsableFieldException {
+    TransactionResource transactionResource = validationUtil.transformJSONToObject(jsonWorkload[next++ & (WORKLOAD_SIZE - 1)]);
+    validationUtil.validateInput(transactionResource, currentUTC, threshold);
+    return transactionResource;
+  }
+
+  @Benchmark
+  public long parsePayload() {
+    TransactionPayload payload = payloadParser.payload();
+    if (!payloadParser.parse(byteWorkload[next++ & (WORKLOAD_SIZE - 1)], payload)) {
+      throw new IllegalStateException("workload is expected to take fast path");
+    }
+    return payload.resolveEpochMilli(0);
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.benchmark;
+
+import com.anshul.exception.FutureDatedOrNonParsableFieldException;
+import com.anshul.exception.StaleTransactionException;
+import com.anshul.model.TransactionResource;
+import com.anshul.model.TransactionStatus;
+import com.anshul.util.TransactionInputValidationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating a stale heavy workload when outcome is thrown
+ * (validateInput) versus returned (checkInput).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+  private static final int WORKLOAD_SIZE = 1024;
+
+  /**
+   * Percentage of transactions older than window.
+   */
+  @Param({"10", "90"})
+  private int stalePercentage;
+
+  private final TransactionInputValidationUtil validationUtil = new TransactionInputValidationUtil();
+  private TransactionResource[] workload;
+  private Instant currentUTC;
+  private Instant threshold;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(42);
+    workload = new TransactionResource[WORKLOAD_SIZE];
+    for (int i = 0; i < WORKLOAD_SIZE; i++) {
+      TransactionResource transactionResource = new TransactionResource();
+      transactionResource.setAmount(String.valueOf(random.nextInt(100000) / 100.0));
+      boolean stale = random.nextInt(100) < stalePercentage;
+      transactionResource.setTimestampOffset(stale ? -(60001 + random.nextInt(60000)) : -(1 + random.nextInt(59000)));
+      workload[i] = transactionResource;
+    }
+    currentUTC = Instant.now();
+    threshold = currentUTC.minusMillis(60000);
+  }
+
+  @Benchmark
+  public TransactionStatus exceptionValidation() {
+    TransactionResource transactionResource = workload[next++ & (WORKLOAD_SIZE - 1)];
+    try {
+      validationUtil.validateInput(transactionResource, currentUTC, threshold);
+      return TransactionStatus.ACCEPTED;
+    } catch (StaleTransactionException se) {
+      return TransactionStatus.STALE;
+    } catch (FutureDatedOrNonParsableFieldException fe) {
+      return TransactionStatus.UNPROCESSABLE;
+    }
+  }
+
+  @Benchmark
+  public TransactionStatus statusValidation() {
+    TransactionResource transactionResource = workload[next++ & (WORKLOAD_SIZE - 1)];
+    return validationUtil.checkInput(transactionResource, currentUTC, threshold);
+  }
+}
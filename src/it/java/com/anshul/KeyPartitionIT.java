@@ -0,0 +1,195 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.util.ConsistentHashRing;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Starts several application JVMs on localhost partitioning keyed
+ * statistics among each other, transactions are posted to every node.
+ */
+public class KeyPartitionIT {
+
+  private static final int NODES = 3;
+  private static final int KEYS = 60;
+  private static final long STARTUP_TIMEOUT_MILLIS = 120000;
+  private static final long FORWARD_TIMEOUT_MILLIS = 10000;
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final List<String> nodeUrls = new ArrayList<>();
+  private final List<Process> processes = new ArrayList<>();
+  private ConsistentHashRing ring;
+
+  @Before
+  public void startNodes() throws IOException, InterruptedException {
+    for (int i = 0; i < NODES; i++) {
+      nodeUrls.add("http://localhost:" + freePort());
+    }
+    String nodes = String.join(",", nodeUrls);
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    for (int i = 0; i < NODES; i++) {
+      File directory = temporaryFolder.newFolder("node-" + i);
+      ProcessBuilder processBuilder = new ProcessBuilder(java, "-Xmx256m",
+          "-cp", System.getProperty("java.class.path"), Application.class.getName(),
+          "--server.port=" + new URL(nodeUrls.get(i)).getPort(),
+          "--transaction.partition.nodes=" + nodes,
+          "--transaction.partition.self=" + nodeUrls.get(i))
+          .directory(directory)
+          .redirectErrorStream(true)
+          .redirectOutput(new File(directory, "node.log"));
+      processes.add(processBuilder.start());
+    }
+    ring = new ConsistentHashRing(nodeUrls, 128);
+    for (String nodeUrl : nodeUrls) {
+      awaitStarted(nodeUrl);
+    }
+  }
+
+  @After
+  public void stopNodes() throws InterruptedException {
+    for (Process process : processes) {
+      process.destroy();
+    }
+    for (Process process : processes) {
+      process.waitFor();
+    }
+  }
+
+  @Test
+  public void testKeyedStatisticsServedByOwnerFromEveryNode() throws IOException, InterruptedException {
+    for (int i = 0; i < KEYS; i++) {
+      assertEquals(201, postTransaction(nodeUrls.get(i % NODES), "merchant-" + i, "10"));
+      assertEquals(201, postTransaction(nodeUrls.get((i + 1) % NODES), "merchant-" + i, "20"));
+    }
+
+    for (int i = 0; i < KEYS; i++) {
+      String key = "merchant-" + i;
+      JsonNode statistics = awaitKeyCount(nodeUrls.get((i + 2) % NODES), key, 2);
+      assertEquals(key, "30.00", statistics.get("sum").asText());
+      // only owner holds key
+      for (String nodeUrl : nodeUrls) {
+        long expected = nodeUrl.equals(ring.ownerOf(key)) ? 2 : 0;
+        assertEquals(key + " at " + nodeUrl, expected,
+            get(nodeUrl + "/partition/statistics/" + key).get("count").asLong());
+      }
+    }
+  }
+
+  @Test
+  public void testKeysOfStoppedOwnerKeptByReceivingNode() throws IOException, InterruptedException {
+    String stoppedUrl = nodeUrls.get(NODES - 1);
+    processes.get(NODES - 1).destroy();
+    processes.get(NODES - 1).waitFor();
+    String receivingUrl = nodeUrls.get(0);
+
+    int posted = 0;
+    for (int i = 0; posted < 5; i++) {
+      String key = "merchant-" + i;
+      if (ring.ownerOf(key).equals(stoppedUrl)) {
+        assertEquals(201, postTransaction(receivingUrl, key, "10"));
+        awaitKeyCount(receivingUrl, key, 1);
+        posted++;
+      }
+    }
+  }
+
+  private JsonNode awaitKeyCount(String nodeUrl, String key, long count) throws IOException, InterruptedException {
+    long deadlineMilli = System.currentTimeMillis() + FORWARD_TIMEOUT_MILLIS;
+    JsonNode statistics = get(nodeUrl + "/statistics/" + key);
+    while (statistics.get("count").asLong() != count && System.currentTimeMillis() < deadlineMilli) {
+      Thread.sleep(50);
+      statistics = get(nodeUrl + "/statistics/" + key);
+    }
+    assertEquals(key + " at " + nodeUrl, count, statistics.get("count").asLong());
+    return statistics;
+  }
+
+  private static int postTransaction(String nodeUrl, String key, String amount) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(nodeUrl + "/transactions").openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setDoOutput(true);
+    String body = "{\"amount\":\"" + amount + "\",\"timestamp\":\"" + Instant.now().minusSeconds(1)
+        + "\",\"key\":\"" + key + "\"}";
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    int status = connection.getResponseCode();
+    connection.disconnect();
+    return status;
+  }
+
+  private static JsonNode get(String url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    try (InputStream input = connection.getInputStream()) {
+      return OBJECT_MAPPER.readTree(input);
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private static void awaitStarted(String nodeUrl) throws InterruptedException {
+    long deadlineMilli = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+    while (true) {
+      try {
+        get(nodeUrl + "/statistics");
+        return;
+      } catch (IOException e) {
+        if (System.currentTimeMillis() > deadlineMilli) {
+          throw new IllegalStateException(nodeUrl + " not started", e);
+        }
+        Thread.sleep(250);
+      }
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
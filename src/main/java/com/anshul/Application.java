@@ -7,7 +7,6 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 
 @SpringBootApplication(scanBasePackages = {"com.anshul"})
-//@EnableScheduling
 public class Application {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(Application.class);
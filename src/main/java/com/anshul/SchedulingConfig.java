@@ -0,0 +1,32 @@
+package com.anshul;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Background work runs on minimum priority threads, request threads always
+ * win the CPU over it. Pool holds one thread per scheduled task (store
+ * eviction, capacity sample, keyed statistics sweep, store snapshot and
+ * statistics stream tick), so a slow snapshot fsync never delays eviction,
+ * the capacity sample or the stream cadence. Add a thread along with a new
+ * scheduled task.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+  static final int SCHEDULED_TASKS = 5;
+
+  @Bean
+  public TaskScheduler taskScheduler() {
+    ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+    taskScheduler.setPoolSize(SCHEDULED_TASKS);
+    taskScheduler.setThreadPriority(Thread.MIN_PRIORITY);
+    taskScheduler.setThreadNamePrefix("background-");
+    taskScheduler.setDaemon(true);
+    return taskScheduler;
+  }
+}
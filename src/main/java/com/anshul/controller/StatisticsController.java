@@ -1,30 +1,151 @@
 package com.anshul.controller;
 
+import com.anshul.model.PartialStatisticsResource;
 import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.model.TopKeyResource;
+import com.anshul.service.IClusterStatisticsService;
+import com.anshul.service.IKeyPartitionService;
 import com.anshul.service.IStatisticsService;
+import com.anshul.service.IStatisticsStreamService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.ws.rs.Produces;
+import java.util.List;
 
 @Controller
 public class StatisticsController {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsController.class);
+  static final String SNAPSHOT_AGE_HEADER = "X-Statistics-Age-Millis";
 
   @Autowired
   private IStatisticsService statisticsService;
 
+  @Autowired
+  private IStatisticsStreamService statisticsStreamService;
+
+  @Autowired
+  private IClusterStatisticsService clusterStatisticsService;
+
+  @Autowired
+  private IKeyPartitionService keyPartitionService;
+
   @Produces("application/json")
   @RequestMapping(value = "/statistics", method = RequestMethod.GET)
-  public ResponseEntity<StatisticsResource> getStatistics() {
+  public ResponseEntity<StatisticsResource> getStatistics(@RequestParam(value = "window", required = false) String window) {
     LOGGER.debug("========= Inside getStatistics() ============");
-    return new ResponseEntity<>(statisticsService.getStatistics(), HttpStatus.OK);
+    StatisticsSnapshot statisticsSnapshot;
+    try {
+      statisticsSnapshot = clusterStatisticsService.isAggregator()
+          ? clusterStatisticsService.getGlobalStatisticsSnapshot(window)
+          : statisticsService.getStatisticsSnapshot(window);
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("unknown statistics window {} ", window);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+    return toResponse(statisticsSnapshot);
+  }
+
+  @Produces("application/json")
+  @RequestMapping(value = "/statistics/{key:.+}", method = RequestMethod.GET)
+  public ResponseEntity<StatisticsResource> getKeyStatistics(@PathVariable("key") String key) {
+    LOGGER.debug("========= Inside getKeyStatistics() ============");
+    return toResponse(keyPartitionService.isEnabled()
+        ? keyPartitionService.getKeyStatisticsSnapshot(key)
+        : statisticsService.getKeyStatisticsSnapshot(key));
+  }
+
+  /**
+   * Partial aggregate of key held by this node, read by other nodes from
+   * owner of key and merged with what they kept themselves.
+   */
+  @Produces("application/json")
+  @RequestMapping(value = "/partition/statistics/{key:.+}", method = RequestMethod.GET)
+  public ResponseEntity<PartialStatisticsResource> getPartitionKeyStatistics(@PathVariable("key") String key) {
+    LOGGER.debug("========= Inside getPartitionKeyStatistics() ============");
+    return new ResponseEntity<>(keyPartitionService.getPartialKeyStatistics(key), HttpStatus.OK);
+  }
+
+  /**
+   * Partial aggregate of this node, merged by an aggregator node into
+   * statistics of the cluster.
+   */
+  @Produces("application/json")
+  @RequestMapping(value = "/partial/statistics", method = RequestMethod.GET)
+  public ResponseEntity<PartialStatisticsResource> getPartialStatistics(@RequestParam(value = "window", required = false) String window) {
+    LOGGER.debug("========= Inside getPartialStatistics() ============");
+    try {
+      return new ResponseEntity<>(clusterStatisticsService.getPartialStatistics(window), HttpStatus.OK);
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("unknown statistics window {} ", window);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @Produces("application/json")
+  @RequestMapping(value = "/top-keys", method = RequestMethod.GET)
+  public ResponseEntity<List<TopKeyResource>> getTopKeys(@RequestParam(value = "k", defaultValue = "20") int k) {
+    LOGGER.debug("========= Inside getTopKeys() ============");
+    try {
+      return new ResponseEntity<>(statisticsService.getTopKeys(k), HttpStatus.OK);
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("top keys k out of range {} ", k);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Statistics of a window ending at a past instant, e.g.
+   * /history/statistics?at=2024-05-01T14:03:12Z, window parameter as for
+   * /statistics but of any length. Recalculated from the transaction
+   * journal, answers 404 while journal is disabled.
+   */
+  @Produces("application/json")
+  @RequestMapping(value = "/history/statistics", method = RequestMethod.GET)
+  public ResponseEntity<StatisticsResource> getHistoricalStatistics(@RequestParam(value = "at") String at,
+                                                                    @RequestParam(value = "window", required = false) String window) {
+    LOGGER.debug("========= Inside getHistoricalStatistics() ============");
+    try {
+      return new ResponseEntity<>(statisticsService.getHistoricalStatistics(at, window), HttpStatus.OK);
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("malformed historical statistics request at {} window {} ", at, window);
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    } catch (IllegalStateException e) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+  }
+
+  /**
+   * Server-Sent Events stream of statistics of default window, one
+   * "statistics" event per tick. Answers 503 when max-subscribers are connected.
+   */
+  @RequestMapping(value = "/stream/statistics", method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamStatistics() {
+    LOGGER.debug("========= Inside streamStatistics() ============");
+    try {
+      return new ResponseEntity<>(statisticsStreamService.subscribe(), HttpStatus.OK);
+    } catch (IllegalStateException e) {
+      LOGGER.info("<<===== statistics stream refused {}", e.getMessage());
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  private static ResponseEntity<StatisticsResource> toResponse(StatisticsSnapshot statisticsSnapshot) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(SNAPSHOT_AGE_HEADER, String.valueOf(statisticsSnapshot.ageMillis(System.currentTimeMillis())));
+    return new ResponseEntity<>(statisticsSnapshot.getStatisticsResource(), headers, HttpStatus.OK);
   }
 }
@@ -22,14 +22,19 @@
  */
 package com.anshul.controller;
 
-import com.anshul.exception.FutureDatedOrNonParsableFieldException;
-import com.anshul.exception.StaleTransactionException;
+import com.anshul.exception.WriteAheadLogException;
+import com.anshul.model.KeyedTransactionBatchResource;
+import com.anshul.model.TransactionBatchResource;
+import com.anshul.model.TransactionStatus;
+import com.anshul.service.IKeyPartitionService;
 import com.anshul.service.ITransactionService;
+import com.anshul.store.StoreCapacityGovernor;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -37,6 +42,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
 
@@ -44,32 +50,107 @@ import javax.ws.rs.Produces;
 @Controller
 public class TransactionController {
   private static final Logger LOGGER = LoggerFactory.getLogger(TransactionController.class);
+  private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
 
 
   @Autowired
   private ITransactionService transactionService;
 
+  @Autowired
+  private StoreCapacityGovernor storeCapacityGovernor;
+
+  @Autowired
+  private IKeyPartitionService keyPartitionService;
+
   @Produces("application/json")
   @Consumes("application/json")
-  @RequestMapping(value = "/transactions", method = RequestMethod.OPTIONS)
-  public ResponseEntity<?> makeTransaction(@RequestBody String jsonData) {
+  @RequestMapping(value = "/transactions", method = RequestMethod.POST)
+  public ResponseEntity<?> makeTransaction(@RequestBody byte[] payload) {
     LOGGER.debug("========= Inside makeTransaction() ============");
+    TransactionStatus status;
+    try {
+      status = transactionService.makeTransaction(payload);
+    } catch (JsonMappingException | JsonParseException je) {
+      LOGGER.info("<<===== Caught JsonMappingException {}", je.getMessage());
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    } catch (WriteAheadLogException we) {
+      LOGGER.error("<<===== Caught WriteAheadLogException {}", we.getMessage());
+      return new ResponseEntity<>(null, HttpStatus.SERVICE_UNAVAILABLE);
+    } catch (Exception e) {
+      LOGGER.error("<<===== Caught Exception {}", e.getMessage());
+      return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+    switch (status) {
+      case STALE:
+        return new ResponseEntity<>(null, HttpStatus.NO_CONTENT);
+      case UNPROCESSABLE:
+        return new ResponseEntity<>(null, HttpStatus.UNPROCESSABLE_ENTITY);
+      case REJECTED:
+        return new ResponseEntity<>(null, retryAfterHeaders(), storeCapacityGovernor.getRejectStatus());
+      default:
+        return new ResponseEntity<>(HttpStatus.CREATED);
+    }
+  }
+
+  @Produces("application/json")
+  @Consumes("application/json")
+  @RequestMapping(value = "/transactions/batch", method = RequestMethod.POST)
+  public ResponseEntity<TransactionBatchResource> makeTransactions(@RequestBody String jsonData) {
+    LOGGER.debug("========= Inside makeTransactions() ============");
+    TransactionBatchResource result;
     try {
-      transactionService.makeTransaction(jsonData);
-    } catch (StaleTransactionException se) {
-      LOGGER.info("<<===== Caught StaleTransactionException {}", se.getMessage());
-      return new ResponseEntity<>(null, HttpStatus.NO_CONTENT);
-    } catch (FutureDatedOrNonParsableFieldException fe) {
-      LOGGER.info("<<===== Caught FutureDatedOrNonParsableFieldException {}", fe.getMessage());
-      return new ResponseEntity<>(null, HttpStatus.UNPROCESSABLE_ENTITY);
+      result = transactionService.makeTransactions(jsonData);
     } catch (JsonMappingException | JsonParseException je) {
       LOGGER.info("<<===== Caught JsonMappingException {}", je.getMessage());
       return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    } catch (WriteAheadLogException we) {
+      LOGGER.error("<<===== Caught WriteAheadLogException {}", we.getMessage());
+      return new ResponseEntity<>(null, HttpStatus.SERVICE_UNAVAILABLE);
+    } catch (Exception e) {
+      LOGGER.error("<<===== Caught Exception {}", e.getMessage());
+      return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+    return batchResponse(result, HttpStatus.OK);
+  }
+
+  /**
+   * Streaming ingest, body is newline delimited JSON transactions which
+   * is consumed incrementally. Answers 200 with count per outcome, or 400
+   * along with counts processed so far when stream holds malformed record.
+   */
+  @Produces("application/json")
+  @Consumes(NDJSON_MEDIA_TYPE)
+  @RequestMapping(value = "/transactions", method = RequestMethod.POST, consumes = NDJSON_MEDIA_TYPE)
+  public ResponseEntity<TransactionBatchResource> streamTransactions(HttpServletRequest request) {
+    LOGGER.debug("========= Inside streamTransactions() ============");
+    TransactionBatchResource result;
+    try {
+      result = transactionService.makeTransactions(request.getInputStream());
+    } catch (WriteAheadLogException we) {
+      LOGGER.error("<<===== Caught WriteAheadLogException {}", we.getMessage());
+      return new ResponseEntity<>(null, HttpStatus.SERVICE_UNAVAILABLE);
     } catch (Exception e) {
       LOGGER.error("<<===== Caught Exception {}", e.getMessage());
       return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
     }
-    return new ResponseEntity<>(HttpStatus.CREATED);
+    return batchResponse(result, result.isComplete() ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+  }
+
+  /**
+   * Batch of keyed transactions forwarded by the node which received them,
+   * added to per key statistics of this node only.
+   */
+  @Consumes("application/json")
+  @RequestMapping(value = "/partition/transactions", method = RequestMethod.POST)
+  public ResponseEntity<?> addForwardedTransactions(@RequestBody KeyedTransactionBatchResource batch) {
+    LOGGER.debug("========= Inside addForwardedTransactions() ============");
+    try {
+      keyPartitionService.addForwarded(batch);
+    } catch (IllegalArgumentException e) {
+      LOGGER.info("<<===== malformed forwarded batch {}", e.getMessage());
+      return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
   }
 
   @Produces("application/json")
@@ -85,4 +166,23 @@ public class TransactionController {
     }
     return new ResponseEntity<Object>(HttpStatus.NO_CONTENT);
   }
+
+  /**
+   * Batch holding rejected transactions carries Retry-After, when nothing
+   * of it was stored it is answered with reject status of governor.
+   */
+  private ResponseEntity<TransactionBatchResource> batchResponse(TransactionBatchResource result, HttpStatus status) {
+    if (result.getRejected() == 0) {
+      return new ResponseEntity<>(result, status);
+    }
+    HttpStatus rejectedStatus = result.getCreated() == 0 && status == HttpStatus.OK
+        ? storeCapacityGovernor.getRejectStatus() : status;
+    return new ResponseEntity<>(result, retryAfterHeaders(), rejectedStatus);
+  }
+
+  private HttpHeaders retryAfterHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(storeCapacityGovernor.getRetryAfterSeconds()));
+    return headers;
+  }
 }
@@ -0,0 +1,16 @@
+package com.anshul.exception;
+
+/**
+ * Thrown to a writer awaiting sync when its transactions could not be
+ * confirmed on disk, because the flush failed, the wait timed out or was
+ * interrupted.
+ */
+public class WriteAheadLogException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public WriteAheadLogException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+}
@@ -0,0 +1,59 @@
+package com.anshul.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Arrays;
+
+public class KeyedTransactionBatchResource {
+
+  @JsonProperty("keys")
+  private String[] keys;
+
+  @JsonProperty("amounts")
+  private double[] amounts;
+
+  @JsonProperty("epochMillis")
+  private long[] epochMillis;
+
+  public KeyedTransactionBatchResource() {
+  }
+
+  public KeyedTransactionBatchResource(String[] keys, double[] amounts, long[] epochMillis) {
+    this.keys = keys;
+    this.amounts = amounts;
+    this.epochMillis = epochMillis;
+  }
+
+  public String[] getKeys() {
+    return keys;
+  }
+
+  public void setKeys(String[] keys) {
+    this.keys = keys;
+  }
+
+  public double[] getAmounts() {
+    return amounts;
+  }
+
+  public void setAmounts(double[] amounts) {
+    this.amounts = amounts;
+  }
+
+  public long[] getEpochMillis() {
+    return epochMillis;
+  }
+
+  public void setEpochMillis(long[] epochMillis) {
+    this.epochMillis = epochMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "KeyedTransactionBatchResource{" +
+        "keys=" + Arrays.toString(keys) +
+        ", amounts=" + Arrays.toString(amounts) +
+        ", epochMillis=" + Arrays.toString(epochMillis) +
+        '}';
+  }
+}
@@ -0,0 +1,130 @@
+package com.anshul.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Arrays;
+
+public class PartialStatisticsResource {
+
+  @JsonProperty("count")
+  private long count;
+
+  @JsonProperty("sum")
+  private String sum;
+
+  @JsonProperty("min")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Double min;
+
+  @JsonProperty("max")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Double max;
+
+  @JsonProperty("bins")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private int[] bins;
+
+  @JsonProperty("binCounts")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private long[] binCounts;
+
+  @JsonProperty("momentCount")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Long momentCount;
+
+  @JsonProperty("mean")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Double mean;
+
+  @JsonProperty("m2")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Double m2;
+
+  public long getCount() {
+    return count;
+  }
+
+  public void setCount(long count) {
+    this.count = count;
+  }
+
+  public String getSum() {
+    return sum;
+  }
+
+  public void setSum(String sum) {
+    this.sum = sum;
+  }
+
+  public Double getMin() {
+    return min;
+  }
+
+  public void setMin(Double min) {
+    this.min = min;
+  }
+
+  public Double getMax() {
+    return max;
+  }
+
+  public void setMax(Double max) {
+    this.max = max;
+  }
+
+  public int[] getBins() {
+    return bins;
+  }
+
+  public void setBins(int[] bins) {
+    this.bins = bins;
+  }
+
+  public long[] getBinCounts() {
+    return binCounts;
+  }
+
+  public void setBinCounts(long[] binCounts) {
+    this.binCounts = binCounts;
+  }
+
+  public Long getMomentCount() {
+    return momentCount;
+  }
+
+  public void setMomentCount(Long momentCount) {
+    this.momentCount = momentCount;
+  }
+
+  public Double getMean() {
+    return mean;
+  }
+
+  public void setMean(Double mean) {
+    this.mean = mean;
+  }
+
+  public Double getM2() {
+    return m2;
+  }
+
+  public void setM2(Double m2) {
+    this.m2 = m2;
+  }
+
+  @Override
+  public String toString() {
+    return "PartialStatisticsResource{" +
+        "count=" + count +
+        ", sum='" + sum + '\'' +
+        ", min=" + min +
+        ", max=" + max +
+        ", bins=" + Arrays.toString(bins) +
+        ", binCounts=" + Arrays.toString(binCounts) +
+        ", momentCount=" + momentCount +
+        ", mean=" + mean +
+        ", m2=" + m2 +
+        '}';
+  }
+}
@@ -1,5 +1,6 @@
 package com.anshul.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class StatisticsResource {
@@ -19,6 +20,26 @@ public class StatisticsResource {
   @JsonProperty("count")
   private Long count;
 
+  @JsonProperty("p50")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String p50;
+
+  @JsonProperty("p95")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String p95;
+
+  @JsonProperty("p99")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String p99;
+
+  @JsonProperty("variance")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String variance;
+
+  @JsonProperty("stddev")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String stddev;
+
   public String getSum() {
     return sum;
   }
@@ -59,6 +80,46 @@ public class StatisticsResource {
     this.count = count;
   }
 
+  public String getP50() {
+    return p50;
+  }
+
+  public void setP50(String p50) {
+    this.p50 = p50;
+  }
+
+  public String getP95() {
+    return p95;
+  }
+
+  public void setP95(String p95) {
+    this.p95 = p95;
+  }
+
+  public String getP99() {
+    return p99;
+  }
+
+  public void setP99(String p99) {
+    this.p99 = p99;
+  }
+
+  public String getVariance() {
+    return variance;
+  }
+
+  public void setVariance(String variance) {
+    this.variance = variance;
+  }
+
+  public String getStddev() {
+    return stddev;
+  }
+
+  public void setStddev(String stddev) {
+    this.stddev = stddev;
+  }
+
   @Override
   public String toString() {
     return "StatisticsResource{" +
@@ -67,6 +128,11 @@ public class StatisticsResource {
         ", max=" + max +
         ", min=" + min +
         ", count=" + count +
+        ", p50=" + p50 +
+        ", p95=" + p95 +
+        ", p99=" + p99 +
+        ", variance=" + variance +
+        ", stddev=" + stddev +
         '}';
   }
 }
@@ -0,0 +1,50 @@
+package com.anshul.model;
+
+/**
+ * Immutable pairing of a published StatisticsResource with the time it was
+ * calculated. Resource is shared by all readers and must not be modified.
+ */
+public final class StatisticsSnapshot {
+
+  private final StatisticsResource statisticsResource;
+  private final long createdMilli;
+  private final long validUntilMilli;
+
+  public StatisticsSnapshot(StatisticsResource statisticsResource, long createdMilli, long validUntilMilli) {
+    this.statisticsResource = statisticsResource;
+    this.createdMilli = createdMilli;
+    this.validUntilMilli = validUntilMilli;
+  }
+
+  public StatisticsResource getStatisticsResource() {
+    return statisticsResource;
+  }
+
+  public long getCreatedMilli() {
+    return createdMilli;
+  }
+
+  /**
+   * @return epoch milli from which a transaction of snapshot has left window
+   */
+  public long getValidUntilMilli() {
+    return validUntilMilli;
+  }
+
+  /**
+   * @param currentMilli current time in epoch milliseconds
+   * @return milliseconds passed since snapshot was calculated
+   */
+  public long ageMillis(long currentMilli) {
+    return Math.max(0, currentMilli - createdMilli);
+  }
+
+  @Override
+  public String toString() {
+    return "StatisticsSnapshot{" +
+        "statisticsResource=" + statisticsResource +
+        ", createdMilli=" + createdMilli +
+        ", validUntilMilli=" + validUntilMilli +
+        '}';
+  }
+}
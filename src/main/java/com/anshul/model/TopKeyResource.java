@@ -0,0 +1,60 @@
+package com.anshul.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class TopKeyResource {
+
+  @JsonProperty("key")
+  private String key;
+
+  @JsonProperty("volume")
+  private String volume;
+
+  @JsonProperty("error")
+  private String error;
+
+  @JsonProperty("count")
+  private Long count;
+
+  public String getKey() {
+    return key;
+  }
+
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  public String getVolume() {
+    return volume;
+  }
+
+  public void setVolume(String volume) {
+    this.volume = volume;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  public Long getCount() {
+    return count;
+  }
+
+  public void setCount(Long count) {
+    this.count = count;
+  }
+
+  @Override
+  public String toString() {
+    return "TopKeyResource{" +
+        "key='" + key + '\'' +
+        ", volume='" + volume + '\'' +
+        ", error='" + error + '\'' +
+        ", count=" + count +
+        '}';
+  }
+}
@@ -0,0 +1,73 @@
+package com.anshul.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class TransactionBatchResource {
+
+  @JsonProperty("created")
+  private long created;
+
+  @JsonProperty("stale")
+  private long stale;
+
+  @JsonProperty("unprocessable")
+  private long unprocessable;
+
+  @JsonProperty("rejected")
+  private long rejected;
+
+  @JsonIgnore
+  private boolean complete = true;
+
+  public long getCreated() {
+    return created;
+  }
+
+  public void setCreated(long created) {
+    this.created = created;
+  }
+
+  public long getStale() {
+    return stale;
+  }
+
+  public void setStale(long stale) {
+    this.stale = stale;
+  }
+
+  public long getUnprocessable() {
+    return unprocessable;
+  }
+
+  public void setUnprocessable(long unprocessable) {
+    this.unprocessable = unprocessable;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  public void setRejected(long rejected) {
+    this.rejected = rejected;
+  }
+
+  public boolean isComplete() {
+    return complete;
+  }
+
+  public void setComplete(boolean complete) {
+    this.complete = complete;
+  }
+
+  @Override
+  public String toString() {
+    return "TransactionBatchResource{" +
+        "created=" + created +
+        ", stale=" + stale +
+        ", unprocessable=" + unprocessable +
+        ", rejected=" + rejected +
+        ", complete=" + complete +
+        '}';
+  }
+}
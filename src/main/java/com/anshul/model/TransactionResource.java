@@ -13,6 +13,9 @@ public class TransactionResource {
   @JsonProperty("_timestampOffset")
   private long timestampOffset;
 
+  @JsonProperty("key")
+  private String key;
+
   public String getAmount() {
     return amount;
   }
@@ -37,12 +40,21 @@ public class TransactionResource {
     this.timestampOffset = timestampOffset;
   }
 
+  public String getKey() {
+    return key;
+  }
+
+  public void setKey(String key) {
+    this.key = key;
+  }
+
   @Override
   public String toString() {
     return "TransactionResource{" +
         "amount='" + amount + '\'' +
         ", timestamp='" + timestamp + '\'' +
         ", timestampOffset=" + timestampOffset +
+        ", key='" + key + '\'' +
         '}';
   }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.anshul.model;
+
+/**
+ * Outcome of processing single transaction, mapped to HTTP status by
+ * controller. Expected outcomes are returned as values instead of being
+ * thrown, stale submissions are a large share of the traffic.
+ */
+public enum TransactionStatus {
+
+  /**
+   * Transaction is valid and stored.
+   */
+  ACCEPTED,
+
+  /**
+   * Transaction is older than statistics window.
+   */
+  STALE,
+
+  /**
+   * Transaction is future dated or holds non parsable field.
+   */
+  UNPROCESSABLE,
+
+  /**
+   * Transaction is valid but store is at capacity, client should retry later.
+   */
+  REJECTED
+}
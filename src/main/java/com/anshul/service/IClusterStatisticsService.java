@@ -0,0 +1,29 @@
+package com.anshul.service;
+
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+
+/**
+ * IClusterStatisticsService
+ */
+public interface IClusterStatisticsService {
+
+  /**
+   * @param window window such as 10s, null for default window
+   * @return partial aggregate of window over transactions of this node
+   * @throws IllegalArgumentException if window is malformed or not configured
+   */
+  PartialStatisticsResource getPartialStatistics(String window);
+
+  /**
+   * @return true if peers are configured and statistics merge their partial aggregates
+   */
+  boolean isAggregator();
+
+  /**
+   * @param window window such as 10s, null for default window
+   * @return StatisticsSnapshot of window over transactions of this node and every peer answering in time
+   * @throws IllegalArgumentException if window is malformed or not configured
+   */
+  StatisticsSnapshot getGlobalStatisticsSnapshot(String window);
+}
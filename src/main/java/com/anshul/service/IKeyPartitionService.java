@@ -0,0 +1,50 @@
+package com.anshul.service;
+
+import com.anshul.model.KeyedTransactionBatchResource;
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+
+/**
+ * IKeyPartitionService
+ */
+public interface IKeyPartitionService {
+
+  /**
+   * @return true if partition nodes are configured and keys are owned by one node each
+   */
+  boolean isEnabled();
+
+  /**
+   * @param key transaction key
+   * @return true if keyed statistics of key are kept by this node, always when partitioning is disabled
+   */
+  boolean isOwner(String key);
+
+  /**
+   * @param key        transaction key
+   * @param amount     transaction amount
+   * @param epochMilli transaction timestamp in epoch milliseconds
+   * @return true if queued for owner node, false if caller adds transaction to keyed statistics of this node
+   */
+  boolean forward(String key, double amount, long epochMilli);
+
+  /**
+   * @param batch keyed transactions forwarded by another node
+   * @return number of transactions added to keyed statistics of this node
+   * @throws IllegalArgumentException if arrays of batch differ in length
+   */
+  int addForwarded(KeyedTransactionBatchResource batch);
+
+  /**
+   * @param key transaction key
+   * @return StatisticsSnapshot of default window over transactions of key, answered by owner node
+   * merged with those this node kept while owner failed
+   */
+  StatisticsSnapshot getKeyStatisticsSnapshot(String key);
+
+  /**
+   * @param key transaction key
+   * @return partial aggregate of default window over transactions of key held by this node only
+   */
+  PartialStatisticsResource getPartialKeyStatistics(String key);
+}
@@ -1,6 +1,10 @@
 package com.anshul.service;
 
 import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.model.TopKeyResource;
+
+import java.util.List;
 
 /**
  * IStatisticsService
@@ -8,4 +12,35 @@ import com.anshul.model.StatisticsResource;
 public interface IStatisticsService {
 
   StatisticsResource getStatistics();
-}
\ No newline at end of file
+
+  StatisticsSnapshot getStatisticsSnapshot();
+
+  /**
+   * @param window window such as 10s, null for default window
+   * @return StatisticsSnapshot of window
+   * @throws IllegalArgumentException if window is malformed or not configured
+   */
+  StatisticsSnapshot getStatisticsSnapshot(String window);
+
+  /**
+   * @param key transaction key
+   * @return StatisticsSnapshot of default window over transactions of key
+   */
+  StatisticsSnapshot getKeyStatisticsSnapshot(String key);
+
+  /**
+   * @param k number of keys
+   * @return keys of highest volume in default window, descending
+   * @throws IllegalArgumentException if k is not within 1 and max-k
+   */
+  List<TopKeyResource> getTopKeys(int k);
+
+  /**
+   * @param at     end of window as ISO-8601 instant
+   * @param window window such as 10s, any length, null for default window
+   * @return StatisticsResource of window as it was at instant, recalculated from journal
+   * @throws IllegalArgumentException if instant or window is malformed
+   * @throws IllegalStateException    if journal is disabled
+   */
+  StatisticsResource getHistoricalStatistics(String at, String window);
+}
@@ -0,0 +1,15 @@
+package com.anshul.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * IStatisticsStreamService
+ */
+public interface IStatisticsStreamService {
+
+  /**
+   * @return emitter receiving statistics of default window every tick
+   * @throws IllegalStateException if max-subscribers are already connected
+   */
+  SseEmitter subscribe();
+}
@@ -1,9 +1,10 @@
 package com.anshul.service;
 
-import com.anshul.exception.FutureDatedOrNonParsableFieldException;
-import com.anshul.exception.StaleTransactionException;
+import com.anshul.model.TransactionBatchResource;
+import com.anshul.model.TransactionStatus;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * ITransactionService
@@ -11,7 +12,13 @@ import java.io.IOException;
  */
 public interface ITransactionService {
 
-  void makeTransaction(String jsonData) throws StaleTransactionException, FutureDatedOrNonParsableFieldException, IOException;
+  TransactionStatus makeTransaction(String jsonData) throws IOException;
 
-  void deleteTransaction();
+  TransactionStatus makeTransaction(byte[] payload) throws IOException;
+
+  TransactionBatchResource makeTransactions(String jsonData) throws IOException;
+
+  TransactionBatchResource makeTransactions(InputStream ndjsonStream) throws IOException;
+
+  void deleteTransaction() throws IOException;
 }
\ No newline at end of file
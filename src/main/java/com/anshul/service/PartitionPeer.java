@@ -0,0 +1,23 @@
+package com.anshul.service;
+
+import com.anshul.model.KeyedTransactionBatchResource;
+import com.anshul.model.PartialStatisticsResource;
+
+/**
+ * Another node of the cluster owning part of the transaction keys.
+ */
+public interface PartitionPeer {
+
+  /**
+   * @param batch keyed transactions owned by peer
+   * @throws RuntimeException if peer can not be reached or answers with an error
+   */
+  void forward(KeyedTransactionBatchResource batch);
+
+  /**
+   * @param key transaction key owned by peer
+   * @return partial aggregate of default window over transactions of key held by peer
+   * @throws RuntimeException if peer can not be reached or answers with an error
+   */
+  PartialStatisticsResource getKeyPartialStatistics(String key);
+}
@@ -0,0 +1,16 @@
+package com.anshul.service;
+
+import com.anshul.model.PartialStatisticsResource;
+
+/**
+ * Another node of the cluster exporting its partial window aggregate.
+ */
+public interface StatisticsPeer {
+
+  /**
+   * @param windowInMillis window length, configured on every node
+   * @return partial aggregate of the window ending now on peer
+   * @throws RuntimeException if peer can not be reached or answers with an error
+   */
+  PartialStatisticsResource getPartialStatistics(long windowInMillis);
+}
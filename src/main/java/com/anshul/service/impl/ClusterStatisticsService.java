@@ -0,0 +1,243 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.service.impl;
+
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.service.IClusterStatisticsService;
+import com.anshul.service.StatisticsPeer;
+import com.anshul.store.StatisticsAccumulator;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.TransactionStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Statistics across several nodes behind a load balancer, each holding
+ * transactions it received. Every node exports its partial aggregate of a
+ * window: count, exact sum, min, max and, when enabled, quantile bins and
+ * moments, which merge without loss into the aggregate of all nodes.
+ * <p>
+ * A node with transaction.cluster.peers is an aggregator: statistics merge
+ * its own partial aggregate with those of all peers, fetched in parallel.
+ * Peers not answering within fan-out-timeout-millis are left out, so
+ * statistics are answered in bounded time, and counted as
+ * transaction.cluster.peer.failures. Aggregated statistics of a window
+ * are reused for refresh-millis, requests arriving while they are being
+ * calculated wait for that calculation instead of fanning out again.
+ */
+@Service("clusterStatisticsService")
+public class ClusterStatisticsService implements IClusterStatisticsService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterStatisticsService.class);
+
+  private final TransactionStore transactionStore;
+  private final StatisticsWindows statisticsWindows;
+  private final List<StatisticsPeer> peers;
+  private final long fanOutTimeoutMillis;
+  private final long refreshNanos;
+  private final ConcurrentMap<Long, Aggregate> aggregates = new ConcurrentHashMap<>();
+  private final ExecutorService fanOut;
+  private final Counter peerFailureCounter;
+
+  @Autowired
+  public ClusterStatisticsService(TransactionStore transactionStore, StatisticsWindows statisticsWindows,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${transaction.cluster.peers:}") String[] peerUrls,
+                                  @Value("${transaction.cluster.fan-out-timeout-millis:200}") long fanOutTimeoutMillis,
+                                  @Value("${transaction.cluster.refresh-millis:100}") long refreshMillis) {
+    this(transactionStore, statisticsWindows, meterRegistry, httpPeers(peerUrls, fanOutTimeoutMillis), fanOutTimeoutMillis,
+        refreshMillis);
+  }
+
+  public ClusterStatisticsService(TransactionStore transactionStore, StatisticsWindows statisticsWindows,
+                                  MeterRegistry meterRegistry, List<StatisticsPeer> peers, long fanOutTimeoutMillis,
+                                  long refreshMillis) {
+    if (fanOutTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("fan-out-timeout-millis must be positive");
+    }
+    if (refreshMillis < 0) {
+      throw new IllegalArgumentException("refresh-millis must not be negative");
+    }
+    this.transactionStore = transactionStore;
+    this.statisticsWindows = statisticsWindows;
+    this.peers = peers;
+    this.fanOutTimeoutMillis = fanOutTimeoutMillis;
+    this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.fanOut = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "statistics-fan-out-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.peerFailureCounter = Counter.builder("transaction.cluster.peer.failures")
+        .description("peers left out of aggregated statistics, failed or not answering in time")
+        .register(meterRegistry);
+    if (!peers.isEmpty()) {
+      LOGGER.info("statistics aggregate peers {} within {} ms", peers, fanOutTimeoutMillis);
+    }
+  }
+
+  private static List<StatisticsPeer> httpPeers(String[] peerUrls, long timeoutMillis) {
+    List<StatisticsPeer> peers = new ArrayList<>();
+    for (String peerUrl : peerUrls) {
+      if (!peerUrl.trim().isEmpty()) {
+        peers.add(new HttpStatisticsPeer(peerUrl.trim(), timeoutMillis));
+      }
+    }
+    return peers;
+  }
+
+  /**
+   * Method helps export partial aggregate of this node.
+   *
+   * @param window window such as 10s, null for default window
+   * @return partial aggregate of window ending now
+   */
+  @Override
+  public PartialStatisticsResource getPartialStatistics(String window) {
+    LOGGER.debug("========= Inside ClusterStatisticsService getPartialStatistics() ============");
+    long windowInMillis = statisticsWindows.resolve(window);
+    return transactionStore.accumulate(System.currentTimeMillis(), windowInMillis).toPartialStatisticsResource();
+  }
+
+  @Override
+  public boolean isAggregator() {
+    return !peers.isEmpty();
+  }
+
+  /**
+   * Method helps merge partial aggregates of this node and every peer
+   * answering within fan-out-timeout-millis, or reuse those merged less
+   * than refresh-millis ago.
+   *
+   * @param window window such as 10s, null for default window
+   * @return StatisticsSnapshot calculated at most refresh-millis ago
+   */
+  @Override
+  public StatisticsSnapshot getGlobalStatisticsSnapshot(String window) {
+    LOGGER.debug("========= Inside ClusterStatisticsService getGlobalStatisticsSnapshot() ============");
+    long windowInMillis = statisticsWindows.resolve(window);
+    long nowNanos = System.nanoTime();
+    Aggregate aggregate = aggregates.compute(windowInMillis,
+        (key, current) -> current != null && !current.isExpired(nowNanos) ? current : new Aggregate(nowNanos));
+    if (aggregate.claim()) {
+      try {
+        aggregate.snapshot.complete(aggregate(windowInMillis));
+      } catch (RuntimeException e) {
+        aggregate.snapshot.completeExceptionally(e);
+      }
+    }
+    return aggregate.snapshot.join();
+  }
+
+  private StatisticsSnapshot aggregate(long windowInMillis) {
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fanOutTimeoutMillis);
+    List<Future<PartialStatisticsResource>> partials = new ArrayList<>(peers.size());
+    for (StatisticsPeer peer : peers) {
+      partials.add(fanOut.submit(() -> peer.getPartialStatistics(windowInMillis)));
+    }
+    long nowMilli = System.currentTimeMillis();
+    // local partial is merged while peers answer
+    StatisticsAccumulator accumulator = transactionStore.accumulate(nowMilli, windowInMillis);
+    for (int i = 0; i < partials.size(); i++) {
+      Future<PartialStatisticsResource> partial = partials.get(i);
+      try {
+        PartialStatisticsResource peerPartial = partial.get(Math.max(0, deadlineNanos - System.nanoTime()),
+            TimeUnit.NANOSECONDS);
+        if (peerPartial == null) {
+          peerFailed(peers.get(i), "empty answer");
+        } else {
+          accumulator.merge(peerPartial);
+        }
+      } catch (TimeoutException e) {
+        partial.cancel(true);
+        peerFailed(peers.get(i), "no answer within " + fanOutTimeoutMillis + " ms");
+      } catch (ExecutionException e) {
+        peerFailed(peers.get(i), String.valueOf(e.getCause()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    return new StatisticsSnapshot(accumulator.toStatisticsResource(), nowMilli,
+        nowMilli + TimeUnit.NANOSECONDS.toMillis(refreshNanos));
+  }
+
+  private void peerFailed(StatisticsPeer peer, String reason) {
+    peerFailureCounter.increment();
+    LOGGER.warn("<<===== peer {} left out of statistics {}", peer, reason);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    fanOut.shutdownNow();
+  }
+
+  /**
+   * Aggregated statistics of a window, calculated once by the request
+   * claiming it.
+   */
+  private final class Aggregate {
+
+    private final long startedNanos;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CompletableFuture<StatisticsSnapshot> snapshot = new CompletableFuture<>();
+
+    private Aggregate(long startedNanos) {
+      this.startedNanos = startedNanos;
+    }
+
+    private boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * A calculation in progress is never replaced, a failed one is
+     * replaced right away.
+     */
+    private boolean isExpired(long nowNanos) {
+      return snapshot.isDone() && (snapshot.isCompletedExceptionally() || nowNanos - startedNanos >= refreshNanos);
+    }
+  }
+}
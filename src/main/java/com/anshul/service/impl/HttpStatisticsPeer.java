@@ -0,0 +1,61 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.service.impl;
+
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.service.StatisticsPeer;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Peer reached over HTTP at GET /partial/statistics, connect and read are
+ * each bounded by timeoutMillis.
+ */
+public class HttpStatisticsPeer implements StatisticsPeer {
+
+  private final String baseUrl;
+  private final RestTemplate restTemplate;
+
+  /**
+   * @param baseUrl       peer url such as http://10.0.0.2:18082
+   * @param timeoutMillis connect and read timeout
+   */
+  public HttpStatisticsPeer(String baseUrl, long timeoutMillis) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout((int) timeoutMillis);
+    requestFactory.setReadTimeout((int) timeoutMillis);
+    this.restTemplate = new RestTemplate(requestFactory);
+  }
+
+  @Override
+  public PartialStatisticsResource getPartialStatistics(long windowInMillis) {
+    return restTemplate.getForObject(baseUrl + "/partial/statistics?window={window}", PartialStatisticsResource.class,
+        windowInMillis + "ms");
+  }
+
+  @Override
+  public String toString() {
+    return baseUrl;
+  }
+}
@@ -0,0 +1,377 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.service.impl;
+
+import com.anshul.model.KeyedTransactionBatchResource;
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.service.IKeyPartitionService;
+import com.anshul.service.PartitionPeer;
+import com.anshul.store.HeavyHitterTracker;
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.StatisticsAccumulator;
+import com.anshul.util.ConsistentHashRing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per key statistics partitioned across nodes, so memory of keyed
+ * statistics scales with the number of nodes. Every key is owned by one
+ * node of a consistent hash ring over transaction.partition.nodes, global
+ * statistics stay with the node receiving a transaction.
+ * <p>
+ * Keyed transactions owned by another node are queued per owner and
+ * posted in batches of at most batch-size, every flush-interval-millis or
+ * as soon as a batch is full, by one forwarding thread per owner. A node
+ * falls back to keeping a transaction in its own keyed statistics when
+ * owner queue holds max-pending transactions or owner fails to take the
+ * batch, counted as transaction.partition.fallbacks. Keyed statistics are
+ * the partial aggregate read from owner merged with the one this node kept
+ * by falling back.
+ * <p>
+ * Forwarding is at least once: a batch whose post times out after owner
+ * took it is kept by this node too and counted twice in keyed statistics
+ * of its keys. Forwarded transactions are not logged by owner, keyed
+ * statistics of another owner are lost when that owner restarts.
+ */
+@Service("keyPartitionService")
+public class KeyPartitionService implements IKeyPartitionService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KeyPartitionService.class);
+
+  private final KeyedStatisticsStore keyedStatisticsStore;
+  private final HeavyHitterTracker heavyHitterTracker;
+  private final String self;
+  private final ConsistentHashRing ring;
+  private final Map<String, Forwarder> forwarders;
+  private final int batchSize;
+  private final int maxPending;
+  private final Counter forwardedCounter;
+  private final Counter fallbackCounter;
+
+  @Autowired
+  public KeyPartitionService(KeyedStatisticsStore keyedStatisticsStore, HeavyHitterTracker heavyHitterTracker,
+                             MeterRegistry meterRegistry,
+                             @Value("${transaction.partition.nodes:}") String[] nodes,
+                             @Value("${transaction.partition.self:}") String self,
+                             @Value("${transaction.partition.virtual-nodes:128}") int virtualNodes,
+                             @Value("${transaction.partition.batch-size:512}") int batchSize,
+                             @Value("${transaction.partition.flush-interval-millis:20}") long flushIntervalMillis,
+                             @Value("${transaction.partition.max-pending:65536}") int maxPending,
+                             @Value("${transaction.partition.timeout-millis:1000}") long timeoutMillis) {
+    this(keyedStatisticsStore, heavyHitterTracker, meterRegistry, normalize(self), httpPeers(nodes, self, timeoutMillis),
+        virtualNodes, batchSize, flushIntervalMillis, maxPending);
+  }
+
+  /**
+   * @param self  name of this node on the ring, null disables partitioning
+   * @param peers every other node on the ring by name
+   */
+  public KeyPartitionService(KeyedStatisticsStore keyedStatisticsStore, HeavyHitterTracker heavyHitterTracker,
+                             MeterRegistry meterRegistry, String self, Map<String, PartitionPeer> peers,
+                             int virtualNodes, int batchSize, long flushIntervalMillis, int maxPending) {
+    if (batchSize <= 0 || flushIntervalMillis <= 0 || maxPending < batchSize) {
+      throw new IllegalArgumentException("batch-size and flush-interval-millis must be positive, max-pending at least batch-size");
+    }
+    this.keyedStatisticsStore = keyedStatisticsStore;
+    this.heavyHitterTracker = heavyHitterTracker;
+    this.batchSize = batchSize;
+    this.maxPending = maxPending;
+    this.forwardedCounter = Counter.builder("transaction.partition.forwarded")
+        .description("keyed transactions taken by owner node")
+        .register(meterRegistry);
+    this.fallbackCounter = Counter.builder("transaction.partition.fallbacks")
+        .description("keyed transactions of other owners kept by this node")
+        .register(meterRegistry);
+    if (self == null || self.isEmpty()) {
+      this.self = null;
+      this.ring = null;
+      this.forwarders = Collections.emptyMap();
+      return;
+    }
+    this.self = self;
+    List<String> nodes = new ArrayList<>(peers.keySet());
+    nodes.add(self);
+    this.ring = new ConsistentHashRing(nodes, virtualNodes);
+    Map<String, Forwarder> forwarders = new HashMap<>();
+    for (Map.Entry<String, PartitionPeer> peer : peers.entrySet()) {
+      forwarders.put(peer.getKey(), new Forwarder(peer.getKey(), peer.getValue(), flushIntervalMillis));
+    }
+    this.forwarders = forwarders;
+    LOGGER.info("keyed statistics partitioned by {} over {}", self, nodes);
+  }
+
+  private static Map<String, PartitionPeer> httpPeers(String[] nodes, String self, long timeoutMillis) {
+    Map<String, PartitionPeer> peers = new LinkedHashMap<>();
+    boolean selfListed = false;
+    for (String node : nodes) {
+      String name = normalize(node);
+      if (name.isEmpty()) {
+        continue;
+      }
+      if (name.equals(normalize(self))) {
+        selfListed = true;
+      } else {
+        peers.put(name, new HttpPartitionPeer(name, timeoutMillis));
+      }
+    }
+    if (!peers.isEmpty() && !selfListed) {
+      throw new IllegalArgumentException("transaction.partition.self must be one of transaction.partition.nodes");
+    }
+    return peers;
+  }
+
+  private static String normalize(String node) {
+    String name = node == null ? "" : node.trim();
+    return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return ring != null;
+  }
+
+  @Override
+  public boolean isOwner(String key) {
+    return ring == null || ring.ownerOf(key).equals(self);
+  }
+
+  /**
+   * Method helps queue keyed transaction for its owner node.
+   *
+   * @param key        transaction key
+   * @param amount     transaction amount
+   * @param epochMilli transaction timestamp in epoch milliseconds
+   * @return true if queued for owner node
+   */
+  @Override
+  public boolean forward(String key, double amount, long epochMilli) {
+    if (isOwner(key)) {
+      return false;
+    }
+    if (forwarders.get(ring.ownerOf(key)).offer(key, amount, epochMilli)) {
+      return true;
+    }
+    fallbackCounter.increment();
+    return false;
+  }
+
+  /**
+   * Method helps add keyed transactions forwarded by another node, they are
+   * kept by this node whether or not it owns the key, so batches never
+   * travel further.
+   *
+   * @param batch keyed transactions
+   * @return number of transactions added
+   */
+  @Override
+  public int addForwarded(KeyedTransactionBatchResource batch) {
+    String[] keys = batch.getKeys();
+    double[] amounts = batch.getAmounts();
+    long[] epochMillis = batch.getEpochMillis();
+    if (keys == null || amounts == null || epochMillis == null
+        || keys.length != amounts.length || keys.length != epochMillis.length) {
+      throw new IllegalArgumentException("keys, amounts and epochMillis must be of same length");
+    }
+    return addLocally(keys, amounts, epochMillis, keys.length);
+  }
+
+  /**
+   * Method helps read keyed statistics of owner node merged with those
+   * this node kept while owner failed, only those of this node when it owns
+   * the key or owner can not be reached.
+   *
+   * @param key transaction key
+   * @return StatisticsSnapshot of default window over transactions of key
+   */
+  @Override
+  public StatisticsSnapshot getKeyStatisticsSnapshot(String key) {
+    long currentMilli = System.currentTimeMillis();
+    String owner = ring == null ? null : ring.ownerOf(key);
+    if (owner == null || owner.equals(self)) {
+      return keyedStatisticsStore.getStatistics(key, currentMilli);
+    }
+    Forwarder forwarder = forwarders.get(owner);
+    StatisticsAccumulator accumulator = keyedStatisticsStore.accumulate(key, currentMilli);
+    try {
+      PartialStatisticsResource ownerPartial = forwarder.peer.getKeyPartialStatistics(key);
+      if (ownerPartial != null) {
+        accumulator.merge(ownerPartial);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("<<===== owner {} of key {} not answering, statistics of this node {}", forwarder.peer, key,
+          e.getMessage());
+    }
+    return new StatisticsSnapshot(accumulator.toStatisticsResource(), currentMilli, currentMilli);
+  }
+
+  /**
+   * Method helps export keyed statistics of this node, merged by the node
+   * answering statistics of key.
+   *
+   * @param key transaction key
+   * @return partial aggregate of default window over transactions of key held by this node
+   */
+  @Override
+  public PartialStatisticsResource getPartialKeyStatistics(String key) {
+    return keyedStatisticsStore.accumulate(key, System.currentTimeMillis()).toPartialStatisticsResource();
+  }
+
+  private int addLocally(String[] keys, double[] amounts, long[] epochMillis, int length) {
+    int added = 0;
+    for (int i = 0; i < length; i++) {
+      if (keys[i] != null && keyedStatisticsStore.addElement(keys[i], amounts[i], epochMillis[i])) {
+        heavyHitterTracker.add(keys[i], amounts[i], epochMillis[i]);
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Method helps post every queued transaction, waiting for owners to take
+   * them or fallback.
+   */
+  public void flush() {
+    for (Forwarder forwarder : forwarders.values()) {
+      try {
+        forwarder.executor.submit(forwarder::flush).get();
+      } catch (Exception e) {
+        LOGGER.warn("<<===== flush of keyed transactions for {} failed {}", forwarder.peer, e.getMessage());
+      }
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flush();
+    for (Forwarder forwarder : forwarders.values()) {
+      forwarder.executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Queue of one owner node. Producers append to pending arrays under the
+   * monitor, the single forwarding thread swaps them with its spare arrays
+   * and posts them outside of it.
+   */
+  private final class Forwarder {
+
+    private final PartitionPeer peer;
+    private final ScheduledExecutorService executor;
+    private String[] keys;
+    private double[] amounts;
+    private long[] epochMillis;
+    private int pending;
+    private boolean flushRequested;
+    // only touched by forwarding thread
+    private String[] spareKeys;
+    private double[] spareAmounts;
+    private long[] spareEpochMillis;
+
+    Forwarder(String node, PartitionPeer peer, long flushIntervalMillis) {
+      this.peer = peer;
+      this.keys = new String[maxPending];
+      this.amounts = new double[maxPending];
+      this.epochMillis = new long[maxPending];
+      this.spareKeys = new String[maxPending];
+      this.spareAmounts = new double[maxPending];
+      this.spareEpochMillis = new long[maxPending];
+      this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "partition-forwarder-" + node);
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized boolean offer(String key, double amount, long epochMilli) {
+      if (pending == maxPending) {
+        return false;
+      }
+      keys[pending] = key;
+      amounts[pending] = amount;
+      epochMillis[pending] = epochMilli;
+      pending++;
+      if (pending >= batchSize && !flushRequested) {
+        flushRequested = true;
+        executor.execute(this::flush);
+      }
+      return true;
+    }
+
+    void flush() {
+      int length;
+      synchronized (this) {
+        flushRequested = false;
+        if (pending == 0) {
+          return;
+        }
+        String[] swapKeys = keys;
+        double[] swapAmounts = amounts;
+        long[] swapEpochMillis = epochMillis;
+        keys = spareKeys;
+        amounts = spareAmounts;
+        epochMillis = spareEpochMillis;
+        spareKeys = swapKeys;
+        spareAmounts = swapAmounts;
+        spareEpochMillis = swapEpochMillis;
+        length = pending;
+        pending = 0;
+      }
+      for (int from = 0; from < length; from += batchSize) {
+        int to = Math.min(length, from + batchSize);
+        String[] batchKeys = Arrays.copyOfRange(spareKeys, from, to);
+        double[] batchAmounts = Arrays.copyOfRange(spareAmounts, from, to);
+        long[] batchEpochMillis = Arrays.copyOfRange(spareEpochMillis, from, to);
+        try {
+          peer.forward(new KeyedTransactionBatchResource(batchKeys, batchAmounts, batchEpochMillis));
+          forwardedCounter.increment(to - from);
+        } catch (RuntimeException e) {
+          LOGGER.warn("<<===== owner {} did not take {} keyed transactions, kept by this node {}", peer, to - from,
+              e.getMessage());
+          addLocally(batchKeys, batchAmounts, batchEpochMillis, to - from);
+          fallbackCounter.increment(to - from);
+        }
+      }
+      Arrays.fill(spareKeys, 0, length, null);
+    }
+  }
+}
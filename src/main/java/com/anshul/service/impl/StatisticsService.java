@@ -23,20 +23,49 @@
 package com.anshul.service.impl;
 
 import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.model.TopKeyResource;
 import com.anshul.service.IStatisticsService;
-import com.anshul.util.MinPriorityQueue;
+import com.anshul.store.HeavyHitterTracker;
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.StatisticsSnapshotCache;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.TransactionJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
 /**
- * Service to get statistical data calculation on last 60 sec transactions only.
+ * Service to get statistical data calculation on transactions of the
+ * configured windows, last 60 sec by default.
  */
 @Service("statisticsService")
 public class StatisticsService implements IStatisticsService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsService.class);
 
+  private final StatisticsSnapshotCache statisticsSnapshotCache;
+  private final StatisticsWindows statisticsWindows;
+  private final KeyedStatisticsStore keyedStatisticsStore;
+  private final HeavyHitterTracker heavyHitterTracker;
+  private final TransactionJournal transactionJournal;
+
+  @Autowired
+  public StatisticsService(StatisticsSnapshotCache statisticsSnapshotCache, StatisticsWindows statisticsWindows,
+                           KeyedStatisticsStore keyedStatisticsStore, HeavyHitterTracker heavyHitterTracker,
+                           TransactionJournal transactionJournal) {
+    this.statisticsSnapshotCache = statisticsSnapshotCache;
+    this.statisticsWindows = statisticsWindows;
+    this.keyedStatisticsStore = keyedStatisticsStore;
+    this.heavyHitterTracker = heavyHitterTracker;
+    this.transactionJournal = transactionJournal;
+  }
+
   /**
    * Method helps getting statistical data of last 60 seconds.
    *
@@ -45,6 +74,80 @@ public class StatisticsService implements IStatisticsService {
   @Override
   public StatisticsResource getStatistics() {
     LOGGER.debug("========= Inside StatisticsService getStatistics() ============");
-    return MinPriorityQueue.heapNodeFactory.getStatisticsFromHeap();
+    return getStatisticsSnapshot().getStatisticsResource();
+  }
+
+  /**
+   * Method helps getting statistical data of last 60 seconds along with
+   * time it was calculated at.
+   *
+   * @return StatisticsSnapshot published by StatisticsSnapshotCache
+   */
+  @Override
+  public StatisticsSnapshot getStatisticsSnapshot() {
+    return statisticsSnapshotCache.getSnapshot();
+  }
+
+  /**
+   * Method helps getting statistical data of one of the configured windows.
+   *
+   * @param window window such as 10s, null for default window
+   * @return StatisticsSnapshot published by StatisticsSnapshotCache
+   */
+  @Override
+  public StatisticsSnapshot getStatisticsSnapshot(String window) {
+    return statisticsSnapshotCache.getSnapshot(statisticsWindows.resolve(window));
+  }
+
+  /**
+   * Method helps getting statistical data of default window over
+   * transactions of one key, global statistics remain the rollup of all keys.
+   *
+   * @param key transaction key
+   * @return StatisticsSnapshot calculated by KeyedStatisticsStore
+   */
+  @Override
+  public StatisticsSnapshot getKeyStatisticsSnapshot(String key) {
+    LOGGER.debug("========= Inside StatisticsService getKeyStatisticsSnapshot() ============");
+    return keyedStatisticsStore.getStatistics(key, System.currentTimeMillis());
+  }
+
+  /**
+   * Method helps getting keys of highest transaction volume in default
+   * window, estimated by HeavyHitterTracker.
+   *
+   * @param k number of keys
+   * @return keys ordered by volume descending
+   */
+  @Override
+  public List<TopKeyResource> getTopKeys(int k) {
+    LOGGER.debug("========= Inside StatisticsService getTopKeys() ============");
+    return heavyHitterTracker.getTopKeys(k, System.currentTimeMillis());
+  }
+
+  /**
+   * Method helps getting statistical data of a window ending at a past
+   * instant, recalculated by TransactionJournal from transactions arrived
+   * by then.
+   *
+   * @param at     end of window as ISO-8601 instant
+   * @param window window such as 10s, null for default window
+   * @return StatisticsResource of window ending at instant
+   */
+  @Override
+  public StatisticsResource getHistoricalStatistics(String at, String window) {
+    LOGGER.debug("========= Inside StatisticsService getHistoricalStatistics() ============");
+    long atMilli;
+    try {
+      atMilli = Instant.parse(at).toEpochMilli();
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("malformed instant: " + at, e);
+    }
+    long windowInMillis = window == null ? statisticsWindows.getDefaultWindowInMillis()
+        : StatisticsWindows.parseDuration(window);
+    if (windowInMillis <= 0) {
+      throw new IllegalArgumentException("window must be positive: " + window);
+    }
+    return transactionJournal.getStatistics(atMilli, windowInMillis);
   }
 }
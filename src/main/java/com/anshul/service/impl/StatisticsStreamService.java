@@ -0,0 +1,324 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.service.impl;
+
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.service.IStatisticsService;
+import com.anshul.service.IStatisticsStreamService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes statistics of the default window to Server-Sent Events
+ * subscribers. Every tick statistics are taken and serialized once, the
+ * frame is then handed to all subscribers.
+ * <p>
+ * A subscriber holds at most one pending frame, a frame arriving before the
+ * previous one was written replaces it, so a slow consumer receives the
+ * latest statistics rather than a backlog. Frames are written by a small
+ * pool of sender threads, never by the tick. A frame replaced while the
+ * subscriber waits for a sender thread is not held against it, a
+ * subscriber which dropped max-dropped-frames frames in a row while its own
+ * write was in progress, or whose write takes longer than
+ * send-timeout-millis, is disconnected. The sender thread blocked in its
+ * write is interrupted and replaced in the pool, so stalled clients never
+ * starve the others. The emitter of a subscriber disconnected during its
+ * write is completed by its sender thread once the write returns, emitter
+ * holds its monitor for the whole write and the tick must not wait on it.
+ * <p>
+ * Publishes transaction.statistics.stream.subscribers and
+ * transaction.statistics.stream.dropped (frames replaced before being written).
+ */
+@Service("statisticsStreamService")
+public class StatisticsStreamService implements IStatisticsStreamService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsStreamService.class);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  static final String EVENT_NAME = "statistics";
+
+  private final IStatisticsService statisticsService;
+  private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+  private final ThreadPoolExecutor senders;
+  private final long timeoutMillis;
+  private final long sendTimeoutNanos;
+  private final int maxSubscribers;
+  private final int maxDroppedFrames;
+  private final Counter droppedCounter;
+  private long sequence;
+
+  @Autowired
+  public StatisticsStreamService(IStatisticsService statisticsService, MeterRegistry meterRegistry,
+                                 @Value("${transaction.statistics.stream.senders:2}") int senders,
+                                 @Value("${transaction.statistics.stream.timeout-millis:0}") long timeoutMillis,
+                                 @Value("${transaction.statistics.stream.max-subscribers:1000}") int maxSubscribers,
+                                 @Value("${transaction.statistics.stream.max-dropped-frames:10}") int maxDroppedFrames,
+                                 @Value("${transaction.statistics.stream.send-timeout-millis:10000}") long sendTimeoutMillis) {
+    this.statisticsService = statisticsService;
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.senders = new ThreadPoolExecutor(senders, senders, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "statistics-stream-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.timeoutMillis = timeoutMillis;
+    this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+    this.maxSubscribers = maxSubscribers;
+    this.maxDroppedFrames = maxDroppedFrames;
+    this.droppedCounter = Counter.builder("transaction.statistics.stream.dropped")
+        .description("statistics frames replaced by a newer one before slow subscriber received them")
+        .register(meterRegistry);
+    Gauge.builder("transaction.statistics.stream.subscribers", subscribers, List::size)
+        .description("connected statistics stream subscribers")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Method helps connect a new subscriber, it receives current statistics
+   * on next tick.
+   *
+   * @return emitter completed once subscriber is disconnected
+   */
+  @Override
+  public SseEmitter subscribe() {
+    LOGGER.debug("========= Inside StatisticsStreamService subscribe() ============");
+    // 0 leaves connection open until client or server closes it
+    SseEmitter emitter = new SseEmitter(timeoutMillis);
+    subscribe(emitter);
+    return emitter;
+  }
+
+  /**
+   * Method helps register an emitter as subscriber.
+   *
+   * @param emitter emitter of subscriber
+   */
+  public void subscribe(SseEmitter emitter) {
+    if (subscribers.size() >= maxSubscribers) {
+      throw new IllegalStateException("statistics stream is at " + maxSubscribers + " subscribers");
+    }
+    Subscriber subscriber = new Subscriber(emitter);
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onTimeout(() -> subscribers.remove(subscriber));
+    emitter.onError(error -> subscribers.remove(subscriber));
+    subscribers.add(subscriber);
+  }
+
+  /**
+   * Scheduled tick, see transaction.statistics.stream.interval-millis.
+   *
+   * @return number of subscribers frame was handed to
+   */
+  @Scheduled(fixedRateString = "${transaction.statistics.stream.interval-millis:1000}")
+  public int publish() {
+    if (subscribers.isEmpty()) {
+      return 0;
+    }
+    StatisticsSnapshot statisticsSnapshot = statisticsService.getStatisticsSnapshot();
+    String data;
+    try {
+      data = OBJECT_MAPPER.writeValueAsString(statisticsSnapshot.getStatisticsResource());
+    } catch (JsonProcessingException e) {
+      LOGGER.error("<<===== statistics frame not serializable {}", e.getMessage());
+      return 0;
+    }
+    Frame frame = new Frame(++sequence, data);
+    long now = System.nanoTime();
+    int handed = 0;
+    for (Subscriber subscriber : subscribers) {
+      if (subscriber.isWriteOverdue(now)) {
+        LOGGER.info("disconnecting statistics subscriber whose write exceeded send timeout");
+        subscriber.disconnect();
+        continue;
+      }
+      subscriber.offer(frame);
+      handed++;
+    }
+    return handed;
+  }
+
+  /**
+   * @return number of connected subscribers
+   */
+  public int getSubscriberCount() {
+    return subscribers.size();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    senders.shutdownNow();
+    for (Subscriber subscriber : subscribers) {
+      subscriber.emitter.complete();
+    }
+  }
+
+  /**
+   * Adds a sender thread in place of one left blocked in the write of a
+   * disconnected subscriber, or removes it once that write returned.
+   */
+  private synchronized void resizeSenders(int delta) {
+    int size = senders.getCorePoolSize() + delta;
+    if (delta > 0) {
+      senders.setMaximumPoolSize(size);
+      senders.setCorePoolSize(size);
+    } else {
+      senders.setCorePoolSize(size);
+      senders.setMaximumPoolSize(size);
+    }
+  }
+
+  private static final class Frame {
+
+    private final long id;
+    private final String data;
+
+    private Frame(long id, String data) {
+      this.id = id;
+      this.data = data;
+    }
+  }
+
+  private final class Subscriber implements Runnable {
+
+    private static final int IDLE = 0;
+    private static final int WRITING = 1;
+    private static final int ABANDONED = 2;
+
+    private final SseEmitter emitter;
+    private final AtomicReference<Frame> pending = new AtomicReference<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicInteger droppedInRow = new AtomicInteger();
+    private final AtomicInteger writeState = new AtomicInteger(IDLE);
+    private volatile Thread writer;
+    private volatile long writeStartedNanos;
+
+    private Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    private void offer(Frame frame) {
+      if (pending.getAndSet(frame) != null) {
+        droppedCounter.increment();
+        // subscriber waiting for a sender thread is not slow itself
+        if (writeState.get() == WRITING && droppedInRow.incrementAndGet() >= maxDroppedFrames) {
+          LOGGER.info("disconnecting statistics subscriber after {} dropped frames", maxDroppedFrames);
+          disconnect();
+          return;
+        }
+      }
+      if (sending.compareAndSet(false, true)) {
+        senders.execute(this);
+      }
+    }
+
+    /**
+     * Writes pending frames until none is left, at most one sender per
+     * subscriber at a time.
+     */
+    @Override
+    public void run() {
+      while (true) {
+        Frame frame = pending.getAndSet(null);
+        if (frame == null) {
+          sending.set(false);
+          // frame offered after getAndSet but before flag was cleared
+          if (pending.get() == null || !sending.compareAndSet(false, true)) {
+            return;
+          }
+          continue;
+        }
+        writer = Thread.currentThread();
+        writeStartedNanos = System.nanoTime();
+        if (!writeState.compareAndSet(IDLE, WRITING)) {
+          // disconnected between frames
+          return;
+        }
+        boolean sent = false;
+        try {
+          emitter.send(SseEmitter.event().id(String.valueOf(frame.id)).name(EVENT_NAME).data(frame.data));
+          sent = true;
+        } catch (IOException | IllegalStateException e) {
+          LOGGER.debug("statistics subscriber gone {}", e.getMessage());
+        }
+        writer = null;
+        if (!writeState.compareAndSet(WRITING, IDLE)) {
+          // disconnected during write, pool already runs a replacement of this thread
+          resizeSenders(-1);
+          emitter.complete();
+          return;
+        }
+        if (!sent) {
+          disconnect();
+          return;
+        }
+        droppedInRow.set(0);
+      }
+    }
+
+    private boolean isWriteOverdue(long now) {
+      return writeState.get() == WRITING && now - writeStartedNanos > sendTimeoutNanos;
+    }
+
+    /**
+     * Disconnects subscriber without waiting for a write in progress, its
+     * sender thread completes the emitter once the write returned.
+     */
+    private void disconnect() {
+      subscribers.remove(this);
+      pending.set(null);
+      // write may start or end between the two attempts
+      while (writeState.get() != ABANDONED) {
+        if (writeState.compareAndSet(IDLE, ABANDONED)) {
+          emitter.complete();
+        } else if (writeState.compareAndSet(WRITING, ABANDONED)) {
+          resizeSenders(1);
+          Thread blocked = writer;
+          if (blocked != null) {
+            blocked.interrupt();
+          }
+        }
+      }
+    }
+  }
+}
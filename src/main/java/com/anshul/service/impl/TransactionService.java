@@ -22,21 +22,35 @@
  */
 package com.anshul.service.impl;
 
-import com.anshul.exception.FutureDatedOrNonParsableFieldException;
-import com.anshul.exception.StaleTransactionException;
+import com.anshul.model.TransactionBatchResource;
 import com.anshul.model.TransactionResource;
+import com.anshul.model.TransactionStatus;
+import com.anshul.service.IKeyPartitionService;
 import com.anshul.service.ITransactionService;
-import com.anshul.util.HeapNode;
-import com.anshul.util.MinPriorityQueue;
+import com.anshul.store.HeavyHitterTracker;
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.StatisticsSnapshotCache;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.StoreCapacityGovernor;
+import com.anshul.store.TransactionIngestQueue;
+import com.anshul.store.TransactionJournal;
+import com.anshul.store.TransactionStore;
+import com.anshul.store.TransactionStoreSnapshotter;
+import com.anshul.store.TransactionWriteAheadLog;
 import com.anshul.util.TransactionInputValidationUtil;
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.anshul.util.TransactionPayload;
+import com.anshul.util.TransactionPayloadParser;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 
 /**
@@ -47,55 +61,364 @@ import java.time.Instant;
 public class TransactionService implements ITransactionService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TransactionService.class);
-  private static final int MILLIS_TO_SUBTRACT = 60000;
+  private static final int STREAM_CHUNK_SIZE = 1024;
+
+  private final TransactionInputValidationUtil transactionInputValidationUtil;
+  private final TransactionPayloadParser transactionPayloadParser;
+  private final TransactionStore transactionStore;
+  private final StatisticsSnapshotCache statisticsSnapshotCache;
+  private final StoreCapacityGovernor storeCapacityGovernor;
+  private final StatisticsWindows statisticsWindows;
+  private final KeyedStatisticsStore keyedStatisticsStore;
+  private final HeavyHitterTracker heavyHitterTracker;
+  private final TransactionWriteAheadLog transactionWriteAheadLog;
+  private final TransactionStoreSnapshotter transactionStoreSnapshotter;
+  private final TransactionJournal transactionJournal;
+  private final IKeyPartitionService keyPartitionService;
+  private final TransactionIngestQueue transactionIngestQueue;
 
   @Autowired
-  TransactionInputValidationUtil transactionInputValidationUtil;
+  public TransactionService(TransactionInputValidationUtil transactionInputValidationUtil,
+                            TransactionPayloadParser transactionPayloadParser, TransactionStore transactionStore,
+                            StatisticsSnapshotCache statisticsSnapshotCache,
+                            StoreCapacityGovernor storeCapacityGovernor, StatisticsWindows statisticsWindows,
+                            KeyedStatisticsStore keyedStatisticsStore, HeavyHitterTracker heavyHitterTracker,
+                            TransactionWriteAheadLog transactionWriteAheadLog,
+                            TransactionStoreSnapshotter transactionStoreSnapshotter,
+                            TransactionJournal transactionJournal, IKeyPartitionService keyPartitionService,
+                            TransactionIngestQueue transactionIngestQueue) {
+    this.transactionInputValidationUtil = transactionInputValidationUtil;
+    this.transactionPayloadParser = transactionPayloadParser;
+    this.transactionStore = transactionStore;
+    this.statisticsSnapshotCache = statisticsSnapshotCache;
+    this.storeCapacityGovernor = storeCapacityGovernor;
+    this.statisticsWindows = statisticsWindows;
+    this.keyedStatisticsStore = keyedStatisticsStore;
+    this.heavyHitterTracker = heavyHitterTracker;
+    this.transactionWriteAheadLog = transactionWriteAheadLog;
+    this.transactionStoreSnapshotter = transactionStoreSnapshotter;
+    this.transactionJournal = transactionJournal;
+    this.keyPartitionService = keyPartitionService;
+    this.transactionIngestQueue = transactionIngestQueue;
+  }
+
+  /**
+   * Method helps restore the window held before last shutdown or crash
+   * from write-ahead log if enabled, else from last snapshot, runs before
+   * the HTTP port is opened. Asynchronous ingest starts once restored.
+   *
+   * @return number of transactions restored
+   * @throws IOException if write-ahead log or snapshot can not be read
+   */
+  @PostConstruct
+  public long restore() throws IOException {
+    long restored;
+    if (transactionWriteAheadLog.isEnabled()) {
+      restored = restoreFromWriteAheadLog();
+    } else {
+      restored = transactionStoreSnapshotter.restore();
+      if (restored > 0) {
+        statisticsSnapshotCache.markDirty();
+      }
+    }
+    transactionIngestQueue.start(this::storeAll);
+    return restored;
+  }
+
+  /**
+   * Method helps restore transactions of the window logged before last
+   * shutdown or crash. Keyed statistics are restored only for keys this
+   * node owns, those of other owners were forwarded before and are not
+   * sent again.
+   *
+   * @return number of transactions restored
+   * @throws IOException if write-ahead log can not be read
+   */
+  public long restoreFromWriteAheadLog() throws IOException {
+    long restored = transactionWriteAheadLog.replay((amount, epochMilli, key) -> {
+      if (transactionStore.addElement(amount, epochMilli) && key != null && keyPartitionService.isOwner(key)) {
+        keyedStatisticsStore.addElement(key, amount, epochMilli);
+        heavyHitterTracker.add(key, amount, epochMilli);
+      }
+    });
+    if (restored > 0) {
+      statisticsSnapshotCache.markDirty();
+    }
+    return restored;
+  }
 
   /**
    * Method helps insert transactions into cache
-   * after validating input. If input is not as expected
-   * it will throw appropriate exception.
+   * after validating input. Stale, future dated or non
+   * parsable input is reported through returned status.
    *
    * @param jsonData String input data from request
-   * @throws StaleTransactionException
-   * @throws FutureDatedOrNonParsableFieldException
-   * @throws IOException
+   * @return TransactionStatus of the transaction
+   * @throws IOException if input is not a JSON transaction
    */
   @Override
-  public void makeTransaction(String jsonData)
-      throws StaleTransactionException, FutureDatedOrNonParsableFieldException, IOException {
+  public TransactionStatus makeTransaction(String jsonData) throws IOException {
     LOGGER.debug("========= Inside TransactionService makeTransaction() ============");
 
     Instant currentUTC = Instant.now();
-    Instant threshold = currentUTC.minusMillis(MILLIS_TO_SUBTRACT);
+    Instant threshold = currentUTC.minusMillis(statisticsWindows.getRetentionInMillis());
+
+    TransactionResource transactionResource = transactionInputValidationUtil.transformJSONToObject(jsonData);
+
+    TransactionStatus status = transactionInputValidationUtil.checkInput(transactionResource, currentUTC, threshold);
+    if (status != TransactionStatus.ACCEPTED) {
+      return status;
+    }
+
+    if (storeCapacityGovernor.admit(1) == 0) {
+      return TransactionStatus.REJECTED;
+    }
+    Instant txnTimeStamp = resolveTimestamp(transactionResource, currentUTC);
+
+    double amount = Double.parseDouble(transactionResource.getAmount());
+    return store(amount, txnTimeStamp.toEpochMilli(), transactionResource.getKey());
+  }
+
+  /**
+   * Method helps insert transaction into cache straight from request
+   * bytes. Common payloads are decoded into primitives by
+   * TransactionPayloadParser without intermediate objects, anything else
+   * falls back to {@link #makeTransaction(String)}.
+   *
+   * @param payload UTF-8 request body
+   * @return TransactionStatus of the transaction
+   * @throws IOException if input is not a JSON transaction
+   */
+  @Override
+  public TransactionStatus makeTransaction(byte[] payload) throws IOException {
+    TransactionPayload transactionPayload = transactionPayloadParser.payload();
+    if (!transactionPayloadParser.parse(payload, transactionPayload)) {
+      return makeTransaction(new String(payload, StandardCharsets.UTF_8));
+    }
+
+    long currentMilli = System.currentTimeMillis();
+    TransactionStatus status = transactionInputValidationUtil.checkInput(transactionPayload, currentMilli,
+        currentMilli - statisticsWindows.getRetentionInMillis());
+    if (status != TransactionStatus.ACCEPTED) {
+      return status;
+    }
+    if (storeCapacityGovernor.admit(1) == 0) {
+      return TransactionStatus.REJECTED;
+    }
+    long epochMilli = transactionPayload.resolveEpochMilli(currentMilli);
+    return store(transactionPayload.getAmount(), epochMilli, transactionPayload.getKey());
+  }
+
+  /**
+   * Method helps insert batch of transactions into cache. Every element is
+   * validated on its own, accepted ones are inserted with a single store
+   * operation.
+   *
+   * @param jsonData String input data from request holding JSON array
+   * @return TransactionBatchResource holding count per outcome
+   * @throws IOException if request is not a JSON array of transactions
+   */
+  @Override
+  public TransactionBatchResource makeTransactions(String jsonData) throws IOException {
+    LOGGER.debug("========= Inside TransactionService makeTransactions() ============");
+
+    Instant currentUTC = Instant.now();
+    Instant threshold = currentUTC.minusMillis(statisticsWindows.getRetentionInMillis());
 
-    try {
-      TransactionResource transactionResource = transactionInputValidationUtil.transformJSONToObject(jsonData);
+    TransactionResource[] transactionResources = transactionInputValidationUtil.transformJSONToObjects(jsonData);
+    TransactionBatchResource result = new TransactionBatchResource();
+    double[] amounts = new double[transactionResources.length];
+    long[] epochMillis = new long[transactionResources.length];
+    String[] keys = new String[transactionResources.length];
+    int accepted = 0;
+    long stale = 0;
+    long unprocessable = 0;
 
-      transactionInputValidationUtil.validateInput(transactionResource, currentUTC, threshold);
+    for (TransactionResource transactionResource : transactionResources) {
+      if (transactionResource == null) {
+        unprocessable++;
+        continue;
+      }
+      TransactionStatus status = transactionInputValidationUtil.checkInput(transactionResource, currentUTC, threshold);
+      if (status == TransactionStatus.STALE) {
+        stale++;
+        continue;
+      } else if (status == TransactionStatus.UNPROCESSABLE) {
+        unprocessable++;
+        continue;
+      }
+      amounts[accepted] = Double.parseDouble(transactionResource.getAmount());
+      epochMillis[accepted] = resolveTimestamp(transactionResource, currentUTC).toEpochMilli();
+      keys[accepted] = transactionResource.getKey();
+      accepted++;
+    }
 
-      Instant txnTimeStamp = (transactionResource.getTimestamp() == null ?
-          currentUTC.minusMillis(-(transactionResource.getTimestampOffset())) : Instant.parse(transactionResource.getTimestamp()));
+    int admitted = storeCapacityGovernor.admit(accepted);
+    int created = storeAll(amounts, epochMillis, keys, admitted);
+    // store discards only transactions which already left the window
+    result.setCreated(created);
+    result.setStale(stale + admitted - created);
+    result.setUnprocessable(unprocessable);
+    result.setRejected(accepted - admitted);
+    LOGGER.debug("========= batch processed {} ============", result);
+    return result;
+  }
 
-      MinPriorityQueue.heapNodeFactory.addElement(new HeapNode(Double.valueOf(transactionResource.getAmount()), txnTimeStamp));
+  /**
+   * Method helps insert a stream of newline delimited JSON transactions
+   * into cache. Stream is parsed incrementally and accepted transactions
+   * are inserted in chunks, so request body is never held in memory. Every
+   * transaction is validated against time of its arrival.
+   * <p>
+   * Reading stops at first malformed record, it is counted as unprocessable
+   * and result is marked incomplete.
+   *
+   * @param ndjsonStream request body holding newline delimited JSON objects
+   * @return TransactionBatchResource holding count per outcome
+   * @throws IOException if request stream can not be read
+   */
+  @Override
+  public TransactionBatchResource makeTransactions(InputStream ndjsonStream) throws IOException {
+    LOGGER.debug("========= Inside TransactionService makeTransactions(stream) ============");
 
-    } catch (JsonMappingException | JsonParseException je) {
-      throw je;
-    } catch (StaleTransactionException se) {
-      throw se;
-    } catch (FutureDatedOrNonParsableFieldException fe) {
-      throw fe;
+    TransactionBatchResource result = new TransactionBatchResource();
+    TransactionResource transactionResource = new TransactionResource();
+    double[] amounts = new double[STREAM_CHUNK_SIZE];
+    long[] epochMillis = new long[STREAM_CHUNK_SIZE];
+    String[] keys = new String[STREAM_CHUNK_SIZE];
+    int accepted = 0;
+    long created = 0;
+    long stale = 0;
+    long unprocessable = 0;
+    long rejected = 0;
+
+    try (JsonParser parser = transactionInputValidationUtil.createParser(ndjsonStream)) {
+      while (transactionInputValidationUtil.readNextTransaction(parser, transactionResource)) {
+        Instant currentUTC = Instant.now();
+        TransactionStatus status = transactionInputValidationUtil.checkInput(transactionResource, currentUTC,
+            currentUTC.minusMillis(statisticsWindows.getRetentionInMillis()));
+        if (status == TransactionStatus.STALE) {
+          stale++;
+          continue;
+        } else if (status == TransactionStatus.UNPROCESSABLE) {
+          unprocessable++;
+          continue;
+        }
+        amounts[accepted] = Double.parseDouble(transactionResource.getAmount());
+        epochMillis[accepted] = resolveTimestamp(transactionResource, currentUTC).toEpochMilli();
+        keys[accepted] = transactionResource.getKey();
+        accepted++;
+        if (accepted == STREAM_CHUNK_SIZE) {
+          int admitted = storeCapacityGovernor.admit(accepted);
+          int added = storeAll(amounts, epochMillis, keys, admitted);
+          created += added;
+          stale += admitted - added;
+          rejected += accepted - admitted;
+          accepted = 0;
+        }
+      }
+    } catch (JsonProcessingException je) {
+      LOGGER.info("malformed record in transaction stream {}", je.getOriginalMessage());
+      unprocessable++;
+      result.setComplete(false);
     }
 
+    int admitted = storeCapacityGovernor.admit(accepted);
+    int added = storeAll(amounts, epochMillis, keys, admitted);
+    result.setCreated(created + added);
+    result.setStale(stale + admitted - added);
+    result.setUnprocessable(unprocessable);
+    result.setRejected(rejected + accepted - admitted);
+    LOGGER.debug("========= stream processed {} ============", result);
+    return result;
   }
 
   /**
    * Method helps clearing entire cache.
    */
   @Override
-  public void deleteTransaction() {
+  public void deleteTransaction() throws IOException {
     LOGGER.debug("========= Inside TransactionService deleteTransaction() ============");
-    MinPriorityQueue.heapNodeFactory.clearHeap();
+    // transactions answered before delete are cleared along with the rest
+    transactionIngestQueue.awaitStored();
+    transactionWriteAheadLog.clear();
+    transactionStore.clearStore();
+    keyedStatisticsStore.clearStore();
+    heavyHitterTracker.clear();
+    // after stores are cleared, so a snapshot still being written is deleted as well
+    transactionStoreSnapshotter.clear();
+    transactionJournal.markCleared();
+    statisticsSnapshotCache.markDirty();
+  }
+
+  /**
+   * Method helps store one validated and admitted transaction. With
+   * asynchronous ingest it is stored by aggregator thread of
+   * TransactionIngestQueue, a full queue is answered like a full store.
+   * Only transactions kept by store reach keyed statistics, journal and
+   * write-ahead log, which is awaited last.
+   *
+   * @return ACCEPTED, STALE if store discarded it as already out of the window or REJECTED
+   */
+  private TransactionStatus store(double amount, long epochMilli, String key) {
+    if (transactionIngestQueue.isEnabled()) {
+      return transactionIngestQueue.offer(amount, epochMilli, key) ? TransactionStatus.ACCEPTED
+          : TransactionStatus.REJECTED;
+    }
+    if (!transactionStore.addElement(amount, epochMilli)) {
+      return TransactionStatus.STALE;
+    }
+    addKeyed(key, amount, epochMilli);
+    transactionJournal.append(amount, epochMilli);
+    statisticsSnapshotCache.markDirty();
+    transactionWriteAheadLog.append(amount, epochMilli, key);
+    return TransactionStatus.ACCEPTED;
+  }
+
+  /**
+   * Method helps store a batch of validated and admitted transactions like
+   * {@link #store(double, long, String)}. Transactions discarded by store
+   * are removed from the arrays, stored ones are kept in front in order.
+   *
+   * @return number of transactions stored, store discards only those which already left the window
+   */
+  private int storeAll(double[] amounts, long[] epochMillis, String[] keys, int length) {
+    boolean[] stored = new boolean[length];
+    int storedCount = transactionStore.addElements(amounts, epochMillis, length, stored);
+    if (storedCount < length) {
+      int kept = 0;
+      for (int i = 0; i < length; i++) {
+        if (stored[i]) {
+          amounts[kept] = amounts[i];
+          epochMillis[kept] = epochMillis[i];
+          keys[kept++] = keys[i];
+        }
+      }
+    }
+    addKeyed(keys, amounts, epochMillis, storedCount);
+    transactionJournal.appendAll(amounts, epochMillis, storedCount);
+    statisticsSnapshotCache.markDirty();
+    transactionWriteAheadLog.appendAll(amounts, epochMillis, keys, storedCount);
+    return storedCount;
+  }
+
+  private void addKeyed(String key, double amount, long epochMilli) {
+    // keys owned by another node are forwarded, only global statistics keep them here
+    if (key != null && !keyPartitionService.forward(key, amount, epochMilli)) {
+      keyedStatisticsStore.addElement(key, amount, epochMilli);
+      heavyHitterTracker.add(key, amount, epochMilli);
+    }
+  }
+
+  private void addKeyed(String[] keys, double[] amounts, long[] epochMillis, int length) {
+    for (int i = 0; i < length; i++) {
+      addKeyed(keys[i], amounts[i], epochMillis[i]);
+    }
+  }
+
+  private Instant resolveTimestamp(TransactionResource transactionResource, Instant currentUTC) {
+    return transactionResource.getTimestamp() == null
+        ? currentUTC.minusMillis(-(transactionResource.getTimestampOffset()))
+        : Instant.parse(transactionResource.getTimestamp());
   }
 }
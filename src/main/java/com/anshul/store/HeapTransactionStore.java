@@ -0,0 +1,144 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.util.FixedPoint;
+import com.anshul.util.HeapNode;
+import com.anshul.util.MinPriorityQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Default store backed by {@link MinPriorityQueue#heapNodeFactory}, every
+ * transaction is kept as a {@link HeapNode} until it leaves the window.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.store.type", havingValue = "heap", matchIfMissing = true)
+public class HeapTransactionStore implements RecordTransactionStore {
+
+  /**
+   * HeapNode, boxed Double, minor units, Instant and queue slot.
+   */
+  private static final long BYTES_PER_TRANSACTION = 88;
+
+  private final StatisticsWindows statisticsWindows;
+  private final FixedPoint fixedPoint;
+
+  public HeapTransactionStore() {
+    this(StatisticsWindows.defaultWindows());
+  }
+
+  public HeapTransactionStore(StatisticsWindows statisticsWindows) {
+    this(statisticsWindows, FixedPoint.DEFAULT_SCALE);
+  }
+
+  /**
+   * @param statisticsWindows windows served, transactions are kept for longest one
+   * @param amountScale       decimal places of amounts kept as fixed point minor units
+   */
+  @Autowired
+  public HeapTransactionStore(StatisticsWindows statisticsWindows,
+                              @Value("${transaction.amount.scale:" + FixedPoint.DEFAULT_SCALE + "}") int amountScale) {
+    this.statisticsWindows = statisticsWindows;
+    this.fixedPoint = amountScale == FixedPoint.DEFAULT_SCALE ? FixedPoint.DEFAULT : new FixedPoint(amountScale);
+  }
+
+  @Override
+  public boolean addElement(double amount, long epochMilli) {
+    return MinPriorityQueue.heapNodeFactory.addElement(new HeapNode(amount, Instant.ofEpochMilli(epochMilli), fixedPoint));
+  }
+
+  @Override
+  public void clearStore() {
+    MinPriorityQueue.heapNodeFactory.clearHeap();
+  }
+
+  @Override
+  public long size() {
+    return MinPriorityQueue.heapNodeFactory.size();
+  }
+
+  @Override
+  public long cleanStaleData(Instant timestampThreshold) {
+    return MinPriorityQueue.heapNodeFactory.cleanStaleData(timestampThreshold);
+  }
+
+  @Override
+  public long cleanStaleData(Instant timestampThreshold, int maxRecords) {
+    return MinPriorityQueue.heapNodeFactory.cleanStaleData(timestampThreshold, maxRecords);
+  }
+
+  @Override
+  public long bytesPerTransaction() {
+    return BYTES_PER_TRANSACTION;
+  }
+
+  @Override
+  public long nextExpiryMilli() {
+    HeapNode oldest = MinPriorityQueue.heapNodeFactory.peekTopElement();
+    // heap drops a transaction once it is strictly older than longest window
+    return oldest == null ? Long.MAX_VALUE
+        : oldest.getInstant().toEpochMilli() + statisticsWindows.getRetentionInMillis() + 1;
+  }
+
+  @Override
+  public void forEachTransaction(long thresholdMilli, TransactionVisitor visitor) {
+    MinPriorityQueue.heapNodeFactory.forEachElement(node -> {
+      long epochMilli = node.getInstant().toEpochMilli();
+      if (epochMilli >= thresholdMilli) {
+        visitor.visit(node.getAmount(), epochMilli);
+      }
+    });
+  }
+
+  @Override
+  public StatisticsWindows getStatisticsWindows() {
+    return statisticsWindows;
+  }
+
+  @Override
+  public StatisticsResource getStatistics() {
+    return getStatistics(System.currentTimeMillis(), statisticsWindows.getDefaultWindowInMillis()).getStatisticsResource();
+  }
+
+  @Override
+  public StatisticsSnapshot getStatistics(long nowMilli, long windowInMillis) {
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(statisticsWindows);
+    if (!accumulator.isSampling()) {
+      return MinPriorityQueue.heapNodeFactory.getStatisticsFromHeap(Instant.ofEpochMilli(nowMilli), windowInMillis,
+          statisticsWindows.getRetentionInMillis(), fixedPoint, null);
+    }
+    StatisticsSnapshot statisticsSnapshot = MinPriorityQueue.heapNodeFactory.getStatisticsFromHeap(
+        Instant.ofEpochMilli(nowMilli), windowInMillis, statisticsWindows.getRetentionInMillis(), fixedPoint,
+        accumulator::accept);
+    // snapshot is not published yet, so its resource can still be completed
+    accumulator.applyDistribution(statisticsSnapshot.getStatisticsResource());
+    return statisticsSnapshot;
+  }
+}
@@ -0,0 +1,312 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.TopKeyResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keys with the highest transaction volume, absolute amount, of the default
+ * window without scanning every key. Every bucket of bucket-millis keeps a
+ * weighted Space-Saving summary of at most capacity keys, a summary is
+ * reused once its bucket has left the window, so memory is bounded by
+ * capacity * (window / bucket-millis + 1) keys whatever the number of keys.
+ * <p>
+ * A key counted in a summary is overestimated by at most its error, the
+ * weight of the key it replaced, and a key dropped from a summary is
+ * underestimated by at most the smallest weight of that summary. Keys are
+ * partitioned by hash into stripes of their own summaries and lock, so
+ * writers of different stripes never contend and a query merges at most
+ * capacity keys per bucket.
+ * <p>
+ * Buckets age out like those of {@link KeyedStatisticsStore}, whole buckets
+ * at once and never after the window.
+ */
+@Component
+public class HeavyHitterTracker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HeavyHitterTracker.class);
+
+  public static final int DEFAULT_CAPACITY = 256;
+  public static final int DEFAULT_MAX_K = 100;
+  private static final int STRIPES = 4;
+
+  private final long windowInMillis;
+  private final long bucketMillis;
+  private final int bucketCount;
+  private final int maxK;
+  private final int capacity;
+  private final Summary[][] stripes;
+
+  @Autowired
+  public HeavyHitterTracker(StatisticsWindows statisticsWindows,
+                            @Value("${transaction.keyed.bucket-millis:" + KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS + "}") long bucketMillis,
+                            @Value("${transaction.top-keys.capacity:" + DEFAULT_CAPACITY + "}") int capacity,
+                            @Value("${transaction.top-keys.max-k:" + DEFAULT_MAX_K + "}") int maxK) {
+    if (bucketMillis <= 0 || capacity < STRIPES || maxK <= 0) {
+      throw new IllegalArgumentException("bucket-millis and max-k must be positive, capacity at least " + STRIPES);
+    }
+    this.windowInMillis = statisticsWindows.getDefaultWindowInMillis();
+    this.bucketMillis = bucketMillis;
+    this.bucketCount = (int) ((windowInMillis + bucketMillis - 1) / bucketMillis) + 1;
+    this.maxK = maxK;
+    this.capacity = capacity;
+    this.stripes = new Summary[STRIPES][bucketCount];
+    for (Summary[] stripe : stripes) {
+      for (int i = 0; i < bucketCount; i++) {
+        stripe[i] = new Summary(capacity / STRIPES);
+      }
+    }
+  }
+
+  /**
+   * Method helps count transaction volume towards its key.
+   *
+   * @param key        transaction key
+   * @param amount     transaction amount, counted as absolute value
+   * @param epochMilli transaction timestamp in epoch milliseconds
+   * @return false if transaction already left the window
+   */
+  public boolean add(String key, double amount, long epochMilli) {
+    long bucketIndex = Math.floorDiv(epochMilli, bucketMillis);
+    if (bucketIndex < firstBucketIndex(System.currentTimeMillis())) {
+      return false;
+    }
+    Summary[] stripe = stripes[stripeOf(key)];
+    synchronized (stripe) {
+      Summary summary = stripe[(int) Math.floorMod(bucketIndex, (long) bucketCount)];
+      if (summary.bucketIndex != bucketIndex) {
+        // slot is only ever behind, buckets ahead of now are never accepted
+        summary.reset(bucketIndex);
+      }
+      summary.add(key, Math.abs(amount));
+    }
+    return true;
+  }
+
+  /**
+   * Method helps find keys of highest volume in the default window.
+   *
+   * @param k        number of keys, at most max-k
+   * @param nowMilli current epoch milli
+   * @return up to k keys ordered by volume descending
+   */
+  public List<TopKeyResource> getTopKeys(int k, long nowMilli) {
+    LOGGER.debug("========= Inside HeavyHitterTracker getTopKeys() ============");
+    if (k <= 0 || k > maxK) {
+      throw new IllegalArgumentException("k must be within 1 and " + maxK);
+    }
+    long firstBucketIndex = firstBucketIndex(nowMilli);
+    long lastBucketIndex = Math.floorDiv(nowMilli, bucketMillis);
+    // volume, error and count per key
+    Map<String, double[]> merged = new HashMap<>(capacity * bucketCount * 2);
+    for (Summary[] stripe : stripes) {
+      synchronized (stripe) {
+        for (Summary summary : stripe) {
+          if (summary.bucketIndex < firstBucketIndex || summary.bucketIndex > lastBucketIndex) {
+            continue;
+          }
+          for (int slot = 0; slot < summary.size; slot++) {
+            double[] total = merged.get(summary.keys[slot]);
+            if (total == null) {
+              total = new double[3];
+              merged.put(summary.keys[slot], total);
+            }
+            total[0] += summary.weights[slot];
+            total[1] += summary.errors[slot];
+            total[2] += summary.counts[slot];
+          }
+        }
+      }
+    }
+    // k lightest on top, so each candidate is compared against the weakest selected key
+    Comparator<Map.Entry<String, double[]>> byVolume = (a, b) -> {
+      int compared = Double.compare(a.getValue()[0], b.getValue()[0]);
+      return compared != 0 ? compared : b.getKey().compareTo(a.getKey());
+    };
+    PriorityQueue<Map.Entry<String, double[]>> selected = new PriorityQueue<>(k + 1, byVolume);
+    for (Map.Entry<String, double[]> entry : merged.entrySet()) {
+      if (selected.size() < k) {
+        selected.add(entry);
+      } else if (byVolume.compare(entry, selected.peek()) > 0) {
+        selected.poll();
+        selected.add(entry);
+      }
+    }
+    List<Map.Entry<String, double[]>> entries = new ArrayList<>(selected);
+    entries.sort(byVolume.reversed());
+    List<TopKeyResource> topKeys = new ArrayList<>(entries.size());
+    for (Map.Entry<String, double[]> entry : entries) {
+      TopKeyResource topKey = new TopKeyResource();
+      topKey.setKey(entry.getKey());
+      topKey.setVolume(String.valueOf(BigDecimal.valueOf(entry.getValue()[0]).setScale(2, RoundingMode.HALF_UP)));
+      topKey.setError(String.valueOf(BigDecimal.valueOf(entry.getValue()[1]).setScale(2, RoundingMode.HALF_UP)));
+      topKey.setCount((long) entry.getValue()[2]);
+      topKeys.add(topKey);
+    }
+    return topKeys;
+  }
+
+  /**
+   * Method helps clearing all summaries.
+   */
+  public void clear() {
+    for (Summary[] stripe : stripes) {
+      synchronized (stripe) {
+        for (Summary summary : stripe) {
+          summary.reset(Long.MIN_VALUE);
+        }
+      }
+    }
+  }
+
+  public int getMaxK() {
+    return maxK;
+  }
+
+  private long firstBucketIndex(long nowMilli) {
+    return Math.floorDiv(nowMilli - windowInMillis + bucketMillis - 1, bucketMillis);
+  }
+
+  private static int stripeOf(String key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+  }
+
+  /**
+   * Weighted Space-Saving summary of one bucket, slots are ordered by
+   * weight in a binary min heap so that the lightest key is replaced in
+   * O(log capacity). Guarded by monitor of its stripe.
+   */
+  private static final class Summary {
+
+    private final String[] keys;
+    private final double[] weights;
+    private final double[] errors;
+    private final long[] counts;
+    // heap[i] is slot at heap position i, positions[slot] is its position
+    private final int[] heap;
+    private final int[] positions;
+    private final Map<String, Integer> slots;
+    private long bucketIndex = Long.MIN_VALUE;
+    private int size;
+
+    private Summary(int capacity) {
+      keys = new String[capacity];
+      weights = new double[capacity];
+      errors = new double[capacity];
+      counts = new long[capacity];
+      heap = new int[capacity];
+      positions = new int[capacity];
+      slots = new HashMap<>(capacity * 2);
+    }
+
+    private void reset(long bucketIndex) {
+      this.bucketIndex = bucketIndex;
+      Arrays.fill(keys, 0, size, null);
+      slots.clear();
+      size = 0;
+    }
+
+    private void add(String key, double weight) {
+      Integer slot = slots.get(key);
+      if (slot != null) {
+        weights[slot] += weight;
+        counts[slot]++;
+        siftDown(positions[slot]);
+        return;
+      }
+      if (size < keys.length) {
+        int free = size++;
+        keys[free] = key;
+        weights[free] = weight;
+        errors[free] = 0;
+        counts[free] = 1;
+        heap[free] = free;
+        positions[free] = free;
+        slots.put(key, free);
+        siftUp(free);
+        return;
+      }
+      // replace lightest key, newcomer inherits its weight as error
+      int lightest = heap[0];
+      slots.remove(keys[lightest]);
+      keys[lightest] = key;
+      errors[lightest] = weights[lightest];
+      weights[lightest] += weight;
+      counts[lightest] = 1;
+      slots.put(key, lightest);
+      siftDown(0);
+    }
+
+    private void siftUp(int position) {
+      while (position > 0) {
+        int parent = (position - 1) >>> 1;
+        if (weights[heap[parent]] <= weights[heap[position]]) {
+          return;
+        }
+        swap(parent, position);
+        position = parent;
+      }
+    }
+
+    private void siftDown(int position) {
+      while (true) {
+        int child = 2 * position + 1;
+        if (child >= size) {
+          return;
+        }
+        if (child + 1 < size && weights[heap[child + 1]] < weights[heap[child]]) {
+          child++;
+        }
+        if (weights[heap[position]] <= weights[heap[child]]) {
+          return;
+        }
+        swap(position, child);
+        position = child;
+      }
+    }
+
+    private void swap(int a, int b) {
+      int slot = heap[a];
+      heap[a] = heap[b];
+      heap[b] = slot;
+      positions[heap[a]] = a;
+      positions[heap[b]] = b;
+    }
+  }
+}
@@ -0,0 +1,397 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Independent sliding window aggregate of the default window per
+ * transaction key (merchant, account, currency, ...). Global statistics
+ * remain with {@link TransactionStore}, which receives every transaction
+ * keyed or not and so serves as the rollup of all keys.
+ * <p>
+ * Every key holds one long[] of window / bucket-millis + 1 buckets, each
+ * bucket packing bucket index and count into one long followed by raw bits
+ * of sum, min and max, about 430 bytes per key with 5 second buckets. Key
+ * array is its own monitor, so writers of different keys never contend.
+ * A bucket counts while it lies entirely within the window, so a
+ * transaction leaves per key statistics up to bucket-millis before it
+ * leaves the window, never after.
+ * <p>
+ * Keys without transactions in the window are removed by a scheduled
+ * sweep, at most max-keys keys are tracked, transactions of further keys
+ * only count towards global statistics.
+ */
+@Component
+public class KeyedStatisticsStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KeyedStatisticsStore.class);
+
+  public static final long DEFAULT_BUCKET_MILLIS = 5000;
+  public static final int DEFAULT_MAX_KEYS = 500000;
+
+  private static final int CELLS_PER_BUCKET = 4;
+  private static final int SUM = 1;
+  private static final int MIN = 2;
+  private static final int MAX = 3;
+  private static final long COUNT_MASK = 0xFFFFFFFFL;
+  // count 0 never occurs in a used bucket, so stamp of a released key array can not collide
+  private static final long RELEASED = Long.MIN_VALUE;
+
+  private final ConcurrentHashMap<String, long[]> keys = new ConcurrentHashMap<>();
+  private final long windowInMillis;
+  private final long bucketMillis;
+  private final int bucketCount;
+  private final int maxKeys;
+  private Counter untrackedCounter;
+
+  public KeyedStatisticsStore(StatisticsWindows statisticsWindows, long bucketMillis, int maxKeys) {
+    if (bucketMillis <= 0 || maxKeys <= 0) {
+      throw new IllegalArgumentException("bucket-millis and max-keys must be positive");
+    }
+    this.windowInMillis = statisticsWindows.getDefaultWindowInMillis();
+    this.bucketMillis = bucketMillis;
+    this.bucketCount = (int) ((windowInMillis + bucketMillis - 1) / bucketMillis) + 1;
+    this.maxKeys = maxKeys;
+  }
+
+  @Autowired
+  public KeyedStatisticsStore(StatisticsWindows statisticsWindows, MeterRegistry meterRegistry,
+                              @Value("${transaction.keyed.bucket-millis:" + DEFAULT_BUCKET_MILLIS + "}") long bucketMillis,
+                              @Value("${transaction.keyed.max-keys:" + DEFAULT_MAX_KEYS + "}") int maxKeys) {
+    this(statisticsWindows, bucketMillis, maxKeys);
+    this.untrackedCounter = Counter.builder("transaction.keyed.untracked")
+        .description("keyed transactions not tracked per key because max-keys was reached")
+        .register(meterRegistry);
+    Gauge.builder("transaction.keyed.keys", keys, Map::size)
+        .description("keys holding transactions of the window")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Method helps add new transaction into aggregate of its key.
+   *
+   * @param key        transaction key
+   * @param amount     transaction amount
+   * @param epochMilli transaction timestamp in epoch milliseconds
+   * @return true if counted, false if transaction left per key window or key is not tracked
+   */
+  public boolean addElement(String key, double amount, long epochMilli) {
+    long bucketIndex = Math.floorDiv(epochMilli, bucketMillis);
+    if (bucketIndex < firstBucketIndex(System.currentTimeMillis())) {
+      return false;
+    }
+    return merge(key, bucketIndex, 1, amount, amount, amount);
+  }
+
+  private boolean merge(String key, long bucketIndex, long count, double sum, double min, double max) {
+    while (true) {
+      long[] buckets = keys.get(key);
+      if (buckets == null) {
+        if (keys.size() >= maxKeys) {
+          if (untrackedCounter != null) {
+            untrackedCounter.increment();
+          }
+          return false;
+        }
+        buckets = keys.computeIfAbsent(key, k -> new long[bucketCount * CELLS_PER_BUCKET]);
+      }
+      synchronized (buckets) {
+        if (buckets[0] == RELEASED) {
+          // key was swept meanwhile, start over with a fresh array
+          keys.remove(key, buckets);
+          continue;
+        }
+        merge(buckets, bucketIndex, count, sum, min, max);
+        return true;
+      }
+    }
+  }
+
+  private void merge(long[] buckets, long bucketIndex, long count, double sum, double min, double max) {
+    int cell = (int) Math.floorMod(bucketIndex, (long) bucketCount) * CELLS_PER_BUCKET;
+    long stamp = buckets[cell];
+    if ((stamp & COUNT_MASK) == 0 || (int) (stamp >>> 32) != (int) bucketIndex) {
+      buckets[cell] = (bucketIndex << 32) | count;
+      buckets[cell + SUM] = Double.doubleToRawLongBits(sum);
+      buckets[cell + MIN] = Double.doubleToRawLongBits(min);
+      buckets[cell + MAX] = Double.doubleToRawLongBits(max);
+      return;
+    }
+    buckets[cell] = stamp + count;
+    buckets[cell + SUM] = Double.doubleToRawLongBits(Double.longBitsToDouble(buckets[cell + SUM]) + sum);
+    if (min < Double.longBitsToDouble(buckets[cell + MIN])) {
+      buckets[cell + MIN] = Double.doubleToRawLongBits(min);
+    }
+    if (max > Double.longBitsToDouble(buckets[cell + MAX])) {
+      buckets[cell + MAX] = Double.doubleToRawLongBits(max);
+    }
+  }
+
+  /**
+   * Method helps calculate statistics of one key over the default window.
+   *
+   * @param key      transaction key
+   * @param nowMilli current epoch milli
+   * @return statistics of key, all zero for a key without transactions in window
+   */
+  public StatisticsSnapshot getStatistics(String key, long nowMilli) {
+    LOGGER.debug("========= Inside KeyedStatisticsStore getStatistics() ============");
+    StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    long oldestBucketIndex = accumulate(key, nowMilli, accumulator);
+    // oldest bucket stops counting once its start falls out of the window
+    long validUntilMilli = oldestBucketIndex == Long.MAX_VALUE
+        ? Long.MAX_VALUE : oldestBucketIndex * bucketMillis + windowInMillis + 1;
+    StatisticsResource statisticsResource = accumulator.toStatisticsResource();
+    return new StatisticsSnapshot(statisticsResource, nowMilli, validUntilMilli);
+  }
+
+  /**
+   * Method helps merging buckets of one key in the default window into an
+   * accumulator, e.g. to combine them with those of another node.
+   *
+   * @param key      transaction key
+   * @param nowMilli current epoch milli
+   * @return accumulator of key, empty for a key without transactions in window
+   */
+  public StatisticsAccumulator accumulate(String key, long nowMilli) {
+    StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    accumulate(key, nowMilli, accumulator);
+    return accumulator;
+  }
+
+  /**
+   * @return index of oldest bucket merged, Long.MAX_VALUE if none
+   */
+  private long accumulate(String key, long nowMilli, StatisticsAccumulator accumulator) {
+    long firstBucketIndex = firstBucketIndex(nowMilli);
+    long lastBucketIndex = Math.floorDiv(nowMilli, bucketMillis);
+    long oldestBucketIndex = Long.MAX_VALUE;
+    long[] buckets = keys.get(key);
+    if (buckets != null) {
+      synchronized (buckets) {
+        if (buckets[0] != RELEASED) {
+          for (int cell = 0; cell < buckets.length; cell += CELLS_PER_BUCKET) {
+            long stamp = buckets[cell];
+            long count = stamp & COUNT_MASK;
+            long bucketIndex = bucketIndexOf(stamp, lastBucketIndex);
+            if (count == 0 || bucketIndex < firstBucketIndex || bucketIndex > lastBucketIndex) {
+              continue;
+            }
+            accumulator.merge(count, Double.longBitsToDouble(buckets[cell + SUM]),
+                Double.longBitsToDouble(buckets[cell + MIN]), Double.longBitsToDouble(buckets[cell + MAX]));
+            oldestBucketIndex = Math.min(oldestBucketIndex, bucketIndex);
+          }
+        }
+      }
+    }
+    return oldestBucketIndex;
+  }
+
+  /**
+   * Scheduled sweep removing keys without transactions in the window, see
+   * transaction.keyed.sweep-millis.
+   *
+   * @return number of keys removed
+   */
+  @Scheduled(fixedDelayString = "${transaction.keyed.sweep-millis:1000}",
+      initialDelayString = "${transaction.keyed.sweep-millis:1000}")
+  public int sweep() {
+    return sweep(System.currentTimeMillis());
+  }
+
+  /**
+   * @param nowMilli current epoch milli
+   * @return number of keys removed
+   */
+  public int sweep(long nowMilli) {
+    long firstBucketIndex = firstBucketIndex(nowMilli);
+    long lastBucketIndex = Math.floorDiv(nowMilli, bucketMillis);
+    int removed = 0;
+    Iterator<Map.Entry<String, long[]>> iterator = keys.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, long[]> entry = iterator.next();
+      long[] buckets = entry.getValue();
+      synchronized (buckets) {
+        if (isLive(buckets, firstBucketIndex, lastBucketIndex)) {
+          continue;
+        }
+        buckets[0] = RELEASED;
+      }
+      keys.remove(entry.getKey(), buckets);
+      removed++;
+    }
+    if (removed > 0) {
+      LOGGER.debug("Scheduled idle key removal activity {} ", removed);
+    }
+    return removed;
+  }
+
+  private boolean isLive(long[] buckets, long firstBucketIndex, long lastBucketIndex) {
+    for (int cell = 0; cell < buckets.length; cell += CELLS_PER_BUCKET) {
+      long stamp = buckets[cell];
+      if ((stamp & COUNT_MASK) != 0 && bucketIndexOf(stamp, lastBucketIndex) >= firstBucketIndex) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Method helps writing buckets of every key still in the window at
+   * nowMilli into a snapshot: bucket-millis, then per key a true flag, key
+   * and index, count, sum, min and max of its buckets ended by
+   * Long.MIN_VALUE, then a false flag.
+   *
+   * @param output   snapshot being written
+   * @param nowMilli current epoch milli
+   * @throws IOException if snapshot can not be written
+   */
+  public void writeSnapshot(DataOutput output, long nowMilli) throws IOException {
+    long firstBucketIndex = firstBucketIndex(nowMilli);
+    long lastBucketIndex = Math.floorDiv(nowMilli, bucketMillis);
+    long[] copy = new long[bucketCount * CELLS_PER_BUCKET];
+    output.writeLong(bucketMillis);
+    for (Map.Entry<String, long[]> entry : keys.entrySet()) {
+      long[] buckets = entry.getValue();
+      synchronized (buckets) {
+        if (buckets[0] == RELEASED) {
+          continue;
+        }
+        System.arraycopy(buckets, 0, copy, 0, copy.length);
+      }
+      output.writeBoolean(true);
+      output.writeUTF(entry.getKey());
+      for (int cell = 0; cell < copy.length; cell += CELLS_PER_BUCKET) {
+        long stamp = copy[cell];
+        long bucketIndex = bucketIndexOf(stamp, lastBucketIndex);
+        if ((stamp & COUNT_MASK) == 0 || bucketIndex < firstBucketIndex) {
+          continue;
+        }
+        output.writeLong(bucketIndex);
+        output.writeLong(stamp & COUNT_MASK);
+        output.writeLong(copy[cell + SUM]);
+        output.writeLong(copy[cell + MIN]);
+        output.writeLong(copy[cell + MAX]);
+      }
+      output.writeLong(Long.MIN_VALUE);
+    }
+    output.writeBoolean(false);
+  }
+
+  /**
+   * Method helps merging buckets written by {@link #writeSnapshot(DataOutput, long)},
+   * buckets out of the window at nowMilli or of a different bucket-millis
+   * are skipped.
+   *
+   * @param input    snapshot being read
+   * @param nowMilli current epoch milli
+   * @return number of keys restored
+   * @throws IOException if snapshot can not be read
+   */
+  public int readSnapshot(DataInput input, long nowMilli) throws IOException {
+    long firstBucketIndex = firstBucketIndex(nowMilli);
+    long lastBucketIndex = Math.floorDiv(nowMilli, bucketMillis);
+    boolean sameBuckets = input.readLong() == bucketMillis;
+    int restored = 0;
+    while (input.readBoolean()) {
+      String key = input.readUTF();
+      boolean merged = false;
+      for (long bucketIndex = input.readLong(); bucketIndex != Long.MIN_VALUE; bucketIndex = input.readLong()) {
+        long count = input.readLong();
+        double sum = Double.longBitsToDouble(input.readLong());
+        double min = Double.longBitsToDouble(input.readLong());
+        double max = Double.longBitsToDouble(input.readLong());
+        if (sameBuckets && bucketIndex >= firstBucketIndex && bucketIndex <= lastBucketIndex) {
+          merged |= merge(key, bucketIndex, count, sum, min, max);
+        }
+      }
+      if (merged) {
+        restored++;
+      }
+    }
+    return restored;
+  }
+
+  /**
+   * Method helps clearing aggregates of all keys.
+   */
+  public void clearStore() {
+    for (long[] buckets : keys.values()) {
+      synchronized (buckets) {
+        buckets[0] = RELEASED;
+      }
+    }
+    keys.clear();
+  }
+
+  /**
+   * @return number of keys currently tracked
+   */
+  public int size() {
+    return keys.size();
+  }
+
+  /**
+   * @return approximate memory held per tracked key, key String excluded
+   */
+  public long bytesPerKey() {
+    // array header + buckets, map node and table slot
+    return 16 + 8L * CELLS_PER_BUCKET * bucketCount + 48;
+  }
+
+  public long getWindowInMillis() {
+    return windowInMillis;
+  }
+
+  private long firstBucketIndex(long nowMilli) {
+    return Math.floorDiv(nowMilli - windowInMillis + bucketMillis - 1, bucketMillis);
+  }
+
+  /**
+   * Buckets only keep low 32 bits of their index, full index is the one
+   * closest to but not after lastBucketIndex.
+   */
+  private static long bucketIndexOf(long stamp, long lastBucketIndex) {
+    long low = stamp >>> 32;
+    long index = (lastBucketIndex & ~COUNT_MASK) | low;
+    return index > lastBucketIndex ? index - (1L << 32) : index;
+  }
+}
@@ -0,0 +1,315 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Store keeping every transaction of the window outside Java heap. Each
+ * second of the window owns a segment, a list of direct ByteBuffer chunks
+ * holding fixed size (epoch milli, amount) records appended in arrival
+ * order. When a second leaves the window its chunks go back to a shared
+ * pool and are overwritten by a later second, so GC only ever sees the
+ * chunks themselves, irrespective of number of live transactions.
+ * <p>
+ * Window is evaluated with millisecond precision like the heap store: a
+ * segment spans one second and the oldest partially covered second is
+ * filtered record by record. Writers of different seconds do not contend,
+ * every segment is guarded by its own monitor.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.store.type", havingValue = "offheap")
+public class OffHeapTransactionStore implements RecordTransactionStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapTransactionStore.class);
+  private static final long MILLIS_IN_SECOND = 1000;
+  private static final int RECORD_SIZE = Long.BYTES + Double.BYTES;
+  private static final int DEFAULT_CHUNK_RECORDS = 4096;
+  private static final int MAX_POOLED_CHUNKS = 256;
+
+  private final int chunkRecords;
+  private final StatisticsWindows statisticsWindows;
+  private final Segment[] segments;
+  private final ArrayDeque<ByteBuffer> chunkPool = new ArrayDeque<>();
+
+  public OffHeapTransactionStore() {
+    this(DEFAULT_CHUNK_RECORDS);
+  }
+
+  @Autowired
+  public OffHeapTransactionStore(StatisticsWindows statisticsWindows) {
+    this(DEFAULT_CHUNK_RECORDS, statisticsWindows);
+  }
+
+  public OffHeapTransactionStore(int chunkRecords) {
+    this(chunkRecords, StatisticsWindows.defaultWindows());
+  }
+
+  /**
+   * @param chunkRecords      number of records held by one direct buffer chunk
+   * @param statisticsWindows windows served, transactions are kept for longest one
+   */
+  public OffHeapTransactionStore(int chunkRecords, StatisticsWindows statisticsWindows) {
+    this.chunkRecords = chunkRecords;
+    this.statisticsWindows = statisticsWindows;
+    // full seconds of longest window plus the oldest, partially covered one
+    int segmentCount = (int) ((statisticsWindows.getRetentionInMillis() + MILLIS_IN_SECOND - 1) / MILLIS_IN_SECOND) + 1;
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  @Override
+  public boolean addElement(double amount, long epochMilli) {
+    long epochSecond = Math.floorDiv(epochMilli, MILLIS_IN_SECOND);
+    Segment segment = segments[slotOf(epochSecond)];
+    synchronized (segment) {
+      if (segment.epochSecond > epochSecond) {
+        // segment already recycled by a newer second, transaction is out of window
+        return false;
+      }
+      if (segment.epochSecond < epochSecond) {
+        release(segment);
+        segment.epochSecond = epochSecond;
+      }
+      if (segment.count == segment.chunks.size() * chunkRecords) {
+        segment.chunks.add(acquire());
+      }
+      ByteBuffer chunk = segment.chunks.get(segment.count / chunkRecords);
+      int offset = (segment.count % chunkRecords) * RECORD_SIZE;
+      chunk.putLong(offset, epochMilli);
+      chunk.putDouble(offset + Long.BYTES, amount);
+      segment.count++;
+    }
+    return true;
+  }
+
+  @Override
+  public void clearStore() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        release(segment);
+      }
+    }
+  }
+
+  @Override
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.count;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Releases segments of seconds entirely before timestampThreshold.
+   */
+  @Override
+  public long cleanStaleData(Instant timestampThreshold) {
+    long thresholdSecond = Math.floorDiv(timestampThreshold.toEpochMilli(), MILLIS_IN_SECOND);
+    long count = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        if (segment.epochSecond < thresholdSecond) {
+          count += release(segment);
+        }
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public long bytesPerTransaction() {
+    return RECORD_SIZE;
+  }
+
+  /**
+   * Uses start of the oldest second, earlier than or equal to expiry of
+   * its oldest record.
+   */
+  @Override
+  public long nextExpiryMilli() {
+    long oldestSecond = Long.MAX_VALUE;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        if (segment.count > 0 && segment.epochSecond < oldestSecond) {
+          oldestSecond = segment.epochSecond;
+        }
+      }
+    }
+    return oldestSecond == Long.MAX_VALUE ? Long.MAX_VALUE
+        : oldestSecond * MILLIS_IN_SECOND + statisticsWindows.getRetentionInMillis() + 1;
+  }
+
+  @Override
+  public StatisticsWindows getStatisticsWindows() {
+    return statisticsWindows;
+  }
+
+  @Override
+  public StatisticsResource getStatistics() {
+    return getStatistics(System.currentTimeMillis());
+  }
+
+  /**
+   * Visits one segment at a time under its monitor.
+   */
+  @Override
+  public void forEachTransaction(long thresholdMilli, TransactionVisitor visitor) {
+    long thresholdSecond = Math.floorDiv(thresholdMilli, MILLIS_IN_SECOND);
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        if (segment.epochSecond < thresholdSecond) {
+          continue;
+        }
+        for (int i = 0; i < segment.count; i++) {
+          ByteBuffer chunk = segment.chunks.get(i / chunkRecords);
+          int offset = (i % chunkRecords) * RECORD_SIZE;
+          long epochMilli = chunk.getLong(offset);
+          if (epochMilli >= thresholdMilli) {
+            visitor.visit(chunk.getDouble(offset + Long.BYTES), epochMilli);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returned Statistics of transactions belonging to default window ending at nowMilli.
+   *
+   * @param nowMilli end of window in epoch milliseconds
+   * @return StatisticsResource sr
+   */
+  public StatisticsResource getStatistics(long nowMilli) {
+    return getStatistics(nowMilli, statisticsWindows.getDefaultWindowInMillis()).getStatisticsResource();
+  }
+
+  @Override
+  public StatisticsSnapshot getStatistics(long nowMilli, long windowInMillis) {
+    long retentionSecond = Math.floorDiv(nowMilli - statisticsWindows.getRetentionInMillis(), MILLIS_IN_SECOND);
+    long thresholdMilli = nowMilli - windowInMillis;
+    long thresholdSecond = Math.floorDiv(thresholdMilli, MILLIS_IN_SECOND);
+    long nowSecond = Math.floorDiv(nowMilli, MILLIS_IN_SECOND);
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(statisticsWindows);
+    long oldestMilli = Long.MAX_VALUE;
+    long removedStaleDataCount = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        if (segment.epochSecond < retentionSecond) {
+          removedStaleDataCount += release(segment);
+          continue;
+        }
+        if (segment.epochSecond < thresholdSecond || segment.epochSecond > nowSecond) {
+          continue;
+        }
+        // only oldest second can hold records before threshold
+        boolean filter = segment.epochSecond == thresholdSecond;
+        for (int i = 0; i < segment.count; i++) {
+          ByteBuffer chunk = segment.chunks.get(i / chunkRecords);
+          int offset = (i % chunkRecords) * RECORD_SIZE;
+          long epochMilli = chunk.getLong(offset);
+          if (filter && epochMilli < thresholdMilli) {
+            continue;
+          }
+          if (epochMilli < oldestMilli) {
+            oldestMilli = epochMilli;
+          }
+          accumulator.accept(chunk.getDouble(offset + Long.BYTES));
+        }
+      }
+    }
+    LOGGER.debug("count stale data records removed before traversal {} ", removedStaleDataCount);
+    long validUntilMilli = oldestMilli == Long.MAX_VALUE ? Long.MAX_VALUE : oldestMilli + windowInMillis + 1;
+    return new StatisticsSnapshot(accumulator.toStatisticsResource(), nowMilli, validUntilMilli);
+  }
+
+  /**
+   * @return number of chunks currently waiting in pool for reuse
+   */
+  public int pooledChunks() {
+    synchronized (chunkPool) {
+      return chunkPool.size();
+    }
+  }
+
+  private ByteBuffer acquire() {
+    synchronized (chunkPool) {
+      ByteBuffer chunk = chunkPool.poll();
+      if (chunk != null) {
+        return chunk;
+      }
+    }
+    return ByteBuffer.allocateDirect(chunkRecords * RECORD_SIZE);
+  }
+
+  /**
+   * Returns chunks of segment to pool, caller holds segment monitor.
+   *
+   * @return number of records released
+   */
+  private int release(Segment segment) {
+    int count = segment.count;
+    if (!segment.chunks.isEmpty()) {
+      synchronized (chunkPool) {
+        for (ByteBuffer chunk : segment.chunks) {
+          if (chunkPool.size() < MAX_POOLED_CHUNKS) {
+            chunkPool.push(chunk);
+          }
+        }
+      }
+      segment.chunks.clear();
+    }
+    segment.count = 0;
+    segment.epochSecond = Long.MIN_VALUE;
+    return count;
+  }
+
+  private int slotOf(long epochSecond) {
+    return (int) Math.floorMod(epochSecond, (long) segments.length);
+  }
+
+  /**
+   * Records of a single second, guarded by its own monitor.
+   */
+  private static final class Segment {
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long epochSecond = Long.MIN_VALUE;
+    private int count;
+  }
+}
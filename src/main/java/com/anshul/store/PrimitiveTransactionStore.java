@@ -0,0 +1,317 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.util.HeapNode;
+import com.anshul.util.TransactionNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Store keeping every transaction of the window in two parallel primitive
+ * arrays (amount, epoch milliseconds) used as a circular buffer ordered by
+ * timestamp, oldest at head. A transaction costs 16 bytes and no object;
+ * {@link TransactionNode} is only created when a caller asks for one.
+ * <p>
+ * Transactions mostly arrive close to current time, so insert is usually
+ * an append at tail; a late transaction finds its slot by binary search and
+ * younger slots are moved by System.arraycopy. Eviction is a binary search
+ * for the first transaction inside window followed by moving head.
+ * Buffer doubles when full and is never shrunk except by clearStore().
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.store.type", havingValue = "primitive")
+public class PrimitiveTransactionStore implements RecordTransactionStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PrimitiveTransactionStore.class);
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  private final int initialCapacity;
+  private final StatisticsWindows statisticsWindows;
+  private double[] amounts;
+  private long[] epochMillis;
+  private int head;
+  private int size;
+
+  public PrimitiveTransactionStore() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  @Autowired
+  public PrimitiveTransactionStore(StatisticsWindows statisticsWindows) {
+    this(DEFAULT_INITIAL_CAPACITY, statisticsWindows);
+  }
+
+  public PrimitiveTransactionStore(int initialCapacity) {
+    this(initialCapacity, StatisticsWindows.defaultWindows());
+  }
+
+  /**
+   * @param initialCapacity   number of transactions held before first resize,
+   *                          rounded up to power of two
+   * @param statisticsWindows windows served, transactions are kept for longest one
+   */
+  public PrimitiveTransactionStore(int initialCapacity, StatisticsWindows statisticsWindows) {
+    this.initialCapacity = Integer.highestOneBit(Math.max(2, initialCapacity) * 2 - 1);
+    this.statisticsWindows = statisticsWindows;
+    clearStore();
+  }
+
+  @Override
+  public synchronized boolean addElement(double amount, long epochMilli) {
+    insert(amount, epochMilli);
+    return true;
+  }
+
+  /**
+   * Batch is inserted under a single lock acquisition.
+   */
+  @Override
+  public synchronized int addElements(double[] amounts, long[] epochMillis, int length, boolean[] stored) {
+    for (int i = 0; i < length; i++) {
+      insert(amounts[i], epochMillis[i]);
+    }
+    if (stored != null) {
+      Arrays.fill(stored, 0, length, true);
+    }
+    return length;
+  }
+
+  @Override
+  public synchronized void clearStore() {
+    amounts = new double[initialCapacity];
+    epochMillis = new long[initialCapacity];
+    head = 0;
+    size = 0;
+  }
+
+  @Override
+  public synchronized long size() {
+    return size;
+  }
+
+  @Override
+  public synchronized long cleanStaleData(Instant timestampThreshold) {
+    return evict(timestampThreshold.toEpochMilli(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public synchronized long cleanStaleData(Instant timestampThreshold, int maxRecords) {
+    return evict(timestampThreshold.toEpochMilli(), maxRecords);
+  }
+
+  @Override
+  public long bytesPerTransaction() {
+    return Double.BYTES + Long.BYTES;
+  }
+
+  @Override
+  public synchronized long nextExpiryMilli() {
+    return size == 0 ? Long.MAX_VALUE : epochMillis[head] + statisticsWindows.getRetentionInMillis() + 1;
+  }
+
+  /**
+   * Method helps removing oldest transaction from store.
+   *
+   * @return oldest transaction or null if store is empty
+   */
+  public synchronized TransactionNode getTopElement() {
+    if (size == 0) {
+      return null;
+    }
+    TransactionNode node = new HeapNode(amounts[head], Instant.ofEpochMilli(epochMillis[head]));
+    head = (head + 1) & (amounts.length - 1);
+    size--;
+    return node;
+  }
+
+  @Override
+  public StatisticsWindows getStatisticsWindows() {
+    return statisticsWindows;
+  }
+
+  @Override
+  public StatisticsResource getStatistics() {
+    return getStatistics(System.currentTimeMillis());
+  }
+
+  /**
+   * Returned Statistics of transactions belonging to default window ending at nowMilli.
+   *
+   * @param nowMilli end of window in epoch milliseconds
+   * @return StatisticsResource sr
+   */
+  public StatisticsResource getStatistics(long nowMilli) {
+    return getStatistics(nowMilli, statisticsWindows.getDefaultWindowInMillis()).getStatisticsResource();
+  }
+
+  @Override
+  public StatisticsSnapshot getStatistics(long nowMilli, long windowInMillis) {
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(statisticsWindows);
+    long validUntilMilli = Long.MAX_VALUE;
+    synchronized (this) {
+      int removedStaleDataCount = evict(nowMilli - statisticsWindows.getRetentionInMillis(), Integer.MAX_VALUE);
+      LOGGER.debug("count stale data records removed before traversal {} ", removedStaleDataCount);
+
+      int mask = amounts.length - 1;
+      int first = firstIndexNotBefore(nowMilli - windowInMillis);
+      if (first < size) {
+        validUntilMilli = epochMillis[(head + first) & mask] + windowInMillis + 1;
+      }
+      for (int i = first; i < size; i++) {
+        accumulator.accept(amounts[(head + i) & mask]);
+      }
+    }
+    return new StatisticsSnapshot(accumulator.toStatisticsResource(), nowMilli, validUntilMilli);
+  }
+
+  /**
+   * Transactions not before thresholdMilli are copied under monitor and
+   * visited after releasing it, so writers are not held up by visitor.
+   */
+  @Override
+  public void forEachTransaction(long thresholdMilli, TransactionVisitor visitor) {
+    double[] copiedAmounts;
+    long[] copiedEpochMillis;
+    synchronized (this) {
+      int mask = amounts.length - 1;
+      int first = firstIndexNotBefore(thresholdMilli);
+      copiedAmounts = new double[size - first];
+      copiedEpochMillis = new long[size - first];
+      for (int i = first; i < size; i++) {
+        copiedAmounts[i - first] = amounts[(head + i) & mask];
+        copiedEpochMillis[i - first] = epochMillis[(head + i) & mask];
+      }
+    }
+    for (int i = 0; i < copiedAmounts.length; i++) {
+      visitor.visit(copiedAmounts[i], copiedEpochMillis[i]);
+    }
+  }
+
+  private void insert(double amount, long epochMilli) {
+    if (size == amounts.length) {
+      grow();
+    }
+    int mask = amounts.length - 1;
+    int position = size;
+    if (size > 0 && epochMillis[(head + size - 1) & mask] > epochMilli) {
+      position = firstIndexAfter(epochMilli);
+      shiftTowardsTail(position);
+    }
+    int slot = (head + position) & mask;
+    amounts[slot] = amount;
+    epochMillis[slot] = epochMilli;
+    size++;
+  }
+
+  /**
+   * @return first logical index whose timestamp is after epochMilli
+   */
+  private int firstIndexAfter(long epochMilli) {
+    int mask = amounts.length - 1;
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (epochMillis[(head + middle) & mask] <= epochMilli) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Moves logical slots [position, size) one slot towards tail, buffer has
+   * at least one free slot.
+   */
+  private void shiftTowardsTail(int position) {
+    int capacity = amounts.length;
+    int from = (head + position) & (capacity - 1);
+    int tail = (head + size) & (capacity - 1);
+    if (from < tail) {
+      System.arraycopy(amounts, from, amounts, from + 1, tail - from);
+      System.arraycopy(epochMillis, from, epochMillis, from + 1, tail - from);
+      return;
+    }
+    // range wraps around end of arrays
+    System.arraycopy(amounts, 0, amounts, 1, tail);
+    System.arraycopy(epochMillis, 0, epochMillis, 1, tail);
+    amounts[0] = amounts[capacity - 1];
+    epochMillis[0] = epochMillis[capacity - 1];
+    System.arraycopy(amounts, from, amounts, from + 1, capacity - 1 - from);
+    System.arraycopy(epochMillis, from, epochMillis, from + 1, capacity - 1 - from);
+  }
+
+  /**
+   * Removes at most maxRecords transactions older than thresholdMilli,
+   * same rule as MinPriorityQueue.cleanStaleData.
+   */
+  private int evict(long thresholdMilli, int maxRecords) {
+    int removed = Math.min(firstIndexNotBefore(thresholdMilli), maxRecords);
+    head = (head + removed) & (amounts.length - 1);
+    size -= removed;
+    return removed;
+  }
+
+  /**
+   * @return first logical index whose timestamp is not before thresholdMilli
+   */
+  private int firstIndexNotBefore(long thresholdMilli) {
+    int mask = amounts.length - 1;
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (epochMillis[(head + middle) & mask] < thresholdMilli) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private void grow() {
+    int capacity = amounts.length;
+    double[] grownAmounts = new double[capacity << 1];
+    long[] grownEpochMillis = new long[capacity << 1];
+    int firstPart = capacity - head;
+    System.arraycopy(amounts, head, grownAmounts, 0, firstPart);
+    System.arraycopy(amounts, 0, grownAmounts, firstPart, head);
+    System.arraycopy(epochMillis, head, grownEpochMillis, 0, firstPart);
+    System.arraycopy(epochMillis, 0, grownEpochMillis, firstPart, head);
+    amounts = grownAmounts;
+    epochMillis = grownEpochMillis;
+    head = 0;
+  }
+}
@@ -0,0 +1,168 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, mergeable histogram of amounts on logarithmic bins, in the
+ * spirit of HDR histogram: a bin spans a constant ratio GAMMA, so any
+ * quantile read from it is within RELATIVE_ACCURACY of an actual amount.
+ * Negative amounts use mirrored bins, magnitudes below the bin of
+ * MIN_MAGNITUDE fall into a zero bin and above MAX_MAGNITUDE into the outermost bins.
+ * <p>
+ * Bins are AtomicLongArray cells, writers of the same sketch do not lock.
+ * Sketches of a window are merged by adding bins into a plain long[]
+ * histogram, which costs BIN_COUNT irrespective of number of transactions.
+ */
+public final class QuantileSketch {
+
+  public static final double RELATIVE_ACCURACY = 0.02;
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+  private static final double MIN_MAGNITUDE = 0.01;
+  private static final double MAX_MAGNITUDE = 1e13;
+  private static final int BINS_PER_SIGN = (int) Math.ceil(Math.log(MAX_MAGNITUDE / MIN_MAGNITUDE) / LOG_GAMMA) + 1;
+  private static final int ZERO_BIN = BINS_PER_SIGN;
+  public static final int BIN_COUNT = 2 * BINS_PER_SIGN + 1;
+
+  private final AtomicLongArray bins = new AtomicLongArray(BIN_COUNT);
+
+  /**
+   * Method helps recording single amount.
+   *
+   * @param amount transaction amount
+   */
+  public void add(double amount) {
+    bins.incrementAndGet(binOf(amount));
+  }
+
+  /**
+   * Method helps merging sketch into histogram created by {@link #newHistogram()}.
+   *
+   * @param histogram bins to add into
+   */
+  public void mergeInto(long[] histogram) {
+    for (int bin = 0; bin < BIN_COUNT; bin++) {
+      long count = bins.get(bin);
+      if (count != 0) {
+        histogram[bin] += count;
+      }
+    }
+  }
+
+  /**
+   * Method helps writing non empty bins into a snapshot.
+   *
+   * @param output snapshot being written
+   * @throws IOException if snapshot can not be written
+   */
+  public void writeTo(DataOutput output) throws IOException {
+    for (int bin = 0; bin < BIN_COUNT; bin++) {
+      long count = bins.get(bin);
+      if (count != 0) {
+        output.writeShort(bin);
+        output.writeLong(count);
+      }
+    }
+    output.writeShort(-1);
+  }
+
+  /**
+   * Method helps adding bins written by {@link #writeTo(DataOutput)}.
+   *
+   * @param input snapshot being read
+   * @throws IOException if snapshot can not be read or holds a bin out of range
+   */
+  public void readFrom(DataInput input) throws IOException {
+    for (int bin = input.readShort(); bin != -1; bin = input.readShort()) {
+      if (bin < 0 || bin >= BIN_COUNT) {
+        throw new IOException("quantile bin out of range: " + bin);
+      }
+      bins.addAndGet(bin, input.readLong());
+    }
+  }
+
+  /**
+   * @return empty histogram, bins ordered by ascending amount
+   */
+  public static long[] newHistogram() {
+    return new long[BIN_COUNT];
+  }
+
+  /**
+   * @param amount transaction amount
+   * @return histogram bin of amount
+   */
+  public static int binOf(double amount) {
+    double magnitude = Math.abs(amount);
+    if (magnitude <= MIN_MAGNITUDE / GAMMA || Double.isNaN(magnitude)) {
+      return ZERO_BIN;
+    }
+    int index = (int) Math.min(BINS_PER_SIGN - 1, Math.ceil(Math.log(magnitude / MIN_MAGNITUDE) / LOG_GAMMA));
+    return amount > 0 ? ZERO_BIN + 1 + index : ZERO_BIN - 1 - index;
+  }
+
+  /**
+   * @param bin histogram bin
+   * @return amount representing bin, within RELATIVE_ACCURACY of its bounds
+   */
+  public static double valueOf(int bin) {
+    if (bin == ZERO_BIN) {
+      return 0;
+    }
+    int index = bin > ZERO_BIN ? bin - ZERO_BIN - 1 : ZERO_BIN - 1 - bin;
+    // bin covers (MIN_MAGNITUDE * GAMMA^(index-1), MIN_MAGNITUDE * GAMMA^index]
+    double magnitude = MIN_MAGNITUDE * Math.pow(GAMMA, index) * 2 / (GAMMA + 1);
+    return bin > ZERO_BIN ? magnitude : -magnitude;
+  }
+
+  /**
+   * Method helps reading quantile out of merged histogram.
+   *
+   * @param histogram merged bins
+   * @param quantile  quantile between 0 and 1
+   * @return amount at quantile, NaN if histogram is empty
+   */
+  public static double quantile(long[] histogram, double quantile) {
+    long total = 0;
+    for (long count : histogram) {
+      total += count;
+    }
+    if (total == 0) {
+      return Double.NaN;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int bin = 0; bin < histogram.length; bin++) {
+      seen += histogram[bin];
+      if (seen >= rank) {
+        return valueOf(bin);
+      }
+    }
+    return valueOf(histogram.length - 1);
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Store keeping every transaction of the window as a record, rather than
+ * aggregates of it. Accumulating a window and snapshots are derived from
+ * visiting its transactions.
+ */
+public interface RecordTransactionStore extends TransactionStore {
+
+  /**
+   * Method helps merging transactions of one window into an accumulator,
+   * e.g. to export it as partial aggregate of this node. Visits every
+   * transaction of the window and sums amounts exactly.
+   *
+   * @param nowMilli       current epoch milli
+   * @param windowInMillis window length
+   * @return accumulator of the window, with quantiles and variance as configured
+   */
+  @Override
+  default StatisticsAccumulator accumulate(long nowMilli, long windowInMillis) {
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(getStatisticsWindows());
+    forEachTransaction(nowMilli - windowInMillis, (amount, epochMilli) -> {
+      if (epochMilli <= nowMilli) {
+        accumulator.accept(amount);
+      }
+    });
+    return accumulator;
+  }
+
+  /**
+   * Method helps visiting transactions held by store, transactions added
+   * concurrently may or may not be visited.
+   *
+   * @param thresholdMilli transactions before threshold are skipped
+   * @param visitor        receives amount and epoch milli of every transaction
+   */
+  void forEachTransaction(long thresholdMilli, TransactionVisitor visitor);
+
+  /**
+   * Method helps writing state of the window into a snapshot, read back by
+   * {@link #readSnapshot(DataInput, long)} of the same store type. Writes
+   * every transaction as epoch milli and amount, ended by Long.MIN_VALUE.
+   *
+   * @param output         snapshot being written
+   * @param thresholdMilli transactions before threshold are left out
+   * @throws IOException if snapshot can not be written
+   */
+  @Override
+  default void writeSnapshot(DataOutput output, long thresholdMilli) throws IOException {
+    try {
+      forEachTransaction(thresholdMilli, (amount, epochMilli) -> {
+        try {
+          output.writeLong(epochMilli);
+          output.writeDouble(amount);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    output.writeLong(Long.MIN_VALUE);
+  }
+
+  /**
+   * Method helps adding state written by {@link #writeSnapshot(DataOutput, long)}
+   * into store.
+   *
+   * @param input          snapshot being read
+   * @param thresholdMilli transactions before threshold are skipped
+   * @return number of transactions restored
+   * @throws IOException if snapshot can not be read
+   */
+  @Override
+  default long readSnapshot(DataInput input, long thresholdMilli) throws IOException {
+    int batchSize = 1024;
+    double[] amounts = new double[batchSize];
+    long[] epochMillis = new long[batchSize];
+    int length = 0;
+    long restored = 0;
+    for (long epochMilli = input.readLong(); epochMilli != Long.MIN_VALUE; epochMilli = input.readLong()) {
+      double amount = input.readDouble();
+      if (epochMilli < thresholdMilli) {
+        continue;
+      }
+      amounts[length] = amount;
+      epochMillis[length++] = epochMilli;
+      if (length == batchSize) {
+        restored += addElements(amounts, epochMillis, length);
+        length = 0;
+      }
+    }
+    return restored + addElements(amounts, epochMillis, length);
+  }
+
+  /**
+   * Receives transactions visited by {@link #forEachTransaction(long, TransactionVisitor)}.
+   */
+  interface TransactionVisitor {
+    void visit(double amount, long epochMilli);
+  }
+}
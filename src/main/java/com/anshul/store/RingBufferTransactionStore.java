@@ -0,0 +1,477 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Store keeping one aggregate (sum, count, min, max) per time bucket in
+ * fixed rings of buckets. Insert touches a single bucket per level and
+ * statistics merge the buckets of one window, so both are O(1) irrespective
+ * of transaction volume.
+ * <p>
+ * Buckets are organised in levels of decimal widths (10ms, 100ms, 1s, ...),
+ * every level aggregating the same transactions at ten times the width of
+ * the finer one. Each configured window is served by the coarsest level
+ * still giving it at least MIN_BUCKETS_PER_WINDOW buckets, so a 60 seconds
+ * window uses 60 one second buckets and a 5 minutes window shares that
+ * level with 300 buckets. A level only exists if some window uses it, an
+ * extra window costs the buckets of its level and no per transaction memory.
+ * <p>
+ * Window is evaluated with bucket granularity: a bucket belongs to window
+ * while it is one of the last window / width buckets.
+ * <p>
+ * Store is lock free: bucket aggregates are striped cells (LongAdder,
+ * DoubleAdder, DoubleAccumulator) so concurrent writers of the same bucket
+ * do not serialise, and a slot moves to a new bucket by a single CAS of the
+ * bucket reference. With quantiles every bucket also carries a
+ * {@link QuantileSketch}, merged across the window for p50, p95 and p99,
+ * and with variance {@link StripedMoments}, merged for variance and stddev.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.store.type", havingValue = "bucket")
+public class RingBufferTransactionStore implements TransactionStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RingBufferTransactionStore.class);
+  private static final int MIN_BUCKETS_PER_WINDOW = 60;
+  private static final Bucket EMPTY_BUCKET = new Bucket(Long.MIN_VALUE, false, false);
+
+  private final StatisticsWindows statisticsWindows;
+  private final long[] windowsInMillis;
+  /**
+   * Level serving windowsInMillis[i], finest first. Last level holds longest window.
+   */
+  private final Level[] levelOfWindow;
+  private final Level[] levels;
+
+  public RingBufferTransactionStore() {
+    this(StatisticsWindows.defaultWindows());
+  }
+
+  @Autowired
+  public RingBufferTransactionStore(StatisticsWindows statisticsWindows) {
+    this.statisticsWindows = statisticsWindows;
+    this.windowsInMillis = statisticsWindows.getWindowsInMillis();
+    this.levelOfWindow = new Level[windowsInMillis.length];
+    Map<Long, Integer> slotsOfWidth = new TreeMap<>();
+    for (long window : windowsInMillis) {
+      long width = widthOf(window);
+      slotsOfWidth.merge(width, bucketsOf(window, width), Math::max);
+    }
+    List<Level> created = new ArrayList<>();
+    boolean quantiles = statisticsWindows.isQuantilesEnabled();
+    boolean variance = statisticsWindows.isVarianceEnabled();
+    slotsOfWidth.forEach((width, slots) -> created.add(new Level(width, slots, quantiles, variance)));
+    this.levels = created.toArray(new Level[0]);
+    for (int i = 0; i < windowsInMillis.length; i++) {
+      long width = widthOf(windowsInMillis[i]);
+      for (Level level : levels) {
+        if (level.widthInMillis == width) {
+          levelOfWindow[i] = level;
+        }
+      }
+    }
+    LOGGER.debug("bucket levels {} ", created);
+    clearStore();
+  }
+
+  @Override
+  public boolean addElement(double amount, long epochMilli) {
+    boolean added = false;
+    for (Level level : levels) {
+      // longest window decides, shorter ones never reach further back
+      added = level.add(amount, epochMilli);
+    }
+    return added;
+  }
+
+  @Override
+  public void clearStore() {
+    for (Level level : levels) {
+      level.clear();
+    }
+  }
+
+  @Override
+  public long size() {
+    Level level = retentionLevel();
+    long nowIndex = level.indexOf(System.currentTimeMillis());
+    long size = 0;
+    for (int slot = 0; slot < level.slotCount; slot++) {
+      Bucket bucket = level.buckets.get(slot);
+      if (isInWindow(bucket.index, nowIndex, level.slotCount)) {
+        size += bucket.count.sum();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public long cleanStaleData(Instant timestampThreshold) {
+    Level retentionLevel = retentionLevel();
+    long count = 0;
+    for (Level level : levels) {
+      long cleaned = level.clean(timestampThreshold.toEpochMilli());
+      // every level holds each transaction, count it once
+      if (level == retentionLevel) {
+        count = cleaned;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Memory is fixed by number of buckets.
+   */
+  @Override
+  public long bytesPerTransaction() {
+    return 0;
+  }
+
+  @Override
+  public long nextExpiryMilli() {
+    Level level = retentionLevel();
+    long nowIndex = level.indexOf(System.currentTimeMillis());
+    long oldestIndex = Long.MAX_VALUE;
+    for (int slot = 0; slot < level.slotCount; slot++) {
+      Bucket bucket = level.buckets.get(slot);
+      if (isInWindow(bucket.index, nowIndex, level.slotCount) && bucket.index < oldestIndex) {
+        oldestIndex = bucket.index;
+      }
+    }
+    return oldestIndex == Long.MAX_VALUE ? Long.MAX_VALUE : (oldestIndex + level.slotCount) * level.widthInMillis;
+  }
+
+  @Override
+  public StatisticsWindows getStatisticsWindows() {
+    return statisticsWindows;
+  }
+
+  @Override
+  public StatisticsResource getStatistics() {
+    return getStatistics(System.currentTimeMillis());
+  }
+
+  /**
+   * Returned Statistics of buckets belonging to default window ending at nowMilli.
+   *
+   * @param nowMilli end of window in epoch milliseconds
+   * @return StatisticsResource sr
+   */
+  public StatisticsResource getStatistics(long nowMilli) {
+    return getStatistics(nowMilli, statisticsWindows.getDefaultWindowInMillis()).getStatisticsResource();
+  }
+
+  @Override
+  public StatisticsSnapshot getStatistics(long nowMilli, long windowInMillis) {
+    int window = Arrays.binarySearch(windowsInMillis, windowInMillis);
+    if (window < 0) {
+      throw new IllegalArgumentException("window is not configured: " + windowInMillis);
+    }
+    Level level = levelOfWindow[window];
+    int windowBuckets = bucketsOf(windowInMillis, level.widthInMillis);
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(statisticsWindows);
+    long oldestIndex = merge(level, windowBuckets, nowMilli, accumulator);
+    LOGGER.debug("count of transactions merged from buckets {} ", accumulator.getCount());
+    long validUntilMilli = oldestIndex == Long.MAX_VALUE ? Long.MAX_VALUE
+        : (oldestIndex + windowBuckets) * level.widthInMillis;
+    return new StatisticsSnapshot(accumulator.toStatisticsResource(), nowMilli, validUntilMilli);
+  }
+
+  /**
+   * Buckets are merged as they are, sketches and moments included.
+   */
+  @Override
+  public StatisticsAccumulator accumulate(long nowMilli, long windowInMillis) {
+    int window = Arrays.binarySearch(windowsInMillis, windowInMillis);
+    if (window < 0) {
+      throw new IllegalArgumentException("window is not configured: " + windowInMillis);
+    }
+    Level level = levelOfWindow[window];
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(statisticsWindows);
+    merge(level, bucketsOf(windowInMillis, level.widthInMillis), nowMilli, accumulator);
+    return accumulator;
+  }
+
+  /**
+   * @return index of oldest non empty bucket merged, Long.MAX_VALUE if none
+   */
+  private static long merge(Level level, int windowBuckets, long nowMilli, StatisticsAccumulator accumulator) {
+    long nowIndex = level.indexOf(nowMilli);
+    long oldestIndex = Long.MAX_VALUE;
+    for (int slot = 0; slot < level.slotCount; slot++) {
+      Bucket bucket = level.buckets.get(slot);
+      if (isInWindow(bucket.index, nowIndex, windowBuckets)) {
+        // count is read first, writers publish it last, so min/max are always set when count > 0
+        long count = bucket.count.sum();
+        accumulator.merge(count, bucket.sum.sum(), bucket.min.get(), bucket.max.get());
+        accumulator.merge(bucket.sketch);
+        accumulator.merge(bucket.moments);
+        if (count > 0 && bucket.index < oldestIndex) {
+          oldestIndex = bucket.index;
+        }
+      }
+    }
+    return oldestIndex;
+  }
+
+  /**
+   * Writes every level as its shape followed by its non empty buckets not
+   * before thresholdMilli: index, count, sum, min, max and, when enabled,
+   * sketch bins and moments.
+   */
+  @Override
+  public void writeSnapshot(DataOutput output, long thresholdMilli) throws IOException {
+    output.writeInt(levels.length);
+    for (Level level : levels) {
+      output.writeLong(level.widthInMillis);
+      output.writeInt(level.slotCount);
+      output.writeBoolean(level.quantiles);
+      output.writeBoolean(level.variance);
+      long thresholdIndex = level.indexOf(thresholdMilli);
+      for (int slot = 0; slot < level.slotCount; slot++) {
+        Bucket bucket = level.buckets.get(slot);
+        long count = bucket.count.sum();
+        if (bucket.index < thresholdIndex || count == 0) {
+          continue;
+        }
+        output.writeLong(bucket.index);
+        output.writeLong(count);
+        output.writeDouble(bucket.sum.sum());
+        output.writeDouble(bucket.min.get());
+        output.writeDouble(bucket.max.get());
+        if (level.quantiles) {
+          bucket.sketch.writeTo(output);
+        }
+        if (level.variance) {
+          bucket.moments.writeTo(output);
+        }
+      }
+      output.writeLong(Long.MIN_VALUE);
+    }
+  }
+
+  /**
+   * Buckets are merged into level of the same width and slot count, levels
+   * no longer configured are skipped, as are sketches and moments no
+   * longer enabled.
+   */
+  @Override
+  public long readSnapshot(DataInput input, long thresholdMilli) throws IOException {
+    long restored = 0;
+    int levelCount = input.readInt();
+    for (int i = 0; i < levelCount; i++) {
+      long widthInMillis = input.readLong();
+      int slotCount = input.readInt();
+      boolean quantiles = input.readBoolean();
+      boolean variance = input.readBoolean();
+      Level target = null;
+      for (Level level : levels) {
+        if (level.widthInMillis == widthInMillis && level.slotCount == slotCount) {
+          target = level;
+        }
+      }
+      for (long index = input.readLong(); index != Long.MIN_VALUE; index = input.readLong()) {
+        long count = input.readLong();
+        double sum = input.readDouble();
+        double min = input.readDouble();
+        double max = input.readDouble();
+        Bucket bucket = target == null || index < target.indexOf(thresholdMilli) ? null : target.bucketOf(index);
+        if (quantiles) {
+          (bucket != null && bucket.sketch != null ? bucket.sketch : new QuantileSketch()).readFrom(input);
+        }
+        if (variance) {
+          (bucket != null && bucket.moments != null ? bucket.moments : new StripedMoments()).readFrom(input);
+        }
+        if (bucket != null) {
+          bucket.merge(count, sum, min, max);
+          if (target == retentionLevel()) {
+            restored += count;
+          }
+        }
+      }
+    }
+    return restored;
+  }
+
+  private Level retentionLevel() {
+    return levelOfWindow[levelOfWindow.length - 1];
+  }
+
+  /**
+   * @return coarsest decimal bucket width giving window MIN_BUCKETS_PER_WINDOW buckets, at least 1ms
+   */
+  private static long widthOf(long windowInMillis) {
+    long width = 1;
+    while (windowInMillis / (width * 10) >= MIN_BUCKETS_PER_WINDOW) {
+      width *= 10;
+    }
+    return width;
+  }
+
+  private static int bucketsOf(long windowInMillis, long widthInMillis) {
+    return (int) ((windowInMillis + widthInMillis - 1) / widthInMillis);
+  }
+
+  private static boolean isInWindow(long index, long nowIndex, int windowBuckets) {
+    return index > nowIndex - windowBuckets && index <= nowIndex;
+  }
+
+  /**
+   * Ring of buckets of the same width.
+   */
+  private static final class Level {
+    private final long widthInMillis;
+    private final int slotCount;
+    private final boolean quantiles;
+    private final boolean variance;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    private Level(long widthInMillis, int slotCount, boolean quantiles, boolean variance) {
+      this.widthInMillis = widthInMillis;
+      this.slotCount = slotCount;
+      this.quantiles = quantiles;
+      this.variance = variance;
+      this.buckets = new AtomicReferenceArray<>(slotCount);
+    }
+
+    private long indexOf(long epochMilli) {
+      return Math.floorDiv(epochMilli, widthInMillis);
+    }
+
+    private boolean add(double amount, long epochMilli) {
+      Bucket bucket = bucketOf(indexOf(epochMilli));
+      if (bucket == null) {
+        return false;
+      }
+      bucket.add(amount);
+      return true;
+    }
+
+    /**
+     * @return bucket of index, replacing an older bucket of its slot, null
+     * if slot already holds a newer bucket
+     */
+    private Bucket bucketOf(long index) {
+      int slot = (int) Math.floorMod(index, (long) slotCount);
+      Bucket bucket = buckets.get(slot);
+      while (bucket.index != index) {
+        if (bucket.index > index) {
+          // slot already recycled by a newer bucket, transaction is out of window
+          return null;
+        }
+        Bucket freshBucket = new Bucket(index, quantiles, variance);
+        if (buckets.compareAndSet(slot, bucket, freshBucket)) {
+          bucket = freshBucket;
+        } else {
+          bucket = buckets.get(slot);
+        }
+      }
+      return bucket;
+    }
+
+    private void clear() {
+      for (int slot = 0; slot < slotCount; slot++) {
+        buckets.set(slot, EMPTY_BUCKET);
+      }
+    }
+
+    private long clean(long thresholdMilli) {
+      long thresholdIndex = indexOf(thresholdMilli);
+      long count = 0;
+      for (int slot = 0; slot < slotCount; slot++) {
+        Bucket bucket = buckets.get(slot);
+        if (bucket != EMPTY_BUCKET && bucket.index < thresholdIndex
+            && buckets.compareAndSet(slot, bucket, EMPTY_BUCKET)) {
+          count += bucket.count.sum();
+        }
+      }
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return slotCount + "x" + widthInMillis + "ms";
+    }
+  }
+
+  /**
+   * Aggregate of all transactions belonging to single bucket. A bucket is
+   * never reset, once it leaves the window slot gets a new bucket.
+   */
+  private static final class Bucket {
+    private final long index;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+    private final QuantileSketch sketch;
+    private final StripedMoments moments;
+
+    private Bucket(long index, boolean quantiles, boolean variance) {
+      this.index = index;
+      this.sketch = quantiles ? new QuantileSketch() : null;
+      this.moments = variance ? new StripedMoments() : null;
+    }
+
+    private void add(double amount) {
+      if (sketch != null) {
+        sketch.add(amount);
+      }
+      if (moments != null) {
+        moments.add(amount);
+      }
+      sum.add(amount);
+      min.accumulate(amount);
+      max.accumulate(amount);
+      count.increment();
+    }
+
+    private void merge(long partialCount, double partialSum, double partialMin, double partialMax) {
+      sum.add(partialSum);
+      min.accumulate(partialMin);
+      max.accumulate(partialMax);
+      count.add(partialCount);
+    }
+  }
+}
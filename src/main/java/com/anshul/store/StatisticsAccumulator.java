@@ -0,0 +1,323 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.model.StatisticsResource;
+import com.anshul.util.FixedPoint;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Mutable accumulator used to merge partial aggregates (per bucket, per
+ * segment) into one StatisticsResource. Not thread safe, meant to be
+ * used by a single reader while traversing store. Amounts of single
+ * transactions are summed exactly in minor units of {@link FixedPoint#DEFAULT}
+ * and in BigDecimal when they have more decimal places.
+ * <p>
+ * When created with quantiles, amounts and {@link QuantileSketch}es are
+ * also merged into a histogram and p50, p95 and p99 are reported. When
+ * created with variance, count, mean and M2 are combined with Chan's
+ * parallel formula, one amount being Welford's update, and population
+ * variance and standard deviation are reported.
+ */
+public class StatisticsAccumulator {
+
+  private long count;
+  private BigDecimal sum = BigDecimal.ZERO;
+  private long minorUnitsSum;
+  private double max = Double.NEGATIVE_INFINITY;
+  private double min = Double.POSITIVE_INFINITY;
+  private final long[] histogram;
+  private final boolean variance;
+  private long momentCount;
+  private double mean;
+  private double m2;
+
+  public StatisticsAccumulator() {
+    this(false, false);
+  }
+
+  /**
+   * @param statisticsWindows decides quantiles and variance
+   */
+  public StatisticsAccumulator(StatisticsWindows statisticsWindows) {
+    this(statisticsWindows.isQuantilesEnabled(), statisticsWindows.isVarianceEnabled());
+  }
+
+  /**
+   * @param quantiles true to report quantiles
+   * @param variance  true to report variance and standard deviation
+   */
+  public StatisticsAccumulator(boolean quantiles, boolean variance) {
+    this.histogram = quantiles ? QuantileSketch.newHistogram() : null;
+    this.variance = variance;
+  }
+
+  /**
+   * Method helps merging single transaction into accumulator.
+   *
+   * @param amount transaction amount
+   */
+  public void accept(double amount) {
+    long minorUnits = FixedPoint.DEFAULT.toMinorUnits(amount);
+    if (minorUnits == FixedPoint.NOT_REPRESENTABLE) {
+      merge(1, amount, amount, amount);
+    } else {
+      long total = minorUnitsSum + minorUnits;
+      if (((minorUnitsSum ^ total) & (minorUnits ^ total)) < 0) {
+        // overflow, minor units summed so far move into sum
+        sum = sum.add(FixedPoint.DEFAULT.toBigDecimal(minorUnitsSum));
+        total = minorUnits;
+      }
+      minorUnitsSum = total;
+      count++;
+      if (amount > max) {
+        max = amount;
+      }
+      if (amount < min) {
+        min = amount;
+      }
+    }
+    sample(amount);
+  }
+
+  /**
+   * Method helps recording amount of a transaction merged through
+   * {@link #merge(long, double, double, double)} for quantiles and
+   * variance, no-op without them.
+   *
+   * @param amount transaction amount
+   */
+  public void sample(double amount) {
+    if (histogram != null) {
+      histogram[QuantileSketch.binOf(amount)]++;
+    }
+    if (variance) {
+      mergeMoments(1, amount, 0);
+    }
+  }
+
+  /**
+   * Method helps merging moments of a partial aggregate for variance,
+   * no-op without variance.
+   *
+   * @param partialCount number of transactions in partial aggregate
+   * @param partialMean  mean of partial aggregate
+   * @param partialM2    sum of squared deviations from partialMean
+   */
+  public void mergeMoments(long partialCount, double partialMean, double partialM2) {
+    if (!variance || partialCount == 0) {
+      return;
+    }
+    long total = momentCount + partialCount;
+    double delta = partialMean - mean;
+    mean += delta * partialCount / total;
+    m2 += partialM2 + delta * delta * ((double) momentCount * partialCount / total);
+    momentCount = total;
+  }
+
+  /**
+   * Method helps merging moments of a partial aggregate for variance,
+   * no-op without variance.
+   *
+   * @param moments moments of partial aggregate
+   */
+  public void merge(StripedMoments moments) {
+    if (variance && moments != null) {
+      moments.mergeInto(this);
+    }
+  }
+
+  /**
+   * Method helps merging sketch of a partial aggregate for quantiles,
+   * no-op without quantiles.
+   *
+   * @param sketch sketch of partial aggregate
+   */
+  public void merge(QuantileSketch sketch) {
+    if (histogram != null && sketch != null) {
+      sketch.mergeInto(histogram);
+    }
+  }
+
+  /**
+   * @return true if amounts passed to {@link #sample(double)} are used
+   */
+  public boolean isSampling() {
+    return histogram != null || variance;
+  }
+
+  /**
+   * Method helps merging partial aggregate into accumulator.
+   *
+   * @param partialCount number of transactions in partial aggregate
+   * @param partialSum   sum of partial aggregate
+   * @param partialMin   min of partial aggregate
+   * @param partialMax   max of partial aggregate
+   */
+  public void merge(long partialCount, double partialSum, double partialMin, double partialMax) {
+    if (partialCount == 0) {
+      return;
+    }
+    count += partialCount;
+    sum = sum.add(BigDecimal.valueOf(partialSum));
+    if (partialMax > max) {
+      max = partialMax;
+    }
+    if (partialMin < min) {
+      min = partialMin;
+    }
+  }
+
+  /**
+   * Method helps merging partial aggregate exported by another node with
+   * {@link #toPartialStatisticsResource()}. Sketch and moments are merged
+   * when both sides have them.
+   *
+   * @param partial partial aggregate of another node
+   */
+  public void merge(PartialStatisticsResource partial) {
+    if (partial.getCount() == 0) {
+      return;
+    }
+    count += partial.getCount();
+    sum = sum.add(new BigDecimal(partial.getSum()));
+    if (partial.getMax() > max) {
+      max = partial.getMax();
+    }
+    if (partial.getMin() < min) {
+      min = partial.getMin();
+    }
+    if (histogram != null && partial.getBins() != null) {
+      for (int i = 0; i < partial.getBins().length; i++) {
+        int bin = partial.getBins()[i];
+        if (bin >= 0 && bin < histogram.length) {
+          histogram[bin] += partial.getBinCounts()[i];
+        }
+      }
+    }
+    if (partial.getMomentCount() != null) {
+      mergeMoments(partial.getMomentCount(), partial.getMean(), partial.getM2());
+    }
+  }
+
+  /**
+   * @return partial aggregate of accumulator, exact sum, non empty bins
+   * and moments, to be merged by another node
+   */
+  public PartialStatisticsResource toPartialStatisticsResource() {
+    PartialStatisticsResource partial = new PartialStatisticsResource();
+    partial.setCount(count);
+    partial.setSum(exactSum().toPlainString());
+    if (count != 0) {
+      partial.setMin(min);
+      partial.setMax(max);
+    }
+    if (histogram != null) {
+      int bins = 0;
+      for (long binCount : histogram) {
+        if (binCount != 0) {
+          bins++;
+        }
+      }
+      partial.setBins(new int[bins]);
+      partial.setBinCounts(new long[bins]);
+      for (int bin = 0, i = 0; bin < histogram.length; bin++) {
+        if (histogram[bin] != 0) {
+          partial.getBins()[i] = bin;
+          partial.getBinCounts()[i++] = histogram[bin];
+        }
+      }
+    }
+    if (variance) {
+      partial.setMomentCount(momentCount);
+      partial.setMean(mean);
+      partial.setM2(m2);
+    }
+    return partial;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  private BigDecimal exactSum() {
+    return minorUnitsSum == 0 ? sum : sum.add(FixedPoint.DEFAULT.toBigDecimal(minorUnitsSum));
+  }
+
+  /**
+   * @return StatisticsResource with amounts rounded HALF_UP to 2 decimals
+   */
+  public StatisticsResource toStatisticsResource() {
+    StatisticsResource result = new StatisticsResource();
+    if (count != 0) {
+      BigDecimal total = exactSum();
+      BigDecimal avg = total.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+
+      result.setSum(String.valueOf(total.setScale(2, RoundingMode.HALF_UP)));
+      result.setAvg(String.valueOf(avg));
+      result.setMax(String.valueOf(BigDecimal.valueOf(max).setScale(2, RoundingMode.HALF_UP)));
+      result.setMin(String.valueOf(BigDecimal.valueOf(min).setScale(2, RoundingMode.HALF_UP)));
+      result.setCount(count);
+    } else {
+      result.setSum("0.00");
+      result.setAvg("0.00");
+      result.setMax("0.00");
+      result.setMin("0.00");
+      result.setCount(0L);
+    }
+    applyDistribution(result);
+    return result;
+  }
+
+  /**
+   * Method helps setting quantiles and variance of accumulator on result,
+   * each only if enabled. Quantiles are clamped to min and max.
+   *
+   * @param result resource to set p50, p95, p99, variance and stddev on
+   */
+  public void applyDistribution(StatisticsResource result) {
+    if (histogram != null) {
+      result.setP50(formatQuantile(0.50));
+      result.setP95(formatQuantile(0.95));
+      result.setP99(formatQuantile(0.99));
+    }
+    if (variance) {
+      // m2 of a constant sample may drift marginally below 0
+      double populationVariance = momentCount == 0 ? 0 : Math.max(0, m2 / momentCount);
+      result.setVariance(String.valueOf(BigDecimal.valueOf(populationVariance).setScale(2, RoundingMode.HALF_UP)));
+      result.setStddev(String.valueOf(BigDecimal.valueOf(Math.sqrt(populationVariance)).setScale(2, RoundingMode.HALF_UP)));
+    }
+  }
+
+  private String formatQuantile(double quantile) {
+    double value = QuantileSketch.quantile(histogram, quantile);
+    if (count == 0 || Double.isNaN(value)) {
+      return "0.00";
+    }
+    value = Math.max(min, Math.min(max, value));
+    return String.valueOf(BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP));
+  }
+}
@@ -0,0 +1,205 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.StatisticsSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publishes statistics of {@link TransactionStore} as an immutable
+ * {@link StatisticsSnapshot} per configured window so that readers get a
+ * volatile read instead of aggregating the window themselves.
+ * <p>
+ * A background thread refreshes snapshots every refresh-millis. A snapshot
+ * is also refreshed by the reader once the oldest transaction it counts
+ * has left the window, so expiry is never served late. With
+ * refresh-on-write a write marks snapshots dirty and next reader refreshes
+ * them as well. While another thread is refreshing, readers of a dirty
+ * snapshot get the previous one, readers of an expired snapshot wait for
+ * that refresh. A refresh-millis of 0 disables caching and every read
+ * aggregates the store.
+ */
+@Component
+public class StatisticsSnapshotCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsSnapshotCache.class);
+
+  private final TransactionStore transactionStore;
+  private final StatisticsWindows statisticsWindows;
+  private final long refreshMillis;
+  private final boolean refreshOnWrite;
+  /**
+   * Parallel to {@link StatisticsWindows#getWindowsInMillis()}.
+   */
+  private final WindowSnapshot[] windowSnapshots;
+  private ScheduledExecutorService refresher;
+
+  public StatisticsSnapshotCache(TransactionStore transactionStore, long refreshMillis, boolean refreshOnWrite) {
+    this(transactionStore, StatisticsWindows.defaultWindows(), refreshMillis, refreshOnWrite);
+  }
+
+  @Autowired
+  public StatisticsSnapshotCache(TransactionStore transactionStore, StatisticsWindows statisticsWindows,
+                                 @Value("${transaction.statistics.snapshot.refresh-millis:10}") long refreshMillis,
+                                 @Value("${transaction.statistics.snapshot.refresh-on-write:true}") boolean refreshOnWrite) {
+    this.transactionStore = transactionStore;
+    this.statisticsWindows = statisticsWindows;
+    this.refreshMillis = refreshMillis;
+    this.refreshOnWrite = refreshOnWrite;
+    long[] windowsInMillis = statisticsWindows.getWindowsInMillis();
+    this.windowSnapshots = new WindowSnapshot[windowsInMillis.length];
+    for (int i = 0; i < windowsInMillis.length; i++) {
+      windowSnapshots[i] = new WindowSnapshot(windowsInMillis[i]);
+    }
+  }
+
+  @PostConstruct
+  public void start() {
+    if (refreshMillis <= 0) {
+      return;
+    }
+    refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "statistics-snapshot-refresher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    refresher.scheduleAtFixedRate(this::scheduledRefresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
+  }
+
+  /**
+   * Method helps telling cache that store has been modified.
+   */
+  public void markDirty() {
+    if (!refreshOnWrite) {
+      return;
+    }
+    for (WindowSnapshot windowSnapshot : windowSnapshots) {
+      if (!windowSnapshot.dirty) {
+        windowSnapshot.dirty = true;
+      }
+    }
+  }
+
+  /**
+   * @return latest published snapshot of default window, refreshed first if it is dirty
+   */
+  public StatisticsSnapshot getSnapshot() {
+    return getSnapshot(statisticsWindows.getDefaultWindowInMillis());
+  }
+
+  /**
+   * @param windowInMillis one of {@link StatisticsWindows#getWindowsInMillis()}
+   * @return latest published snapshot of window, refreshed first if it is dirty
+   * @throws IllegalArgumentException if window is not configured
+   */
+  public StatisticsSnapshot getSnapshot(long windowInMillis) {
+    int index = statisticsWindows.indexOf(windowInMillis);
+    if (index < 0) {
+      throw new IllegalArgumentException("window is not configured: " + windowInMillis);
+    }
+    if (refreshMillis <= 0) {
+      return transactionStore.getStatistics(System.currentTimeMillis(), windowInMillis);
+    }
+    WindowSnapshot windowSnapshot = windowSnapshots[index];
+    StatisticsSnapshot current = windowSnapshot.snapshot;
+    if (current != null && !windowSnapshot.dirty && System.currentTimeMillis() < current.getValidUntilMilli()) {
+      return current;
+    }
+    if (current == null) {
+      return refresh(windowSnapshot);
+    }
+    if (System.currentTimeMillis() >= current.getValidUntilMilli()) {
+      // expired snapshot is never served, wait for refresh in progress
+      windowSnapshot.refreshLock.lock();
+    } else if (!windowSnapshot.refreshLock.tryLock()) {
+      return current;
+    }
+    try {
+      StatisticsSnapshot latest = windowSnapshot.snapshot;
+      if (latest != current && !windowSnapshot.dirty && System.currentTimeMillis() < latest.getValidUntilMilli()) {
+        // refreshed by another thread meanwhile
+        return latest;
+      }
+      return refresh(windowSnapshot);
+    } finally {
+      windowSnapshot.refreshLock.unlock();
+    }
+  }
+
+  private void scheduledRefresh() {
+    for (WindowSnapshot windowSnapshot : windowSnapshots) {
+      try {
+        refresh(windowSnapshot);
+      } catch (RuntimeException e) {
+        // keep refresher alive, readers keep getting previous snapshot
+        LOGGER.error("statistics snapshot refresh failed", e);
+      }
+    }
+  }
+
+  private StatisticsSnapshot refresh(WindowSnapshot windowSnapshot) {
+    windowSnapshot.refreshLock.lock();
+    try {
+      // cleared before reading store, so a concurrent write marks it again
+      windowSnapshot.dirty = false;
+      StatisticsSnapshot fresh = transactionStore.getStatistics(System.currentTimeMillis(),
+          windowSnapshot.windowInMillis);
+      windowSnapshot.snapshot = fresh;
+      return fresh;
+    } finally {
+      windowSnapshot.refreshLock.unlock();
+    }
+  }
+
+  /**
+   * Published snapshot of a single window.
+   */
+  private static final class WindowSnapshot {
+    private final long windowInMillis;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile StatisticsSnapshot snapshot;
+    private volatile boolean dirty = true;
+
+    private WindowSnapshot(long windowInMillis) {
+      this.windowInMillis = windowInMillis;
+    }
+  }
+}
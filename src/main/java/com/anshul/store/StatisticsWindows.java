@@ -0,0 +1,193 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Statistics stores are asked to serve: window lengths, see
+ * transaction.window.lengths and transaction.window.default, and which
+ * optional statistics are tracked, see transaction.statistics.quantiles
+ * and transaction.statistics.variance. Stores retain transactions for the
+ * longest window, anything older is stale.
+ */
+@Component
+public class StatisticsWindows {
+
+  public static final long DEFAULT_WINDOW_IN_MILLI = 60000;
+
+  private final long[] windowsInMillis;
+  private final long defaultWindowInMillis;
+  private final boolean quantilesEnabled;
+  private final boolean varianceEnabled;
+
+  public StatisticsWindows(String[] lengths, String defaultWindow) {
+    this(lengths, defaultWindow, false, false);
+  }
+
+  @Autowired
+  public StatisticsWindows(@Value("${transaction.window.lengths:60s}") String[] lengths,
+                           @Value("${transaction.window.default:60s}") String defaultWindow,
+                           @Value("${transaction.statistics.quantiles:false}") boolean quantilesEnabled,
+                           @Value("${transaction.statistics.variance:false}") boolean varianceEnabled) {
+    this(parseDuration(defaultWindow), Arrays.stream(lengths).mapToLong(StatisticsWindows::parseDuration).toArray(),
+        quantilesEnabled, varianceEnabled);
+  }
+
+  /**
+   * @param defaultWindowInMillis window of requests not asking for one, added to windows if missing
+   * @param windowsInMillis       window lengths in milliseconds
+   */
+  public StatisticsWindows(long defaultWindowInMillis, long... windowsInMillis) {
+    this(defaultWindowInMillis, windowsInMillis, false, false);
+  }
+
+  private StatisticsWindows(long defaultWindowInMillis, long[] windowsInMillis, boolean quantilesEnabled,
+                            boolean varianceEnabled) {
+    long[] windows = Arrays.copyOf(windowsInMillis, windowsInMillis.length + 1);
+    windows[windowsInMillis.length] = defaultWindowInMillis;
+    for (long window : windows) {
+      if (window <= 0) {
+        throw new IllegalArgumentException("window length must be positive: " + window);
+      }
+    }
+    this.windowsInMillis = Arrays.stream(windows).sorted().distinct().toArray();
+    this.defaultWindowInMillis = defaultWindowInMillis;
+    this.quantilesEnabled = quantilesEnabled;
+    this.varianceEnabled = varianceEnabled;
+  }
+
+  /**
+   * @param enabled true to track p50, p95 and p99
+   * @return copy of these windows
+   */
+  public StatisticsWindows withQuantiles(boolean enabled) {
+    return new StatisticsWindows(defaultWindowInMillis, windowsInMillis, enabled, varianceEnabled);
+  }
+
+  /**
+   * @param enabled true to track variance and standard deviation
+   * @return copy of these windows
+   */
+  public StatisticsWindows withVariance(boolean enabled) {
+    return new StatisticsWindows(defaultWindowInMillis, windowsInMillis, quantilesEnabled, enabled);
+  }
+
+  /**
+   * @return single 60 seconds window
+   */
+  public static StatisticsWindows defaultWindows() {
+    return new StatisticsWindows(DEFAULT_WINDOW_IN_MILLI);
+  }
+
+  /**
+   * @return true if stores report p50, p95 and p99
+   */
+  public boolean isQuantilesEnabled() {
+    return quantilesEnabled;
+  }
+
+  /**
+   * @return true if stores report variance and standard deviation
+   */
+  public boolean isVarianceEnabled() {
+    return varianceEnabled;
+  }
+
+  public long getDefaultWindowInMillis() {
+    return defaultWindowInMillis;
+  }
+
+  /**
+   * @return configured window lengths, ascending
+   */
+  public long[] getWindowsInMillis() {
+    return windowsInMillis.clone();
+  }
+
+  /**
+   * @return longest window, how long stores keep transactions
+   */
+  public long getRetentionInMillis() {
+    return windowsInMillis[windowsInMillis.length - 1];
+  }
+
+  /**
+   * @return position of window in {@link #getWindowsInMillis()}, negative if not configured
+   */
+  public int indexOf(long windowInMillis) {
+    return Arrays.binarySearch(windowsInMillis, windowInMillis);
+  }
+
+  /**
+   * Method helps mapping window request parameter to its length.
+   *
+   * @param window window such as 10s, null for default window
+   * @return window length in milliseconds
+   * @throws IllegalArgumentException if window is malformed or not configured
+   */
+  public long resolve(String window) {
+    if (window == null) {
+      return defaultWindowInMillis;
+    }
+    long windowInMillis = parseDuration(window);
+    if (indexOf(windowInMillis) < 0) {
+      throw new IllegalArgumentException("window is not configured: " + window);
+    }
+    return windowInMillis;
+  }
+
+  /**
+   * @param duration length with unit ms, s, m or h, e.g. 500ms, 10s, 5m
+   * @return length in milliseconds
+   * @throws IllegalArgumentException if duration is malformed
+   */
+  public static long parseDuration(String duration) {
+    String value = duration.trim().toLowerCase(Locale.ROOT);
+    int unitStart = 0;
+    while (unitStart < value.length() && Character.isDigit(value.charAt(unitStart))) {
+      unitStart++;
+    }
+    if (unitStart == 0 || unitStart > 12) {
+      throw new IllegalArgumentException("malformed duration: " + duration);
+    }
+    long amount = Long.parseLong(value.substring(0, unitStart));
+    switch (value.substring(unitStart)) {
+      case "ms":
+        return amount;
+      case "s":
+        return amount * 1000;
+      case "m":
+        return amount * 60000;
+      case "h":
+        return amount * 3600000;
+      default:
+        throw new IllegalArgumentException("malformed duration: " + duration);
+    }
+  }
+}
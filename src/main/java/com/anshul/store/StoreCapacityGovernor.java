@@ -0,0 +1,143 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for {@link TransactionStore}. Limits number of live
+ * transactions to max-entries and their memory, as estimated by
+ * {@link TransactionStore#bytesPerTransaction()}, to max-bytes; 0 disables
+ * a limit. Both only apply to stores keeping every transaction, since
+ * memory of aggregating stores does not grow with transactions.
+ * Transactions beyond the limit are rejected. The client is told to retry
+ * once the oldest stored transaction has left the window.
+ * <p>
+ * Store size is sampled every sample-millis on a scheduler thread,
+ * transactions admitted since last sample are added on top, so admission
+ * costs a LongAdder increment rather than a store traversal.
+ */
+@Component
+public class StoreCapacityGovernor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StoreCapacityGovernor.class);
+  private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
+  private final TransactionStore transactionStore;
+  private final long maxEntries;
+  private final HttpStatus rejectStatus;
+  private final LongAdder admittedSinceSample = new LongAdder();
+  private final Counter rejectedCounter;
+  private volatile long sampledSize;
+  private volatile long retryAfterSeconds = 1;
+
+  @Autowired
+  public StoreCapacityGovernor(TransactionStore transactionStore, MeterRegistry meterRegistry,
+                               @Value("${transaction.capacity.max-entries:0}") long maxEntries,
+                               @Value("${transaction.capacity.max-bytes:0}") long maxBytes,
+                               @Value("${transaction.capacity.reject-status:503}") int rejectStatus) {
+    this.transactionStore = transactionStore;
+    this.maxEntries = effectiveMaxEntries(maxEntries, maxBytes, transactionStore.bytesPerTransaction());
+    this.rejectStatus = HttpStatus.valueOf(rejectStatus);
+    this.rejectedCounter = Counter.builder("transaction.capacity.rejected")
+        .description("valid transactions rejected because store was at capacity")
+        .register(meterRegistry);
+    LOGGER.info("transaction store admits at most {} live transactions", this.maxEntries == Long.MAX_VALUE
+        ? "unlimited" : String.valueOf(this.maxEntries));
+  }
+
+  /**
+   * Method helps reserving room for transactions about to be stored.
+   *
+   * @param transactions number of transactions caller wants to store
+   * @return number of transactions admitted, first ones of request, rest is rejected
+   */
+  public int admit(int transactions) {
+    if (maxEntries == Long.MAX_VALUE || transactions == 0) {
+      return transactions;
+    }
+    long room = maxEntries - sampledSize - admittedSinceSample.sum();
+    int admitted = (int) Math.max(0, Math.min(room, transactions));
+    if (admitted > 0) {
+      admittedSinceSample.add(admitted);
+    }
+    if (admitted < transactions) {
+      rejectedCounter.increment(transactions - admitted);
+    }
+    return admitted;
+  }
+
+  /**
+   * Scheduled sample of store size, see transaction.capacity.sample-millis.
+   */
+  @Scheduled(fixedDelayString = "${transaction.capacity.sample-millis:100}")
+  public void sample() {
+    if (maxEntries == Long.MAX_VALUE) {
+      return;
+    }
+    // transactions admitted while sampling are counted twice, which errs on safe side
+    long admitted = admittedSinceSample.sum();
+    sampledSize = transactionStore.size();
+    admittedSinceSample.add(-admitted);
+    long nextExpiryMilli = transactionStore.nextExpiryMilli();
+    long untilExpiry = nextExpiryMilli == Long.MAX_VALUE ? 0 : nextExpiryMilli - System.currentTimeMillis();
+    retryAfterSeconds = Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS,
+        TimeUnit.MILLISECONDS.toSeconds(untilExpiry + TimeUnit.SECONDS.toMillis(1) - 1)));
+  }
+
+  /**
+   * @return HTTP status answering rejected transactions, 429 or 503
+   */
+  public HttpStatus getRejectStatus() {
+    return rejectStatus;
+  }
+
+  /**
+   * @return seconds until oldest stored transaction leaves window, for Retry-After
+   */
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  private static long effectiveMaxEntries(long maxEntries, long maxBytes, long bytesPerTransaction) {
+    if (bytesPerTransaction == 0) {
+      return Long.MAX_VALUE;
+    }
+    long limit = maxEntries > 0 ? maxEntries : Long.MAX_VALUE;
+    if (maxBytes > 0) {
+      limit = Math.min(limit, maxBytes / bytesPerTransaction);
+    }
+    return limit;
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Count, mean and sum of squared deviations (M2) of amounts, kept with
+ * Welford's online update. Writers are spread over striped cells like
+ * LongAdder, each cell guarded by its own monitor, and cells are combined
+ * with Chan's parallel formula when read, so concurrent writers of the same
+ * bucket rarely meet on a lock and no amount is ever read twice.
+ */
+public final class StripedMoments {
+
+  private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+  private final Cell[] cells = new Cell[STRIPES];
+
+  public StripedMoments() {
+    for (int i = 0; i < STRIPES; i++) {
+      cells[i] = new Cell();
+    }
+  }
+
+  /**
+   * Method helps recording single amount.
+   *
+   * @param amount transaction amount
+   */
+  public void add(double amount) {
+    Cell cell = cells[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+    synchronized (cell) {
+      cell.count++;
+      double delta = amount - cell.mean;
+      cell.mean += delta / cell.count;
+      cell.m2 += delta * (amount - cell.mean);
+    }
+  }
+
+  /**
+   * Method helps merging moments of every cell into accumulator.
+   *
+   * @param accumulator accumulator of the window
+   */
+  public void mergeInto(StatisticsAccumulator accumulator) {
+    for (Cell cell : cells) {
+      synchronized (cell) {
+        accumulator.mergeMoments(cell.count, cell.mean, cell.m2);
+      }
+    }
+  }
+
+  /**
+   * Method helps writing non empty cells into a snapshot.
+   *
+   * @param output snapshot being written
+   * @throws IOException if snapshot can not be written
+   */
+  public void writeTo(DataOutput output) throws IOException {
+    for (Cell cell : cells) {
+      long count;
+      double mean;
+      double m2;
+      synchronized (cell) {
+        count = cell.count;
+        mean = cell.mean;
+        m2 = cell.m2;
+      }
+      if (count > 0) {
+        output.writeLong(count);
+        output.writeDouble(mean);
+        output.writeDouble(m2);
+      }
+    }
+    output.writeLong(0);
+  }
+
+  /**
+   * Method helps merging cells written by {@link #writeTo(DataOutput)},
+   * snapshot may come from a machine of a different number of cells.
+   *
+   * @param input snapshot being read
+   * @throws IOException if snapshot can not be read
+   */
+  public void readFrom(DataInput input) throws IOException {
+    Cell cell = cells[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+    for (long count = input.readLong(); count != 0; count = input.readLong()) {
+      double mean = input.readDouble();
+      double m2 = input.readDouble();
+      synchronized (cell) {
+        long total = cell.count + count;
+        double delta = mean - cell.mean;
+        cell.mean += delta * count / total;
+        cell.m2 += m2 + delta * delta * ((double) cell.count * count / total);
+        cell.count = total;
+      }
+    }
+  }
+
+  private static final class Cell {
+    private long count;
+    private double mean;
+    private double m2;
+  }
+}
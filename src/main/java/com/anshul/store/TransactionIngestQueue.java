@@ -0,0 +1,265 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional asynchronous ingest of single transactions. Request threads
+ * validate and admit a transaction, publish it into a bounded ring buffer
+ * and answer 201 right away; one aggregator thread drains the buffer and
+ * stores transactions in batches of at most batch-size, so stores only
+ * ever see a single writer for single transactions. Disabled unless
+ * transaction.ingest.async is set, and while the write-ahead log awaits
+ * sync, whose writers must not be answered before their transaction is
+ * forced.
+ * <p>
+ * Ring buffer of capacity slots, rounded up to a power of two, is held in
+ * primitive arrays. Producers claim a sequence by CAS on the producer
+ * cursor, write the slot and publish it by an ordered store of the
+ * sequence into the availability array, which the consumer reads in order,
+ * as in the LMAX Disruptor multi-producer sequencer. A full buffer is
+ * reported to the producer instead of blocking it. An idle consumer spins
+ * briefly and then parks, producers unpark it.
+ * <p>
+ * Statistics include a transaction once the aggregator stored it, usually
+ * within microseconds of the answer. A transaction whose window ended in
+ * between is discarded by the store, counted as
+ * transaction.ingest.discarded.
+ */
+@Component
+public class TransactionIngestQueue {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransactionIngestQueue.class);
+
+  public static final int DEFAULT_CAPACITY = 65536;
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+  private static final int SPINS_BEFORE_PARK = 100;
+  private static final long PARK_NANOS = 1000000;
+
+  private final boolean enabled;
+  private final int mask;
+  private final int batchSize;
+  private final double[] amounts;
+  private final long[] epochMillis;
+  private final String[] keys;
+  private final AtomicLongArray published;
+  private final AtomicLong producerSequence = new AtomicLong();
+  private final AtomicLong consumerSequence = new AtomicLong();
+  private volatile long storedSequence;
+  private volatile boolean consumerParked;
+  private volatile boolean running;
+  private volatile Thread aggregator;
+  private final Counter discardedCounter;
+  private final Counter fullCounter;
+
+  public TransactionIngestQueue(int capacity, int batchSize, MeterRegistry meterRegistry) {
+    this(true, capacity, batchSize, meterRegistry);
+  }
+
+  @Autowired
+  public TransactionIngestQueue(@Value("${transaction.ingest.async:false}") boolean enabled,
+                                @Value("${transaction.ingest.capacity:" + DEFAULT_CAPACITY + "}") int capacity,
+                                @Value("${transaction.ingest.batch-size:" + DEFAULT_BATCH_SIZE + "}") int batchSize,
+                                MeterRegistry meterRegistry, TransactionWriteAheadLog transactionWriteAheadLog) {
+    this(enabled && !transactionWriteAheadLog.isAwaitSync(), capacity, batchSize, meterRegistry);
+    if (enabled && transactionWriteAheadLog.isAwaitSync()) {
+      LOGGER.info("asynchronous ingest is disabled, write-ahead log awaits sync");
+    }
+  }
+
+  private TransactionIngestQueue(boolean enabled, int capacity, int batchSize, MeterRegistry meterRegistry) {
+    if (capacity <= 1 || capacity > 1 << 30 || batchSize <= 0) {
+      throw new IllegalArgumentException("capacity must be within 2 and 2^30, batch-size positive");
+    }
+    int slots = Integer.highestOneBit(capacity - 1) << 1;
+    this.enabled = enabled;
+    this.mask = enabled ? slots - 1 : 0;
+    this.batchSize = Math.min(batchSize, slots);
+    this.amounts = new double[enabled ? slots : 0];
+    this.epochMillis = new long[amounts.length];
+    this.keys = new String[amounts.length];
+    this.published = new AtomicLongArray(amounts.length);
+    for (int i = 0; i < amounts.length; i++) {
+      published.set(i, -1);
+    }
+    this.discardedCounter = Counter.builder("transaction.ingest.discarded")
+        .description("asynchronously ingested transactions discarded as stale by store")
+        .register(meterRegistry);
+    this.fullCounter = Counter.builder("transaction.ingest.full")
+        .description("transactions refused because ingest queue was full")
+        .register(meterRegistry);
+    Gauge.builder("transaction.ingest.pending", this, TransactionIngestQueue::pending)
+        .description("transactions published but not yet stored")
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Method helps start aggregator thread, a no-op if disabled or started.
+   *
+   * @param handler stores a batch of transactions, amounts[i] belongs to epochMillis[i] and keys[i]
+   */
+  public synchronized void start(BatchHandler handler) {
+    if (!enabled || aggregator != null) {
+      return;
+    }
+    running = true;
+    Thread thread = new Thread(() -> drainLoop(handler), "transaction-aggregator");
+    thread.setDaemon(true);
+    aggregator = thread;
+    thread.start();
+    LOGGER.info("transactions ingested asynchronously through {} slots in batches of {}", mask + 1, batchSize);
+  }
+
+  /**
+   * Method helps publish one validated transaction for the aggregator.
+   *
+   * @param amount     transaction amount
+   * @param epochMilli transaction timestamp in epoch milliseconds
+   * @param key        optional transaction key, may be null
+   * @return true if published, false if buffer is full
+   */
+  public boolean offer(double amount, long epochMilli, String key) {
+    long sequence;
+    do {
+      sequence = producerSequence.get();
+      if (sequence - consumerSequence.get() > mask) {
+        fullCounter.increment();
+        return false;
+      }
+    } while (!producerSequence.compareAndSet(sequence, sequence + 1));
+    int slot = (int) sequence & mask;
+    amounts[slot] = amount;
+    epochMillis[slot] = epochMilli;
+    keys[slot] = key;
+    published.lazySet(slot, sequence);
+    if (consumerParked) {
+      LockSupport.unpark(aggregator);
+    }
+    return true;
+  }
+
+  /**
+   * Method helps wait until every transaction published before the call is
+   * stored, e.g. before clearing stores.
+   */
+  public void awaitStored() {
+    if (aggregator == null) {
+      return;
+    }
+    long target = producerSequence.get();
+    while (storedSequence < target && running) {
+      LockSupport.unpark(aggregator);
+      LockSupport.parkNanos(PARK_NANOS / 10);
+    }
+  }
+
+  public long pending() {
+    return producerSequence.get() - storedSequence;
+  }
+
+  private void drainLoop(BatchHandler handler) {
+    double[] batchAmounts = new double[batchSize];
+    long[] batchEpochMillis = new long[batchSize];
+    String[] batchKeys = new String[batchSize];
+    int idleSpins = 0;
+    // after stop is requested everything published so far is still stored
+    while (running || consumerSequence.get() < producerSequence.get()) {
+      long next = consumerSequence.get();
+      int length = 0;
+      while (length < batchSize && published.get((int) (next + length) & mask) == next + length) {
+        int slot = (int) (next + length) & mask;
+        batchAmounts[length] = amounts[slot];
+        batchEpochMillis[length] = epochMillis[slot];
+        batchKeys[length] = keys[slot];
+        keys[slot] = null;
+        length++;
+      }
+      if (length == 0) {
+        if (++idleSpins > SPINS_BEFORE_PARK) {
+          consumerParked = true;
+          if (published.get((int) next & mask) != next) {
+            LockSupport.parkNanos(this, PARK_NANOS);
+          }
+          consumerParked = false;
+        }
+        continue;
+      }
+      idleSpins = 0;
+      // slots are free for producers once copied
+      consumerSequence.lazySet(next + length);
+      try {
+        int stored = handler.handle(batchAmounts, batchEpochMillis, batchKeys, length);
+        if (stored < length) {
+          discardedCounter.increment(length - stored);
+        }
+      } catch (RuntimeException e) {
+        LOGGER.error("<<===== batch of {} transactions could not be stored", length, e);
+      }
+      Arrays.fill(batchKeys, 0, length, null);
+      storedSequence = next + length;
+    }
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    Thread thread = aggregator;
+    if (thread == null) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(thread);
+    thread.join();
+  }
+
+  /**
+   * Stores a batch drained from the ring buffer.
+   */
+  public interface BatchHandler {
+
+    /**
+     * Arrays are owned by queue again once handler returns, handler may
+     * overwrite their first length elements meanwhile.
+     *
+     * @return number of transactions stored, others were discarded as stale
+     */
+    int handle(double[] amounts, long[] epochMillis, String[] keys, int length);
+  }
+}
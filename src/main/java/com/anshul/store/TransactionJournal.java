@@ -0,0 +1,376 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.StatisticsResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Optional journal of accepted transactions kept for audit after the
+ * window has moved on, answering what statistics of a window were at any
+ * past instant. Disabled unless transaction.journal.enabled is set.
+ * <p>
+ * Journal is a rolling set of fixed size segment files mapped into memory
+ * with FileChannel.map, at most max-segments of them, the oldest segment
+ * is deleted when a new one is opened. Record of 20 bytes: long arrival
+ * epoch milli, int arrival minus transaction epoch milli, double amount.
+ * Arrival is taken under the journal lock and never decreases, so records
+ * are ordered by arrival and a query binary searches the first record
+ * arriving within the window and reads mapped memory in place, without
+ * copying records onto the heap. A record with CLEARED as offset marks
+ * DELETE /transactions, records arriving before it no longer count.
+ * <p>
+ * Arrival is written last and a segment is zero filled, so the first zero
+ * arrival ends a segment, including one torn by a crash. Writes reach the
+ * page cache and survive a crash of the JVM, but are only forced to disk
+ * when a segment is closed.
+ */
+@Component
+public class TransactionJournal {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransactionJournal.class);
+
+  static final String SEGMENT_PREFIX = "journal-";
+  static final String SEGMENT_SUFFIX = ".dat";
+  private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES + Double.BYTES;
+  private static final int OFFSET = Long.BYTES;
+  private static final int AMOUNT = Long.BYTES + Integer.BYTES;
+  private static final int CLEARED = Integer.MIN_VALUE;
+  public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+  public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+  private final boolean enabled;
+  private final Path directory;
+  private final int segmentRecords;
+  private final int maxSegments;
+  private final StatisticsWindows statisticsWindows;
+  private final Object lock = new Object();
+  private final List<Segment> segments = new CopyOnWriteArrayList<>();
+  private Segment activeSegment;
+  private long lastArrivalMilli;
+
+  public TransactionJournal(Path directory, long segmentBytes, int maxSegments, StatisticsWindows statisticsWindows) {
+    this(true, directory, segmentBytes, maxSegments, statisticsWindows);
+  }
+
+  @Autowired
+  public TransactionJournal(@Value("${transaction.journal.enabled:false}") boolean enabled,
+                            @Value("${transaction.journal.directory:journal}") String directory,
+                            @Value("${transaction.journal.segment-bytes:" + DEFAULT_SEGMENT_BYTES + "}") long segmentBytes,
+                            @Value("${transaction.journal.max-segments:" + DEFAULT_MAX_SEGMENTS + "}") int maxSegments,
+                            StatisticsWindows statisticsWindows) {
+    this(enabled, Paths.get(directory), segmentBytes, maxSegments, statisticsWindows);
+  }
+
+  private TransactionJournal(boolean enabled, Path directory, long segmentBytes, int maxSegments,
+                             StatisticsWindows statisticsWindows) {
+    if (segmentBytes < RECORD_SIZE || segmentBytes > Integer.MAX_VALUE || maxSegments < 2) {
+      throw new IllegalArgumentException("segment-bytes must hold a record and fit into 2GB, max-segments at least 2");
+    }
+    this.enabled = enabled;
+    this.directory = directory;
+    this.segmentRecords = (int) (segmentBytes / RECORD_SIZE);
+    this.maxSegments = maxSegments;
+    this.statisticsWindows = statisticsWindows;
+  }
+
+  /**
+   * Method helps map segments of previous runs for queries and open a new
+   * segment for appends.
+   *
+   * @throws IOException if directory or a segment can not be mapped
+   */
+  @PostConstruct
+  public void open() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    Files.createDirectories(directory);
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        paths.add(path);
+      }
+    }
+    Collections.sort(paths, (a, b) -> Long.compare(openedMilliOf(a), openedMilliOf(b)));
+    long records = 0;
+    synchronized (lock) {
+      for (Path path : paths) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+          Segment segment = new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+          segment.count = segment.writtenRecords();
+          if (segment.count > 0) {
+            lastArrivalMilli = Math.max(lastArrivalMilli, segment.arrivalAt(segment.count - 1));
+          }
+          records += segment.count;
+          segments.add(segment);
+        }
+      }
+      openSegment(System.currentTimeMillis());
+      deleteOldestSegments();
+    }
+    LOGGER.info("transaction journal at {} holds {} transactions in {} segments", directory.toAbsolutePath(), records,
+        segments.size());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Method helps journal one accepted transaction.
+   *
+   * @param amount     transaction amount
+   * @param epochMilli transaction timestamp in epoch milliseconds
+   */
+  public void append(double amount, long epochMilli) {
+    if (!enabled) {
+      return;
+    }
+    synchronized (lock) {
+      long arrivalMilli = arrivalMilli();
+      put(arrivalMilli, (int) (arrivalMilli - epochMilli), amount);
+    }
+  }
+
+  /**
+   * Method helps journal batch of accepted transactions, amounts[i] belongs
+   * to epochMillis[i].
+   *
+   * @param amounts     transaction amounts
+   * @param epochMillis transaction timestamps in epoch milliseconds
+   * @param length      number of transactions to read from arrays
+   */
+  public void appendAll(double[] amounts, long[] epochMillis, int length) {
+    if (!enabled || length == 0) {
+      return;
+    }
+    synchronized (lock) {
+      long arrivalMilli = arrivalMilli();
+      for (int i = 0; i < length; i++) {
+        put(arrivalMilli, (int) (arrivalMilli - epochMillis[i]), amounts[i]);
+      }
+    }
+  }
+
+  /**
+   * Method helps journal that every transaction was deleted, statistics at
+   * a later instant do not count transactions arrived before.
+   */
+  public void markCleared() {
+    if (!enabled) {
+      return;
+    }
+    synchronized (lock) {
+      put(arrivalMilli(), CLEARED, 0);
+    }
+  }
+
+  private long arrivalMilli() {
+    // wall clock may step back, records must stay ordered by arrival
+    lastArrivalMilli = Math.max(lastArrivalMilli, System.currentTimeMillis());
+    return lastArrivalMilli;
+  }
+
+  private void put(long arrivalMilli, int offset, double amount) {
+    if (activeSegment.count == segmentRecords) {
+      rollSegment(arrivalMilli);
+    }
+    int position = activeSegment.count * RECORD_SIZE;
+    MappedByteBuffer buffer = activeSegment.buffer;
+    buffer.putInt(position + OFFSET, offset);
+    buffer.putDouble(position + AMOUNT, amount);
+    buffer.putLong(position, arrivalMilli);
+    // volatile write publishes record to queries
+    activeSegment.count++;
+  }
+
+  private void rollSegment(long nowMilli) {
+    try {
+      activeSegment.buffer.force();
+      openSegment(nowMilli);
+    } catch (IOException e) {
+      throw new IllegalStateException("transaction journal segment can not be opened", e);
+    }
+    deleteOldestSegments();
+  }
+
+  private void deleteOldestSegments() {
+    while (segments.size() > maxSegments) {
+      Segment oldest = segments.remove(0);
+      try {
+        // a query still reading its mapping is not affected by deletion
+        Files.deleteIfExists(oldest.path);
+      } catch (IOException e) {
+        LOGGER.error("<<===== journal segment {} could not be deleted {}", oldest.path, e.getMessage());
+      }
+    }
+  }
+
+  private void openSegment(long nowMilli) throws IOException {
+    while (Files.exists(directory.resolve(SEGMENT_PREFIX + nowMilli + SEGMENT_SUFFIX))) {
+      nowMilli++;
+    }
+    Path path = directory.resolve(SEGMENT_PREFIX + nowMilli + SEGMENT_SUFFIX);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      activeSegment = new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE));
+    }
+    segments.add(activeSegment);
+  }
+
+  /**
+   * Method helps calculate statistics as they were at a past instant:
+   * transactions not before atMilli - windowInMillis and not after atMilli,
+   * arrived by atMilli and not deleted by then.
+   *
+   * @param atMilli        end of window in epoch milliseconds
+   * @param windowInMillis window length
+   * @return StatisticsResource of window ending at atMilli
+   * @throws IllegalStateException if journal is disabled
+   */
+  public StatisticsResource getStatistics(long atMilli, long windowInMillis) {
+    if (!enabled) {
+      throw new IllegalStateException("transaction journal is disabled");
+    }
+    long fromMilli = atMilli - windowInMillis;
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(statisticsWindows);
+    for (Segment segment : segments) {
+      int count = segment.count;
+      if (count == 0 || segment.arrivalAt(count - 1) < fromMilli) {
+        continue;
+      }
+      if (segment.arrivalAt(0) > atMilli) {
+        break;
+      }
+      MappedByteBuffer buffer = segment.buffer;
+      // a transaction never arrives before its timestamp, so none of the window arrived before fromMilli
+      for (int i = segment.firstArrivedNotBefore(fromMilli, count); i < count; i++) {
+        int position = i * RECORD_SIZE;
+        long arrivalMilli = buffer.getLong(position);
+        if (arrivalMilli > atMilli) {
+          break;
+        }
+        int offset = buffer.getInt(position + OFFSET);
+        if (offset == CLEARED) {
+          accumulator = new StatisticsAccumulator(statisticsWindows);
+          continue;
+        }
+        long epochMilli = arrivalMilli - offset;
+        if (epochMilli < fromMilli || epochMilli > atMilli) {
+          continue;
+        }
+        accumulator.accept(buffer.getDouble(position + AMOUNT));
+      }
+    }
+    return accumulator.toStatisticsResource();
+  }
+
+  private static long openedMilliOf(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  /**
+   * Method helps force active segment to disk.
+   */
+  @PreDestroy
+  public void close() {
+    if (!enabled) {
+      return;
+    }
+    synchronized (lock) {
+      if (activeSegment != null) {
+        activeSegment.buffer.force();
+      }
+    }
+  }
+
+  /**
+   * One mapped segment file, records [0, count) are complete.
+   */
+  private static final class Segment {
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private volatile int count;
+
+    private Segment(Path path, MappedByteBuffer buffer) {
+      this.path = path;
+      this.buffer = buffer;
+    }
+
+    private long arrivalAt(int record) {
+      return buffer.getLong(record * RECORD_SIZE);
+    }
+
+    /**
+     * Written records are a prefix of the segment, first zero arrival ends it.
+     */
+    private int writtenRecords() {
+      int low = 0;
+      int high = buffer.capacity() / RECORD_SIZE;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (arrivalAt(middle) != 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    private int firstArrivedNotBefore(long arrivalMilli, int count) {
+      int low = 0;
+      int high = count;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (arrivalAt(middle) < arrivalMilli) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+}
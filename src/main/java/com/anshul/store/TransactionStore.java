@@ -0,0 +1,180 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Contract for the in-memory structure holding transactions of the
+ * current statistics window. Implementations are selected through the
+ * {@code transaction.store.type} property.
+ */
+public interface TransactionStore {
+
+  /**
+   * Method helps add new transaction into store.
+   *
+   * @param amount     transaction amount
+   * @param epochMilli transaction timestamp in epoch milliseconds
+   * @return true if stored, if discard return false
+   */
+  boolean addElement(double amount, long epochMilli);
+
+  /**
+   * Method helps add batch of transactions into store, amounts[i] belongs
+   * to epochMillis[i].
+   *
+   * @param amounts     transaction amounts
+   * @param epochMillis transaction timestamps in epoch milliseconds
+   * @param length      number of transactions to read from arrays
+   * @return number of transactions stored
+   */
+  default int addElements(double[] amounts, long[] epochMillis, int length) {
+    return addElements(amounts, epochMillis, length, null);
+  }
+
+  /**
+   * Method helps add batch of transactions into store, reporting which of
+   * them were stored.
+   *
+   * @param amounts     transaction amounts
+   * @param epochMillis transaction timestamps in epoch milliseconds
+   * @param length      number of transactions to read from arrays
+   * @param stored      receives true at i if transaction i was stored, may be null
+   * @return number of transactions stored
+   */
+  default int addElements(double[] amounts, long[] epochMillis, int length, boolean[] stored) {
+    int added = 0;
+    for (int i = 0; i < length; i++) {
+      boolean isStored = addElement(amounts[i], epochMillis[i]);
+      if (stored != null) {
+        stored[i] = isStored;
+      }
+      if (isStored) {
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Method helps to clear entire store.
+   */
+  void clearStore();
+
+  /**
+   * @return number of transactions currently held by store
+   */
+  long size();
+
+  /**
+   * Method clean up store holding data before timestampThreshold
+   *
+   * @param timestampThreshold THRESHOLD
+   * @return number of stale data records removed
+   */
+  long cleanStaleData(Instant timestampThreshold);
+
+  /**
+   * Method clean up store holding data before timestampThreshold, doing a
+   * bounded amount of work. Stores evicting whole seconds at once may
+   * remove more than maxRecords.
+   *
+   * @param timestampThreshold THRESHOLD
+   * @param maxRecords         upper bound of records to remove
+   * @return number of stale data records removed
+   */
+  default long cleanStaleData(Instant timestampThreshold, int maxRecords) {
+    return cleanStaleData(timestampThreshold);
+  }
+
+  /**
+   * @return approximate memory held per stored transaction, 0 if memory
+   * does not grow with number of transactions
+   */
+  long bytesPerTransaction();
+
+  /**
+   * @return epoch milli from which oldest transaction held by store no
+   * longer counts in longest window, may be earlier but never later,
+   * Long.MAX_VALUE if store is empty
+   */
+  long nextExpiryMilli();
+
+  /**
+   * @return StatisticsResource calculated on transactions of the default window
+   */
+  StatisticsResource getStatistics();
+
+  /**
+   * Method helps calculate statistics of one of the configured windows.
+   *
+   * @param nowMilli       current epoch milli
+   * @param windowInMillis window length, one of {@link StatisticsWindows#getWindowsInMillis()}
+   * @return statistics valid until oldest counted transaction leaves the
+   * window, may be earlier but never later
+   */
+  StatisticsSnapshot getStatistics(long nowMilli, long windowInMillis);
+
+  /**
+   * Method helps merging transactions of one window into an accumulator,
+   * e.g. to export it as partial aggregate of this node.
+   *
+   * @param nowMilli       current epoch milli
+   * @param windowInMillis window length
+   * @return accumulator of the window, with quantiles and variance as configured
+   */
+  StatisticsAccumulator accumulate(long nowMilli, long windowInMillis);
+
+  /**
+   * @return windows served by store
+   */
+  StatisticsWindows getStatisticsWindows();
+
+  /**
+   * Method helps writing state of the window into a snapshot, read back by
+   * {@link #readSnapshot(DataInput, long)} of the same store type.
+   *
+   * @param output         snapshot being written
+   * @param thresholdMilli transactions before threshold are left out
+   * @throws IOException if snapshot can not be written
+   */
+  void writeSnapshot(DataOutput output, long thresholdMilli) throws IOException;
+
+  /**
+   * Method helps adding state written by {@link #writeSnapshot(DataOutput, long)}
+   * into store.
+   *
+   * @param input          snapshot being read
+   * @param thresholdMilli transactions before threshold are skipped
+   * @return number of transactions restored
+   * @throws IOException if snapshot can not be read
+   */
+  long readSnapshot(DataInput input, long thresholdMilli) throws IOException;
+}
@@ -0,0 +1,100 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Evicts transactions which left the longest window from {@link TransactionStore}
+ * in the background, so that neither writers nor readers pay for it.
+ * Every tick removes at most max-per-tick transactions, a backlog is
+ * worked off over subsequent ticks.
+ * <p>
+ * Publishes transaction.store.evicted (transactions removed) and
+ * transaction.store.eviction.lag (milliseconds since oldest transaction
+ * held by store has left the window, 0 when eviction keeps up).
+ */
+@Component
+public class TransactionStoreCleaner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransactionStoreCleaner.class);
+
+  private final TransactionStore transactionStore;
+  private final StatisticsWindows statisticsWindows;
+  private final int maxPerTick;
+  private final Counter evictedCounter;
+
+  public TransactionStoreCleaner(TransactionStore transactionStore, MeterRegistry meterRegistry, int maxPerTick) {
+    this(transactionStore, StatisticsWindows.defaultWindows(), meterRegistry, maxPerTick);
+  }
+
+  @Autowired
+  public TransactionStoreCleaner(TransactionStore transactionStore, StatisticsWindows statisticsWindows,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${transaction.eviction.max-per-tick:10000}") int maxPerTick) {
+    this.transactionStore = transactionStore;
+    this.statisticsWindows = statisticsWindows;
+    this.maxPerTick = maxPerTick;
+    this.evictedCounter = Counter.builder("transaction.store.evicted")
+        .description("transactions removed from store after leaving the window")
+        .register(meterRegistry);
+    Gauge.builder("transaction.store.eviction.lag", this, cleaner -> cleaner.evictionLagMillis(System.currentTimeMillis()))
+        .description("milliseconds since oldest transaction held by store has left the window")
+        .baseUnit("milliseconds")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Scheduled eviction tick, see transaction.eviction.interval-millis.
+   *
+   * @return number of transactions evicted
+   */
+  @Scheduled(fixedDelayString = "${transaction.eviction.interval-millis:100}",
+      initialDelayString = "${transaction.eviction.interval-millis:100}")
+  public long evictStaleData() {
+    long evicted = transactionStore.cleanStaleData(Instant.now().minusMillis(statisticsWindows.getRetentionInMillis()), maxPerTick);
+    if (evicted > 0) {
+      evictedCounter.increment(evicted);
+      LOGGER.debug("Scheduled stale data removal activity {} ", evicted);
+    }
+    return evicted;
+  }
+
+  /**
+   * @param currentMilli current time in epoch milliseconds
+   * @return milliseconds since oldest transaction held by store has left window
+   */
+  public long evictionLagMillis(long currentMilli) {
+    return Math.max(0, currentMilli - transactionStore.nextExpiryMilli());
+  }
+}
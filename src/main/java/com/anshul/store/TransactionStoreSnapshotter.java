@@ -0,0 +1,218 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Optional periodic snapshot of the window, {@link TransactionStore} and
+ * {@link KeyedStatisticsStore}, restored on startup so that a restart keeps
+ * statistics without replaying every transaction. Disabled unless
+ * transaction.snapshot.enabled is set, and ignored while the write-ahead
+ * log is enabled, which already restores every transaction and would
+ * otherwise be counted twice.
+ * <p>
+ * Every interval-millis the window is written into a temporary file next
+ * to the snapshot, forced to disk and renamed over the snapshot, so a
+ * crash leaves either the previous or the new snapshot and never a partial
+ * one. Transactions added after the last snapshot are lost on a crash.
+ * <p>
+ * File: int magic, int version, UTF store class, long epoch milli taken
+ * at, state of store, state of keyed store, int CRC32 of preceding bytes.
+ * Aggregating stores write their buckets, other stores every transaction
+ * as epoch milli and amount. A snapshot of another store type or failing
+ * its checksum is ignored.
+ */
+@Component
+public class TransactionStoreSnapshotter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransactionStoreSnapshotter.class);
+
+  private static final int MAGIC = 0x54534E50;
+  private static final int VERSION = 1;
+
+  private final boolean enabled;
+  private final Path file;
+  private final Path temporaryFile;
+  private final TransactionStore transactionStore;
+  private final KeyedStatisticsStore keyedStatisticsStore;
+  private final long retentionInMillis;
+
+  public TransactionStoreSnapshotter(Path file, TransactionStore transactionStore,
+                                     KeyedStatisticsStore keyedStatisticsStore, StatisticsWindows statisticsWindows) {
+    this(true, file, transactionStore, keyedStatisticsStore, statisticsWindows);
+  }
+
+  @Autowired
+  public TransactionStoreSnapshotter(@Value("${transaction.snapshot.enabled:false}") boolean enabled,
+                                     @Value("${transaction.snapshot.file:snapshot/statistics.snapshot}") String file,
+                                     TransactionStore transactionStore, KeyedStatisticsStore keyedStatisticsStore,
+                                     StatisticsWindows statisticsWindows,
+                                     TransactionWriteAheadLog transactionWriteAheadLog) {
+    this(enabled && !transactionWriteAheadLog.isEnabled(), Paths.get(file), transactionStore, keyedStatisticsStore,
+        statisticsWindows);
+    if (enabled && transactionWriteAheadLog.isEnabled()) {
+      LOGGER.info("snapshots are disabled, transactions are restored from write-ahead log");
+    }
+  }
+
+  private TransactionStoreSnapshotter(boolean enabled, Path file, TransactionStore transactionStore,
+                                      KeyedStatisticsStore keyedStatisticsStore, StatisticsWindows statisticsWindows) {
+    this.enabled = enabled;
+    this.file = file.toAbsolutePath();
+    this.temporaryFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+    this.transactionStore = transactionStore;
+    this.keyedStatisticsStore = keyedStatisticsStore;
+    this.retentionInMillis = statisticsWindows.getRetentionInMillis();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Scheduled snapshot, see transaction.snapshot.interval-millis.
+   */
+  @Scheduled(fixedDelayString = "${transaction.snapshot.interval-millis:5000}",
+      initialDelayString = "${transaction.snapshot.interval-millis:5000}")
+  public void scheduledSnapshot() {
+    try {
+      writeSnapshot();
+    } catch (IOException e) {
+      LOGGER.error("snapshot could not be written to {}", file, e);
+    }
+  }
+
+  /**
+   * Method helps write current window into snapshot, replacing previous
+   * snapshot atomically.
+   *
+   * @return size of snapshot in bytes, 0 if disabled
+   * @throws IOException if snapshot can not be written, previous snapshot is kept
+   */
+  public synchronized long writeSnapshot() throws IOException {
+    if (!enabled) {
+      return 0;
+    }
+    long startNanos = System.nanoTime();
+    long nowMilli = System.currentTimeMillis();
+    Files.createDirectories(file.getParent());
+    CRC32 crc = new CRC32();
+    try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile.toFile())) {
+      DataOutputStream output = new DataOutputStream(
+          new BufferedOutputStream(new CheckedOutputStream(fileOutput, crc), 64 * 1024));
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeUTF(transactionStore.getClass().getName());
+      output.writeLong(nowMilli);
+      transactionStore.writeSnapshot(output, nowMilli - retentionInMillis);
+      keyedStatisticsStore.writeSnapshot(output, nowMilli);
+      output.flush();
+      fileOutput.write(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array());
+      fileOutput.getChannel().force(true);
+    }
+    Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    long size = Files.size(file);
+    LOGGER.debug("snapshot of {} bytes written in {} us", size, (System.nanoTime() - startNanos) / 1000);
+    return size;
+  }
+
+  /**
+   * Method helps restore window from snapshot, transactions which left the
+   * window meanwhile are skipped.
+   *
+   * @return number of transactions restored, 0 if disabled or no usable snapshot exists
+   * @throws IOException if snapshot exists but can not be read
+   */
+  public synchronized long restore() throws IOException {
+    if (!enabled || !Files.exists(file)) {
+      return 0;
+    }
+    long startNanos = System.nanoTime();
+    byte[] bytes = Files.readAllBytes(file);
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, Math.max(0, bytes.length - Integer.BYTES));
+    if (bytes.length < Integer.BYTES
+        || ByteBuffer.wrap(bytes, bytes.length - Integer.BYTES, Integer.BYTES).getInt() != (int) crc.getValue()) {
+      LOGGER.warn("snapshot {} is corrupt and ignored", file);
+      return 0;
+    }
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Integer.BYTES));
+    if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+      LOGGER.warn("snapshot {} is of an unknown format and ignored", file);
+      return 0;
+    }
+    String storeType = input.readUTF();
+    if (!storeType.equals(transactionStore.getClass().getName())) {
+      LOGGER.warn("snapshot {} of {} ignored by {}", file, storeType, transactionStore.getClass().getName());
+      return 0;
+    }
+    long takenAtMilli = input.readLong();
+    long nowMilli = System.currentTimeMillis();
+    long restored = transactionStore.readSnapshot(input, nowMilli - retentionInMillis);
+    int restoredKeys = keyedStatisticsStore.readSnapshot(input, nowMilli);
+    LOGGER.info("restored {} transactions and {} keys from snapshot taken {} ms ago in {} ms", restored, restoredKeys,
+        nowMilli - takenAtMilli, (System.nanoTime() - startNanos) / 1_000_000);
+    return restored;
+  }
+
+  /**
+   * Method helps delete snapshot, so that cleared transactions are not
+   * restored.
+   *
+   * @throws IOException if snapshot can not be deleted
+   */
+  public synchronized void clear() throws IOException {
+    if (enabled) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Final snapshot on shutdown, so that a graceful restart loses nothing.
+   */
+  @PreDestroy
+  public void close() {
+    scheduledSnapshot();
+  }
+}
@@ -0,0 +1,540 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.store;
+
+import com.anshul.exception.WriteAheadLogException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Optional append-only log of accepted transactions, replayed on startup
+ * so that a restart keeps the window. Disabled unless
+ * transaction.wal.enabled is set.
+ * <p>
+ * Writers only copy their record into an in-memory buffer. Every
+ * sync-interval-millis a flusher thread swaps buffers, writes the batch
+ * with a single FileChannel write and forces it to disk, so one fsync
+ * commits every transaction of the interval. With await-sync writers wait
+ * for their batch to be forced before they answer, otherwise a crash loses
+ * at most sync-interval-millis of transactions.
+ * <p>
+ * A batch which fails to be written or forced is truncated off the segment
+ * and requeued in front of the next one, its writers get a
+ * {@link WriteAheadLogException}, as do writers whose batch is not forced
+ * within await-timeout-millis or whose wait is interrupted.
+ * <p>
+ * Record: int payload length, long epoch milli, double amount, short key
+ * length (-1 when absent), UTF-8 key, int CRC32 of preceding fields. Log is
+ * split into segments named after the epoch milli they were opened at, a
+ * new segment is opened every retention period and a segment closed more
+ * than retention ago only holds stale transactions and is deleted. Replay
+ * stops reading a segment at its first torn or corrupt record.
+ */
+@Component
+public class TransactionWriteAheadLog {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransactionWriteAheadLog.class);
+
+  static final String SEGMENT_PREFIX = "wal-";
+  static final String SEGMENT_SUFFIX = ".log";
+  private static final int HEADER_BYTES = 4;
+  private static final int FIXED_PAYLOAD_BYTES = 8 + 8 + 2;
+  private static final int CRC_BYTES = 4;
+  private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+  private final boolean enabled;
+  private final Path directory;
+  private final long retentionInMillis;
+  private final long syncIntervalMillis;
+  private final boolean awaitSync;
+  private final long awaitTimeoutNanos;
+  private final Object lock = new Object();
+  private final Object flushLock = new Object();
+  private final CRC32 crc = new CRC32();
+  private ByteBuffer pendingBuffer = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+  private ByteBuffer writeBuffer = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+  // batch currently filled by writers, batches up to durableBatch are on disk
+  private long openBatch = 1;
+  private long durableBatch;
+  private long failedBatch;
+  private IOException failure;
+  private FileChannel channel;
+  private Path segment;
+  private long segmentOpenedMilli;
+  private ScheduledExecutorService flusher;
+
+  public TransactionWriteAheadLog(Path directory, StatisticsWindows statisticsWindows, long syncIntervalMillis,
+                                  boolean awaitSync) {
+    this(true, directory, statisticsWindows, syncIntervalMillis, awaitSync, 5000);
+  }
+
+  @Autowired
+  public TransactionWriteAheadLog(@Value("${transaction.wal.enabled:false}") boolean enabled,
+                                  @Value("${transaction.wal.directory:wal}") String directory,
+                                  StatisticsWindows statisticsWindows,
+                                  @Value("${transaction.wal.sync-interval-millis:10}") long syncIntervalMillis,
+                                  @Value("${transaction.wal.await-sync:false}") boolean awaitSync,
+                                  @Value("${transaction.wal.await-timeout-millis:5000}") long awaitTimeoutMillis) {
+    this(enabled, Paths.get(directory), statisticsWindows, syncIntervalMillis, awaitSync, awaitTimeoutMillis);
+  }
+
+  private TransactionWriteAheadLog(boolean enabled, Path directory, StatisticsWindows statisticsWindows,
+                                   long syncIntervalMillis, boolean awaitSync, long awaitTimeoutMillis) {
+    if (syncIntervalMillis <= 0) {
+      throw new IllegalArgumentException("sync-interval-millis must be positive");
+    }
+    if (awaitTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("await-timeout-millis must be positive");
+    }
+    this.enabled = enabled;
+    this.directory = directory;
+    this.retentionInMillis = statisticsWindows.getRetentionInMillis();
+    this.syncIntervalMillis = syncIntervalMillis;
+    this.awaitSync = awaitSync;
+    this.awaitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(awaitTimeoutMillis);
+  }
+
+  /**
+   * Method helps open a new segment and start flusher, segments written
+   * before stay untouched until {@link #replay(RecordConsumer)}.
+   *
+   * @throws IOException if directory or segment can not be created
+   */
+  @PostConstruct
+  public void open() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    Files.createDirectories(directory);
+    synchronized (lock) {
+      openSegment(System.currentTimeMillis());
+    }
+    flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "wal-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(this::flushQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    LOGGER.info("transaction write-ahead log at {} forced every {} ms", directory.toAbsolutePath(), syncIntervalMillis);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return true if writers wait for their transactions to be forced to disk
+   */
+  public boolean isAwaitSync() {
+    return enabled && awaitSync;
+  }
+
+  /**
+   * Method helps log one accepted transaction.
+   *
+   * @param amount     transaction amount
+   * @param epochMilli transaction timestamp in epoch milliseconds
+   * @param key        optional transaction key, may be null
+   * @throws WriteAheadLogException if awaiting sync and transaction is not confirmed on disk
+   */
+  public void append(double amount, long epochMilli, String key) {
+    if (!enabled) {
+      return;
+    }
+    long batch;
+    synchronized (lock) {
+      put(amount, epochMilli, key);
+      batch = openBatch;
+    }
+    awaitDurable(batch);
+  }
+
+  /**
+   * Method helps log batch of accepted transactions, amounts[i] belongs to
+   * epochMillis[i] and keys[i].
+   *
+   * @param amounts     transaction amounts
+   * @param epochMillis transaction timestamps in epoch milliseconds
+   * @param keys        optional transaction keys, elements may be null
+   * @param length      number of transactions to read from arrays
+   * @throws WriteAheadLogException if awaiting sync and transactions are not confirmed on disk
+   */
+  public void appendAll(double[] amounts, long[] epochMillis, String[] keys, int length) {
+    if (!enabled || length == 0) {
+      return;
+    }
+    long batch;
+    synchronized (lock) {
+      for (int i = 0; i < length; i++) {
+        put(amounts[i], epochMillis[i], keys[i]);
+      }
+      batch = openBatch;
+    }
+    awaitDurable(batch);
+  }
+
+  private void put(double amount, long epochMilli, String key) {
+    byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+    int payloadBytes = FIXED_PAYLOAD_BYTES + (keyBytes == null ? 0 : keyBytes.length);
+    ensureCapacity(HEADER_BYTES + payloadBytes + CRC_BYTES);
+    pendingBuffer.putInt(payloadBytes);
+    int payloadStart = pendingBuffer.position();
+    pendingBuffer.putLong(epochMilli);
+    pendingBuffer.putDouble(amount);
+    pendingBuffer.putShort((short) (keyBytes == null ? -1 : keyBytes.length));
+    if (keyBytes != null) {
+      pendingBuffer.put(keyBytes);
+    }
+    crc.reset();
+    crc.update(pendingBuffer.array(), payloadStart, payloadBytes);
+    pendingBuffer.putInt((int) crc.getValue());
+  }
+
+  private void ensureCapacity(int bytes) {
+    if (pendingBuffer.remaining() < bytes) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(pendingBuffer.capacity() * 2, pendingBuffer.position() + bytes));
+      pendingBuffer.flip();
+      grown.put(pendingBuffer);
+      pendingBuffer = grown;
+    }
+  }
+
+  private void awaitDurable(long batch) {
+    if (!awaitSync) {
+      return;
+    }
+    long deadline = System.nanoTime() + awaitTimeoutNanos;
+    synchronized (lock) {
+      // requeued records of a failed batch are durable once a later batch is
+      while (durableBatch < batch) {
+        if (failedBatch >= batch) {
+          throw new WriteAheadLogException("write-ahead log flush failed", failure);
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new WriteAheadLogException("write-ahead log not forced within await timeout", null);
+        }
+        try {
+          TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new WriteAheadLogException("interrupted awaiting write-ahead log sync", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Method helps write and force transactions appended since last flush,
+   * called by flusher every sync-interval-millis.
+   *
+   * @throws IOException if segment can not be written
+   */
+  public void flush() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    synchronized (flushLock) {
+      flushBatch();
+    }
+  }
+
+  private void flushBatch() throws IOException {
+    long batch;
+    ByteBuffer buffer;
+    FileChannel target;
+    synchronized (lock) {
+      batch = openBatch++;
+      buffer = pendingBuffer;
+      pendingBuffer = writeBuffer;
+      pendingBuffer.clear();
+      writeBuffer = buffer;
+      target = channel;
+    }
+    // only flusher writes, writers keep appending to the other buffer meanwhile
+    buffer.flip();
+    if (buffer.hasRemaining()) {
+      long position = -1;
+      try {
+        position = target.size();
+        while (buffer.hasRemaining()) {
+          target.write(buffer);
+        }
+        target.force(false);
+      } catch (IOException e) {
+        requeue(batch, buffer, target, position, e);
+        throw e;
+      }
+    }
+    synchronized (lock) {
+      durableBatch = batch;
+      lock.notifyAll();
+    }
+    rollSegment(System.currentTimeMillis());
+  }
+
+  /**
+   * Puts records of a failed batch back in front of those appended since,
+   * so the next flush writes them again, and fails writers of the batch.
+   */
+  private void requeue(long batch, ByteBuffer buffer, FileChannel target, long position, IOException failure)
+      throws IOException {
+    boolean truncated = false;
+    try {
+      // a partially written batch would end segment in a torn record and hide every later one
+      if (position >= 0) {
+        target.truncate(position);
+        truncated = true;
+      }
+    } catch (IOException e) {
+      LOGGER.error("<<===== write-ahead log segment {} not truncated {}", segment, e.getMessage());
+    }
+    buffer.rewind();
+    synchronized (lock) {
+      pendingBuffer.flip();
+      ByteBuffer requeued = ByteBuffer.allocate(Math.max(pendingBuffer.capacity(),
+          buffer.remaining() + pendingBuffer.remaining()));
+      requeued.put(buffer);
+      requeued.put(pendingBuffer);
+      writeBuffer = pendingBuffer;
+      pendingBuffer = requeued;
+      failedBatch = batch;
+      this.failure = failure;
+      lock.notifyAll();
+      if (!truncated && channel == target) {
+        channel.close();
+        openSegment(System.currentTimeMillis());
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (IOException | RuntimeException e) {
+      LOGGER.error("<<===== write-ahead log flush failed {}", e.getMessage());
+    }
+  }
+
+  private void rollSegment(long nowMilli) throws IOException {
+    if (nowMilli - segmentOpenedMilli < retentionInMillis) {
+      return;
+    }
+    synchronized (lock) {
+      // pending records of closed segment are written into new one, which is equally safe
+      channel.close();
+      openSegment(nowMilli);
+    }
+    deleteStaleSegments(nowMilli);
+  }
+
+  private void openSegment(long nowMilli) throws IOException {
+    // segment of a previous run must never be reopened, it would be taken for the current one
+    while (Files.exists(directory.resolve(SEGMENT_PREFIX + nowMilli + SEGMENT_SUFFIX))) {
+      nowMilli++;
+    }
+    segmentOpenedMilli = nowMilli;
+    segment = directory.resolve(SEGMENT_PREFIX + nowMilli + SEGMENT_SUFFIX);
+    channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Method helps forget every logged transaction, pending ones included,
+   * so that cleared transactions are not restored.
+   *
+   * @throws IOException if segments can not be deleted
+   */
+  public void clear() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    synchronized (flushLock) {
+      Path cleared;
+      synchronized (lock) {
+        pendingBuffer.clear();
+        durableBatch = openBatch++;
+        lock.notifyAll();
+        channel.close();
+        openSegment(System.currentTimeMillis());
+        cleared = segment;
+      }
+      for (Path path : segments()) {
+        if (!path.equals(cleared)) {
+          Files.deleteIfExists(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * A segment is closed when its successor is opened, so every transaction
+   * of it is older than the successor's name.
+   */
+  private void deleteStaleSegments(long nowMilli) throws IOException {
+    List<Path> segments = segments();
+    for (int i = 0; i + 1 < segments.size(); i++) {
+      if (openedMilliOf(segments.get(i + 1)) < nowMilli - retentionInMillis) {
+        Files.deleteIfExists(segments.get(i));
+        LOGGER.debug("deleted stale write-ahead log segment {}", segments.get(i));
+      }
+    }
+  }
+
+  /**
+   * Method helps restore transactions of the window from segments written
+   * before {@link #open()}, older transactions are skipped.
+   *
+   * @param consumer receives every transaction still inside the window
+   * @return number of transactions replayed
+   * @throws IOException if a segment can not be read
+   */
+  public long replay(RecordConsumer consumer) throws IOException {
+    if (!enabled) {
+      return 0;
+    }
+    long startMilli = System.currentTimeMillis();
+    long thresholdMilli = startMilli - retentionInMillis;
+    long replayed = 0;
+    long skipped = 0;
+    for (Path path : segments()) {
+      if (path.equals(segment)) {
+        continue;
+      }
+      try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+        if (reader.size() == 0) {
+          continue;
+        }
+        MappedByteBuffer buffer = reader.map(FileChannel.MapMode.READ_ONLY, 0, reader.size());
+        CRC32 checksum = new CRC32();
+        byte[] keyBytes = new byte[Short.MAX_VALUE];
+        while (buffer.remaining() >= HEADER_BYTES) {
+          int payloadBytes = buffer.getInt();
+          if (payloadBytes < FIXED_PAYLOAD_BYTES || buffer.remaining() < payloadBytes + CRC_BYTES) {
+            LOGGER.info("write-ahead log segment {} ends with torn record", path);
+            break;
+          }
+          long epochMilli = buffer.getLong();
+          double amount = buffer.getDouble();
+          short keyLength = buffer.getShort();
+          if (keyLength != payloadBytes - FIXED_PAYLOAD_BYTES && !(keyLength == -1 && payloadBytes == FIXED_PAYLOAD_BYTES)) {
+            LOGGER.info("write-ahead log segment {} holds corrupt record", path);
+            break;
+          }
+          if (keyLength > 0) {
+            buffer.get(keyBytes, 0, keyLength);
+          }
+          ByteBuffer payload = buffer.duplicate();
+          payload.limit(buffer.position());
+          payload.position(buffer.position() - payloadBytes);
+          checksum.reset();
+          checksum.update(payload);
+          int expectedCrc = buffer.getInt();
+          if ((int) checksum.getValue() != expectedCrc) {
+            LOGGER.info("write-ahead log segment {} holds corrupt record", path);
+            break;
+          }
+          if (epochMilli < thresholdMilli) {
+            skipped++;
+            continue;
+          }
+          consumer.accept(amount, epochMilli,
+              keyLength < 0 ? null : new String(keyBytes, 0, keyLength, StandardCharsets.UTF_8));
+          replayed++;
+        }
+      }
+    }
+    LOGGER.info("replayed {} transactions from write-ahead log in {} ms, skipped {} stale", replayed,
+        System.currentTimeMillis() - startMilli, skipped);
+    return replayed;
+  }
+
+  private List<Path> segments() throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        segments.add(path);
+      }
+    }
+    Collections.sort(segments, (a, b) -> Long.compare(openedMilliOf(a), openedMilliOf(b)));
+    return segments;
+  }
+
+  private static long openedMilliOf(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  /**
+   * Method helps flush pending transactions and close segment.
+   */
+  @PreDestroy
+  public void close() {
+    if (!enabled || flusher == null) {
+      return;
+    }
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(1, TimeUnit.SECONDS);
+      flush();
+      synchronized (lock) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Receives transactions replayed from the log.
+   */
+  public interface RecordConsumer {
+
+    void accept(double amount, long epochMilli, String key);
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Consistent hash ring assigning every key to one of the nodes. Each node
+ * is placed on the ring at virtualNodes points, a key is owned by the node
+ * of the first point at or after the hash of the key, wrapping around.
+ * Adding or removing a node only moves keys owned by the points it gains
+ * or loses, about 1 / nodes of all keys.
+ * <p>
+ * Hashes are FNV-1a over characters of the string, mixed by the 64 bit
+ * finalizer of MurmurHash3, so every JVM given the same nodes builds the
+ * same ring. Ring is immutable and lookups are a binary search.
+ */
+public final class ConsistentHashRing {
+
+  private final long[] points;
+  private final String[] owners;
+
+  /**
+   * @param nodes        node names, duplicates are ignored
+   * @param virtualNodes points per node on the ring
+   */
+  public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+    Set<String> distinctNodes = new LinkedHashSet<>(nodes);
+    if (distinctNodes.isEmpty()) {
+      throw new IllegalArgumentException("ring needs at least one node");
+    }
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtual-nodes must be positive");
+    }
+    long[] unsorted = new long[distinctNodes.size() * virtualNodes];
+    String[] unsortedOwners = new String[unsorted.length];
+    int point = 0;
+    for (String node : distinctNodes) {
+      for (int i = 0; i < virtualNodes; i++) {
+        unsorted[point] = hash(node + '#' + i);
+        unsortedOwners[point++] = node;
+      }
+    }
+    Integer[] order = new Integer[unsorted.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    // equal points are ordered by node name, so every JVM resolves collisions alike
+    Arrays.sort(order, (a, b) -> unsorted[a] != unsorted[b] ? Long.compare(unsorted[a], unsorted[b])
+        : unsortedOwners[a].compareTo(unsortedOwners[b]));
+    this.points = new long[order.length];
+    this.owners = new String[order.length];
+    for (int i = 0; i < order.length; i++) {
+      points[i] = unsorted[order[i]];
+      owners[i] = unsortedOwners[order[i]];
+    }
+  }
+
+  /**
+   * @param key transaction key
+   * @return node owning key
+   */
+  public String ownerOf(String key) {
+    int index = Arrays.binarySearch(points, hash(key));
+    if (index < 0) {
+      index = -index - 1;
+    } else {
+      // first of equal points
+      while (index > 0 && points[index - 1] == points[index]) {
+        index--;
+      }
+    }
+    return owners[index == points.length ? 0 : index];
+  }
+
+  static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
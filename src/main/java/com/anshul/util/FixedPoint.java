@@ -0,0 +1,89 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed point representation of amounts as long minor units, amount times
+ * 10^scale, so statistics can be aggregated in long arithmetic. Only
+ * amounts held exactly at scale are converted, amounts of more decimal
+ * places or whose minor units are not exactly representable by a double
+ * are reported as {@link #NOT_REPRESENTABLE} and callers fall back to
+ * BigDecimal, so an amount is never rounded before statistics are.
+ */
+public final class FixedPoint {
+
+  public static final int DEFAULT_SCALE = 6;
+  public static final FixedPoint DEFAULT = new FixedPoint(DEFAULT_SCALE);
+  public static final long NOT_REPRESENTABLE = Long.MIN_VALUE;
+  /**
+   * 2^53, above it a double no longer holds every whole number.
+   */
+  private static final double MAX_EXACT_MINOR_UNITS = 9007199254740992D;
+
+  private final int scale;
+  private final double factor;
+
+  /**
+   * @param scale number of decimal places kept, 0 to 15
+   */
+  public FixedPoint(int scale) {
+    if (scale < 0 || scale > 15) {
+      throw new IllegalArgumentException("scale must be between 0 and 15: " + scale);
+    }
+    this.scale = scale;
+    this.factor = Math.pow(10, scale);
+  }
+
+  public int getScale() {
+    return scale;
+  }
+
+  /**
+   * @param amount transaction amount
+   * @return amount in minor units, NOT_REPRESENTABLE if out of range or of more than scale decimal places
+   */
+  public long toMinorUnits(double amount) {
+    double magnitude = Math.abs(amount);
+    double scaled = magnitude * factor;
+    if (!(scaled < MAX_EXACT_MINOR_UNITS)) {
+      return NOT_REPRESENTABLE;
+    }
+    long minorUnits = (long) Math.floor(scaled + 0.5);
+    // minor units and factor are exact doubles and division rounds correctly, so this only holds
+    // if amount is the double nearest to a decimal of at most scale places
+    if (minorUnits / factor != magnitude) {
+      return NOT_REPRESENTABLE;
+    }
+    return amount < 0 ? -minorUnits : minorUnits;
+  }
+
+  /**
+   * @param minorUnits amount in minor units
+   * @return exact decimal amount
+   */
+  public BigDecimal toBigDecimal(long minorUnits) {
+    return BigDecimal.valueOf(minorUnits, scale);
+  }
+}
@@ -29,10 +29,16 @@ public final class HeapNode implements TransactionNode {
 
   private Double amount;
   private Instant instant;
+  private long minorUnits;
 
   public HeapNode(Double amount, Instant instant) {
+    this(amount, instant, FixedPoint.DEFAULT);
+  }
+
+  public HeapNode(Double amount, Instant instant, FixedPoint fixedPoint) {
     this.amount = amount;
     this.instant = instant;
+    this.minorUnits = fixedPoint.toMinorUnits(amount);
   }
 
   @Override
@@ -40,6 +46,11 @@ public final class HeapNode implements TransactionNode {
     return amount;
   }
 
+  @Override
+  public long getMinorUnits() {
+    return minorUnits;
+  }
+
   @Override
   public Instant getInstant() {
     return instant;
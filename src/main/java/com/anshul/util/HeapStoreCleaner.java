@@ -1,52 +0,0 @@
-/**
- * The MIT License
- * Copyright (c) ${project.inceptionYear} Anshul Mohil
- * <p>
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- * <p>
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- * <p>
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.anshul.util;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
-
-import java.time.Instant;
-
-
-// Currently Not able to include scheduling as, integration testing package raise conflict with spring batch.
-//TODO: Pick this at last as I already implemented heap cleaning algorithm internally in MinPriorityQueue if allocated RAM reaches threshold.
-@Component
-public class HeapStoreCleaner {
-
-  private static final Logger LOGGER = LoggerFactory.getLogger(HeapStoreCleaner.class);
-
-
-  /**
-   * This scheduling will run after every 60 sec to remove
-   * data from heap.
-   * <p>
-   * Though I believe cleanup task should be configured purely
-   * on performance vs QPS basis.
-   */
-  // @Scheduled(fixedRate = 60000, initialDelay = 10000)
-  public void deleteOldDataFromHeap() {
-    LOGGER.debug("Scheduled old cache removal activity {} ", MinPriorityQueue.heapNodeFactory.cleanStaleData(Instant.now().minusMillis(60000)));
-  }
-
-}
\ No newline at end of file
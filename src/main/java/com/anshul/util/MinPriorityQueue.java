@@ -23,6 +23,7 @@
 package com.anshul.util;
 
 import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +33,8 @@ import java.time.Instant;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 /**
  * MinPriorityQueue implementation using min heap.
@@ -65,19 +68,7 @@ public class MinPriorityQueue<T extends TransactionNode> {
    * @return true if stored, if discard return false
    */
   public boolean addElement(T node) {
-    boolean isAdded = false;
-    try {
-      isAdded = minHeap.add(node);
-    } catch (OutOfMemoryError e) {
-      LOGGER.info("Memory cleanup required before processing : ");
-      cleanStaleData(Instant.now().minusMillis(THRESHOLD_IN_MILLI));
-      try {
-        isAdded = minHeap.add(node);
-      } catch (OutOfMemoryError outOfMemoryError) {
-        LOGGER.info("Unable to process more request due to memory full");
-      }
-    }
-    return isAdded;
+    return minHeap.add(node);
   }
 
   /**
@@ -101,9 +92,31 @@ public class MinPriorityQueue<T extends TransactionNode> {
    * @return number of stale data records removed
    */
   public int cleanStaleData(Instant timestampThreshold) {
+    return cleanStaleData(timestampThreshold, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Method clean up at most maxRecords of data before timestampThreshold,
+   * oldest first. Runs under the monitor statistics are calculated under,
+   * head is taken by poll and put back should it turn out to lie within
+   * the window, as a concurrent poll may have taken the stale head.
+   *
+   * @param timestampThreshold THRESHOLD
+   * @param maxRecords         upper bound of records to remove
+   * @return number of stale data records removed
+   */
+  public synchronized int cleanStaleData(Instant timestampThreshold, int maxRecords) {
     int count = 0;
-    while (minHeap.peek() != null && timestampThreshold.isAfter(minHeap.peek().getInstant())) {
-      minHeap.remove();
+    T head;
+    while (count < maxRecords && (head = minHeap.peek()) != null && timestampThreshold.isAfter(head.getInstant())) {
+      T removed = minHeap.poll();
+      if (removed == null) {
+        break;
+      }
+      if (!timestampThreshold.isAfter(removed.getInstant())) {
+        minHeap.add(removed);
+        break;
+      }
       count++;
     }
     return count;
@@ -119,14 +132,67 @@ public class MinPriorityQueue<T extends TransactionNode> {
     return minHeap.poll();
   }
 
+  /**
+   * Method helps reading oldest timestamp in store without removing it.
+   *
+   * @return top element from min heap or null if heap is empty
+   */
+  public T peekTopElement() {
+    return minHeap.peek();
+  }
+
+  /**
+   * Method helps visiting every element in no particular order, elements
+   * added or removed meanwhile may or may not be visited.
+   *
+   * @param consumer receives every element
+   */
+  public void forEachElement(Consumer<T> consumer) {
+    minHeap.forEach(consumer);
+  }
+
   /**
    * Returned Statistics based on Eventually consistent data.
    *
    * @return StatisticsResource sr
    */
   public StatisticsResource getStatisticsFromHeap() {
+    return getStatisticsFromHeap(Instant.now(), THRESHOLD_IN_MILLI, THRESHOLD_IN_MILLI).getStatisticsResource();
+  }
+
+  /**
+   * Returned Statistics of last windowInMillis based on Eventually consistent data.
+   *
+   * @param now               current instant
+   * @param windowInMillis    length of window statistics are calculated on
+   * @param retentionInMillis data older than retentionInMillis is removed before traversal
+   * @return StatisticsSnapshot valid until oldest counted element leaves the window
+   */
+  public StatisticsSnapshot getStatisticsFromHeap(Instant now, long windowInMillis, long retentionInMillis) {
+    return getStatisticsFromHeap(now, windowInMillis, retentionInMillis, FixedPoint.DEFAULT, null);
+  }
+
+  /**
+   * Returned Statistics of last windowInMillis based on Eventually consistent data,
+   * handing every counted amount to countedAmounts as well.
+   * <p>
+   * Aggregation is done on minor units of the nodes in long arithmetic,
+   * BigDecimal is only used to format the result. If a node does not fit
+   * in minor units or the sum overflows, window is aggregated once more
+   * in BigDecimal.
+   *
+   * @param now               current instant
+   * @param windowInMillis    length of window statistics are calculated on
+   * @param retentionInMillis data older than retentionInMillis is removed before traversal
+   * @param fixedPoint        FixedPoint nodes were created with
+   * @param countedAmounts    receives amount of every counted element, may be null
+   * @return StatisticsSnapshot valid until oldest counted element leaves the window
+   */
+  public StatisticsSnapshot getStatisticsFromHeap(Instant now, long windowInMillis, long retentionInMillis,
+                                                  FixedPoint fixedPoint, DoubleConsumer countedAmounts) {
     //multiple threads can get simultaneously
-    StatisticsResource result = new StatisticsResource();
+    StatisticsResource result;
+    long validUntilMilli = Long.MAX_VALUE;
 
     /**
      * Thought process: Though PriorityBlockingQueue is threadsafe but
@@ -136,48 +202,117 @@ public class MinPriorityQueue<T extends TransactionNode> {
      * NoSuchElementException.
      */
     synchronized (this) {
-      // delete elements from priorityQueue older than threshold milli sec from now
-      Instant timestampThreshold = Instant.now().minusMillis(THRESHOLD_IN_MILLI);
+      // delete elements from priorityQueue older than retention milli sec from now
+      Instant timestampThreshold = now.minusMillis(retentionInMillis);
 
       int removedStaleDataCount = cleanStaleData(timestampThreshold);
       LOGGER.debug("count stale data records removed before heap traversal {} ", removedStaleDataCount);
 
+      Instant windowStart = now.minusMillis(windowInMillis);
+      Instant oldest = null;
+      long count = 0;
+      boolean exact = true;
+      long sum = 0;
+      long max = Long.MIN_VALUE;
+      long min = Long.MAX_VALUE;
       Iterator<T> itr = minHeap.iterator();
-      BigDecimal sum = new BigDecimal(0);
-      BigDecimal max = new BigDecimal(Integer.MIN_VALUE);
-      BigDecimal min = new BigDecimal(Integer.MAX_VALUE);
       while (itr.hasNext()) {
         T next = itr.next();
-        BigDecimal amount = BigDecimal.valueOf(next.getAmount());
-        sum = sum.add(amount);
-
-        if (amount.compareTo(max) > 0) {
+        if (windowStart.isAfter(next.getInstant())) {
+          continue;
+        }
+        if (oldest == null || oldest.isAfter(next.getInstant())) {
+          oldest = next.getInstant();
+        }
+        count++;
+        if (countedAmounts != null) {
+          countedAmounts.accept(next.getAmount());
+        }
+        if (!exact) {
+          continue;
+        }
+        long amount = next.getMinorUnits();
+        if (amount == FixedPoint.NOT_REPRESENTABLE) {
+          exact = false;
+          continue;
+        }
+        try {
+          sum = Math.addExact(sum, amount);
+        } catch (ArithmeticException overflow) {
+          exact = false;
+          continue;
+        }
+        if (amount > max) {
           max = amount;
         }
-        if (amount.compareTo(min) < 0) {
+        if (amount < min) {
           min = amount;
         }
       }
-      if (minHeap.size() != 0) {
-        BigDecimal avg = sum.divide(BigDecimal.valueOf(minHeap.size()), 2, RoundingMode.HALF_UP);
-
-        result.setSum(String.valueOf(sum.setScale(2, RoundingMode.HALF_UP)));
-        result.setAvg(String.valueOf(avg.setScale(2, RoundingMode.HALF_UP)));
-        result.setMax(String.valueOf(max.setScale(2, RoundingMode.HALF_UP)));
-        result.setMin(String.valueOf(min.setScale(2, RoundingMode.HALF_UP)));
-
-        result.setCount(Long.valueOf(minHeap.size()));
+      if (count == 0) {
+        result = emptyStatistics();
+      } else if (exact) {
+        result = toStatistics(fixedPoint.toBigDecimal(sum), fixedPoint.toBigDecimal(min), fixedPoint.toBigDecimal(max),
+            count);
       } else {
-        result.setSum("0.00");
-        result.setAvg("0.00");
-        result.setMax("0.00");
-        result.setMin("0.00");
-        result.setCount(0l);
+        LOGGER.debug("minor units do not fit, aggregating heap in BigDecimal");
+        result = getBigDecimalStatistics(windowStart);
+      }
+      if (count != 0) {
+        validUntilMilli = oldest.toEpochMilli() + windowInMillis + 1;
+      }
+    }
+    return new StatisticsSnapshot(result, now.toEpochMilli(), validUntilMilli);
+  }
+
+  /**
+   * Aggregates elements not before windowStart in BigDecimal, caller holds monitor.
+   */
+  private StatisticsResource getBigDecimalStatistics(Instant windowStart) {
+    long count = 0;
+    Iterator<T> itr = minHeap.iterator();
+    BigDecimal sum = new BigDecimal(0);
+    BigDecimal max = null;
+    BigDecimal min = null;
+    while (itr.hasNext()) {
+      T next = itr.next();
+      if (windowStart.isAfter(next.getInstant())) {
+        continue;
       }
+      count++;
+      BigDecimal amount = BigDecimal.valueOf(next.getAmount());
+      sum = sum.add(amount);
 
+      if (max == null || amount.compareTo(max) > 0) {
+        max = amount;
+      }
+      if (min == null || amount.compareTo(min) < 0) {
+        min = amount;
+      }
     }
-    return result;
+    return count == 0 ? emptyStatistics() : toStatistics(sum, min, max, count);
   }
 
+  private static StatisticsResource toStatistics(BigDecimal sum, BigDecimal min, BigDecimal max, long count) {
+    StatisticsResource result = new StatisticsResource();
+    BigDecimal avg = sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
 
+    result.setSum(String.valueOf(sum.setScale(2, RoundingMode.HALF_UP)));
+    result.setAvg(String.valueOf(avg.setScale(2, RoundingMode.HALF_UP)));
+    result.setMax(String.valueOf(max.setScale(2, RoundingMode.HALF_UP)));
+    result.setMin(String.valueOf(min.setScale(2, RoundingMode.HALF_UP)));
+
+    result.setCount(count);
+    return result;
+  }
+
+  private static StatisticsResource emptyStatistics() {
+    StatisticsResource result = new StatisticsResource();
+    result.setSum("0.00");
+    result.setAvg("0.00");
+    result.setMax("0.00");
+    result.setMin("0.00");
+    result.setCount(0l);
+    return result;
+  }
 }
@@ -25,7 +25,10 @@ package com.anshul.util;
 import com.anshul.exception.FutureDatedOrNonParsableFieldException;
 import com.anshul.exception.StaleTransactionException;
 import com.anshul.model.TransactionResource;
+import com.anshul.model.TransactionStatus;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
@@ -33,30 +36,64 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 //TODO; Add object context in logging
 @Component
 public class TransactionInputValidationUtil {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TransactionInputValidationUtil.class);
+  // ObjectMapper is thread safe once configured, shared to avoid building one per request
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final Set<String> KNOWN_FIELDS = new HashSet<>(
+      Arrays.asList("amount", "timestamp", "_timestampOffset", "key"));
+  public static final int MAX_KEY_LENGTH = 64;
 
+  /**
+   * Exception based variant of {@link #checkInput(TransactionResource, Instant, Instant)}.
+   */
   public void validateInput(TransactionResource transactionResource, Instant currentUTC, Instant threshold)
       throws StaleTransactionException, FutureDatedOrNonParsableFieldException {
-    LOGGER.debug("============= Inside validateInput ============");
+    switch (checkInput(transactionResource, currentUTC, threshold)) {
+      case STALE:
+        throw new StaleTransactionException("204", "timestamp is older than 60secs");
+      case UNPROCESSABLE:
+        throw new FutureDatedOrNonParsableFieldException("422", "Non parsable field or future dated transaction");
+      default:
+        break;
+    }
+  }
 
-    Instant transactionTimeStamp = null;
+  /**
+   * Method validates transaction without throwing for expected outcomes.
+   *
+   * @param transactionResource transaction to validate
+   * @param currentUTC          time of arrival
+   * @param threshold           oldest timestamp still inside window
+   * @return ACCEPTED, STALE or UNPROCESSABLE
+   */
+  public TransactionStatus checkInput(TransactionResource transactionResource, Instant currentUTC, Instant threshold) {
+    LOGGER.debug("============= Inside checkInput ============");
+
+    if ((transactionResource.getTimestamp() == null && transactionResource.getTimestampOffset() == 0)
+        || transactionResource.getAmount() == null || !isValidKey(transactionResource.getKey())) {
+      return TransactionStatus.UNPROCESSABLE;
+    }
 
+    Instant transactionTimeStamp = null;
     try {
-      if (transactionResource.getTimestamp() == null && transactionResource.getTimestampOffset() == 0) {
-        throw new Exception();
-      }
       if (transactionResource.getTimestamp() != null) {
         transactionTimeStamp = Instant.parse(transactionResource.getTimestamp());
       }
       Double.parseDouble(transactionResource.getAmount());
-    } catch (Exception exception) {
-      throw new FutureDatedOrNonParsableFieldException("422", "Non parsable field");
+    } catch (DateTimeParseException | NumberFormatException exception) {
+      LOGGER.debug("============ Non parsable field: {}", exception.getMessage());
+      return TransactionStatus.UNPROCESSABLE;
     }
 
     if (transactionResource.getTimestampOffset() < 0) {
@@ -65,23 +102,61 @@ public class TransactionInputValidationUtil {
     }
     if (transactionTimeStamp != null && transactionTimeStamp.compareTo(threshold) <= -1) {
       LOGGER.debug("============ Stale data, timestamp: {} ===========", transactionTimeStamp);
-      throw new StaleTransactionException("204", "timestamp is older than 60secs");
+      return TransactionStatus.STALE;
     }
 
     if ((transactionTimeStamp != null && transactionTimeStamp.compareTo(currentUTC) >= 1)
         || transactionResource.getTimestampOffset() > 0) {
       LOGGER.debug("============ future dated transaction, timestamp: {}", transactionTimeStamp);
-      throw new FutureDatedOrNonParsableFieldException("422", "it is future dated transaction");
+      return TransactionStatus.UNPROCESSABLE;
+    }
+    return TransactionStatus.ACCEPTED;
+  }
+
+  /**
+   * Same rules as {@link #checkInput(TransactionResource, Instant, Instant)} applied
+   * on payload decoded by {@link TransactionPayloadParser}.
+   */
+  public TransactionStatus checkInput(TransactionPayload payload, long currentMilli, long thresholdMilli) {
+    LOGGER.debug("============= Inside checkInput(payload) ============");
+
+    if ((!payload.isTimestampPresent() && payload.getTimestampOffset() == 0) || !payload.isAmountPresent()
+        || !isValidKey(payload.getKey())) {
+      return TransactionStatus.UNPROCESSABLE;
+    }
+
+    boolean timestampKnown = payload.isTimestampPresent();
+    long transactionMilli = payload.getEpochMilli();
+    if (payload.getTimestampOffset() < 0) {
+      timestampKnown = true;
+      transactionMilli = currentMilli + payload.getTimestampOffset();
+    }
+    if (timestampKnown && transactionMilli < thresholdMilli) {
+      LOGGER.debug("============ Stale data, timestamp: {} ===========", transactionMilli);
+      return TransactionStatus.STALE;
+    }
+
+    if ((timestampKnown && transactionMilli > currentMilli) || payload.getTimestampOffset() > 0) {
+      LOGGER.debug("============ future dated transaction, timestamp: {}", transactionMilli);
+      return TransactionStatus.UNPROCESSABLE;
     }
+    return TransactionStatus.ACCEPTED;
+  }
+
+  /**
+   * @param key optional transaction key
+   * @return true if key is absent or holds 1 to MAX_KEY_LENGTH characters
+   */
+  private static boolean isValidKey(String key) {
+    return key == null || (!key.isEmpty() && key.length() <= MAX_KEY_LENGTH);
   }
 
   public TransactionResource transformJSONToObject(String jsonData) throws IOException {
     LOGGER.debug("======================= Inside transformJSONToObject======================");
-    ObjectMapper mapper = new ObjectMapper();
     TransactionResource resource = null;
     try {
       // JSON from String to Object
-      resource = mapper.readValue(jsonData, TransactionResource.class);
+      resource = OBJECT_MAPPER.readValue(jsonData, TransactionResource.class);
     } catch (JsonMappingException | JsonParseException je) {
       LOGGER.info("json exception" + je);
       throw je;
@@ -95,4 +170,93 @@ public class TransactionInputValidationUtil {
     return resource;
   }
 
+  public TransactionResource[] transformJSONToObjects(String jsonData) throws IOException {
+    LOGGER.debug("======================= Inside transformJSONToObjects======================");
+    try {
+      // JSON array from String to Objects
+      return OBJECT_MAPPER.readValue(jsonData, TransactionResource[].class);
+    } catch (JsonMappingException | JsonParseException je) {
+      LOGGER.info("json exception" + je);
+      throw je;
+    }
+  }
+
+  public JsonParser createParser(InputStream inputStream) throws IOException {
+    return OBJECT_MAPPER.getFactory().createParser(inputStream);
+  }
+
+  /**
+   * Method reads next root level transaction object from a stream of
+   * whitespace/newline separated JSON objects (NDJSON) into resource.
+   * Unknown fields are skipped. A known field holding an object or array
+   * is skipped as well and leaves resource without amount, so the
+   * transaction counts as unprocessable, as does a _timestampOffset which
+   * is neither a number nor a string holding one.
+   *
+   * @param parser   parser positioned between two root level values
+   * @param resource resource to fill, previous values are reset
+   * @return false once stream is exhausted
+   * @throws IOException if stream holds malformed JSON or a non object value
+   */
+  public boolean readNextTransaction(JsonParser parser, TransactionResource resource) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      return false;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Expected transaction object but found " + token);
+    }
+    resource.setAmount(null);
+    resource.setTimestamp(null);
+    resource.setTimestampOffset(0);
+    resource.setKey(null);
+    boolean malformedField = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String fieldName = parser.getCurrentName();
+      JsonToken valueToken = parser.nextToken();
+      if (valueToken == JsonToken.START_OBJECT || valueToken == JsonToken.START_ARRAY) {
+        // nested fields must not be read as fields of transaction
+        parser.skipChildren();
+        malformedField |= KNOWN_FIELDS.contains(fieldName);
+      } else if ("amount".equals(fieldName)) {
+        resource.setAmount(parser.getValueAsString());
+      } else if ("timestamp".equals(fieldName)) {
+        resource.setTimestamp(parser.getValueAsString());
+      } else if ("_timestampOffset".equals(fieldName)) {
+        malformedField |= !readTimestampOffset(parser, valueToken, resource);
+      } else if ("key".equals(fieldName)) {
+        resource.setKey(parser.getValueAsString());
+      }
+    }
+    if (malformedField) {
+      resource.setAmount(null);
+    }
+    return true;
+  }
+
+  /**
+   * Reads _timestampOffset like data binding of a single transaction does.
+   *
+   * @return false if value is not numeric
+   */
+  private static boolean readTimestampOffset(JsonParser parser, JsonToken valueToken, TransactionResource resource)
+      throws IOException {
+    if (valueToken == JsonToken.VALUE_NUMBER_INT || valueToken == JsonToken.VALUE_NUMBER_FLOAT) {
+      resource.setTimestampOffset(parser.getValueAsLong());
+      return true;
+    }
+    if (valueToken == JsonToken.VALUE_NULL) {
+      return true;
+    }
+    if (valueToken == JsonToken.VALUE_STRING) {
+      try {
+        resource.setTimestampOffset(Long.parseLong(parser.getText().trim()));
+        return true;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+    return false;
+  }
+
 }
@@ -27,5 +27,11 @@ import java.time.Instant;
 public interface TransactionNode {
   Double getAmount();
 
+  /**
+   * @return amount in minor units of the FixedPoint node was created with,
+   * FixedPoint.NOT_REPRESENTABLE if it does not fit
+   */
+  long getMinorUnits();
+
   Instant getInstant();
 }
@@ -0,0 +1,110 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.util;
+
+/**
+ * Mutable, reusable holder of the transaction fields decoded into
+ * primitives by {@link TransactionPayloadParser}, key is the only object. Instances are thread
+ * confined and reset before every parse.
+ */
+public final class TransactionPayload {
+
+  private double amount;
+  private boolean amountPresent;
+  private long epochMilli;
+  private boolean timestampPresent;
+  private long timestampOffset;
+  private String key;
+
+  void reset() {
+    amount = 0;
+    amountPresent = false;
+    epochMilli = 0;
+    timestampPresent = false;
+    timestampOffset = 0;
+    key = null;
+  }
+
+  public double getAmount() {
+    return amount;
+  }
+
+  void setAmount(double amount) {
+    this.amount = amount;
+    this.amountPresent = true;
+  }
+
+  public boolean isAmountPresent() {
+    return amountPresent;
+  }
+
+  public long getEpochMilli() {
+    return epochMilli;
+  }
+
+  void setEpochMilli(long epochMilli) {
+    this.epochMilli = epochMilli;
+    this.timestampPresent = true;
+  }
+
+  public boolean isTimestampPresent() {
+    return timestampPresent;
+  }
+
+  public long getTimestampOffset() {
+    return timestampOffset;
+  }
+
+  void setTimestampOffset(long timestampOffset) {
+    this.timestampOffset = timestampOffset;
+  }
+
+  /**
+   * @return optional transaction key, null if absent
+   */
+  public String getKey() {
+    return key;
+  }
+
+  void setKey(String key) {
+    this.key = key;
+  }
+
+  /**
+   * @param currentMilli time of arrival in epoch milliseconds
+   * @return transaction time, timestamp if present else arrival time moved by offset
+   */
+  public long resolveEpochMilli(long currentMilli) {
+    return timestampPresent ? epochMilli : currentMilli + timestampOffset;
+  }
+
+  @Override
+  public String toString() {
+    return "TransactionPayload{" +
+        "amount=" + amount +
+        ", epochMilli=" + (timestampPresent ? String.valueOf(epochMilli) : "none") +
+        ", timestampOffset=" + timestampOffset +
+        ", key=" + key +
+        '}';
+  }
+}
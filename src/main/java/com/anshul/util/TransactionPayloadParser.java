@@ -0,0 +1,334 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul.util;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hand written parser for the transaction payload
+ * {"amount":"12.3","timestamp":"2018-07-17T09:59:51.312Z","_timestampOffset":-1000,"key":"m-42"}
+ * reading UTF-8 request bytes straight into a thread local
+ * {@link TransactionPayload}, no intermediate String, tree or bean is
+ * created apart from the optional key.
+ * <p>
+ * Parser only accepts the common shape of the payload. Whenever it meets
+ * anything else (escapes, non ASCII key, unknown field, exponent, more than 15 digit amount,
+ * non canonical timestamp, ...) it gives up and caller is expected to fall
+ * back to ObjectMapper based {@link TransactionInputValidationUtil#transformJSONToObject(String)},
+ * which keeps error semantics of both paths identical.
+ */
+@Component
+public class TransactionPayloadParser {
+
+  private static final ThreadLocal<TransactionPayload> PAYLOAD = ThreadLocal.withInitial(TransactionPayload::new);
+
+  private static final byte[] AMOUNT = "amount".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TIMESTAMP_OFFSET = "_timestampOffset".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] KEY = "key".getBytes(StandardCharsets.US_ASCII);
+
+  private static final int MAX_EXACT_DIGITS = 15;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+  private static final long DAYS_0000_TO_1970 = 719528L;
+  private static final long MILLIS_IN_DAY = 86400000L;
+  private static final int FAILED = -1;
+
+  /**
+   * @return payload holder owned by calling thread
+   */
+  public TransactionPayload payload() {
+    return PAYLOAD.get();
+  }
+
+  /**
+   * Method parses payload into holder.
+   *
+   * @param data    UTF-8 encoded request body
+   * @param payload holder to fill, see {@link #payload()}
+   * @return true if parsed, false if caller has to fall back to ObjectMapper
+   */
+  public boolean parse(byte[] data, TransactionPayload payload) {
+    payload.reset();
+    int length = data.length;
+    int i = skipWhitespace(data, 0, length);
+    if (i >= length || data[i] != '{') {
+      return false;
+    }
+    i = skipWhitespace(data, i + 1, length);
+    if (i < length && data[i] == '}') {
+      return skipWhitespace(data, i + 1, length) == length;
+    }
+    while (i < length) {
+      if (data[i] != '"') {
+        return false;
+      }
+      int keyStart = i + 1;
+      int keyEnd = keyStart;
+      while (keyEnd < length && data[keyEnd] != '"') {
+        if (data[keyEnd] == '\\') {
+          return false;
+        }
+        keyEnd++;
+      }
+      i = skipWhitespace(data, keyEnd + 1, length);
+      if (i >= length || data[i] != ':') {
+        return false;
+      }
+      i = skipWhitespace(data, i + 1, length);
+
+      if (matches(data, keyStart, keyEnd, AMOUNT)) {
+        i = parseAmount(data, i, length, payload);
+      } else if (matches(data, keyStart, keyEnd, TIMESTAMP)) {
+        i = parseTimestamp(data, i, length, payload);
+      } else if (matches(data, keyStart, keyEnd, TIMESTAMP_OFFSET)) {
+        i = parseOffset(data, i, length, payload);
+      } else if (matches(data, keyStart, keyEnd, KEY)) {
+        i = parseKey(data, i, length, payload);
+      } else {
+        return false;
+      }
+      if (i == FAILED) {
+        return false;
+      }
+
+      i = skipWhitespace(data, i, length);
+      if (i >= length) {
+        return false;
+      }
+      if (data[i] == '}') {
+        return skipWhitespace(data, i + 1, length) == length;
+      }
+      if (data[i] != ',') {
+        return false;
+      }
+      i = skipWhitespace(data, i + 1, length);
+    }
+    return false;
+  }
+
+  private static int parseAmount(byte[] data, int i, int length, TransactionPayload payload) {
+    boolean quoted = i < length && data[i] == '"';
+    int start = quoted ? i + 1 : i;
+    int end = start;
+    boolean negative = false;
+    if (end < length && data[end] == '-') {
+      negative = true;
+      end++;
+    }
+    int integerStart = end;
+    long mantissa = 0;
+    int digits = 0;
+    int scale = -1;
+    while (end < length) {
+      byte b = data[end];
+      if (b >= '0' && b <= '9') {
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (scale >= 0) {
+          scale++;
+        }
+      } else if (b == '.' && scale < 0) {
+        scale = 0;
+      } else {
+        break;
+      }
+      end++;
+    }
+    int integerDigits = scale < 0 ? digits : digits - scale;
+    if (digits > MAX_EXACT_DIGITS || integerDigits == 0 || scale == 0) {
+      return FAILED;
+    }
+    if (!quoted && integerDigits > 1 && data[integerStart] == '0') {
+      // leading zero is not a valid JSON number
+      return FAILED;
+    }
+    if (quoted) {
+      if (end >= length || data[end] != '"') {
+        return FAILED;
+      }
+      end++;
+    }
+    // both operands are exact doubles, so quotient is correctly rounded like Double.parseDouble
+    double amount = mantissa / POWERS_OF_TEN[scale < 0 ? 0 : scale];
+    payload.setAmount(negative ? -amount : amount);
+    return end;
+  }
+
+  private static int parseOffset(byte[] data, int i, int length, TransactionPayload payload) {
+    boolean negative = false;
+    if (i < length && data[i] == '-') {
+      negative = true;
+      i++;
+    }
+    int start = i;
+    long offset = 0;
+    while (i < length && data[i] >= '0' && data[i] <= '9') {
+      offset = offset * 10 + (data[i] - '0');
+      i++;
+    }
+    int digits = i - start;
+    if (digits == 0 || digits > 18 || (digits > 1 && data[start] == '0')) {
+      return FAILED;
+    }
+    if (i < length && (data[i] == '.' || data[i] == 'e' || data[i] == 'E')) {
+      return FAILED;
+    }
+    payload.setTimestampOffset(negative ? -offset : offset);
+    return i;
+  }
+
+  private static int parseKey(byte[] data, int i, int length, TransactionPayload payload) {
+    if (i >= length || data[i] != '"') {
+      return FAILED;
+    }
+    int start = i + 1;
+    int end = start;
+    while (end < length && data[end] != '"') {
+      byte b = data[end];
+      if (b < 0x20 || b > 0x7E || b == '\\') {
+        return FAILED;
+      }
+      end++;
+    }
+    if (end >= length) {
+      return FAILED;
+    }
+    payload.setKey(new String(data, start, end - start, StandardCharsets.US_ASCII));
+    return end + 1;
+  }
+
+  /**
+   * Parses canonical yyyy-MM-ddTHH:mm:ss[.fraction]Z instant within quotes.
+   */
+  private static int parseTimestamp(byte[] data, int i, int length, TransactionPayload payload) {
+    if (i + 22 > length || data[i] != '"') {
+      return FAILED;
+    }
+    int p = i + 1;
+    int year = digits(data, p, 4);
+    int month = digits(data, p + 5, 2);
+    int day = digits(data, p + 8, 2);
+    int hour = digits(data, p + 11, 2);
+    int minute = digits(data, p + 14, 2);
+    int second = digits(data, p + 17, 2);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > monthLength(year, month)
+        || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+        || data[p + 4] != '-' || data[p + 7] != '-' || data[p + 10] != 'T'
+        || data[p + 13] != ':' || data[p + 16] != ':') {
+      return FAILED;
+    }
+    p += 19;
+    long millisOfSecond = 0;
+    if (p < length && data[p] == '.') {
+      p++;
+      int fractionDigits = 0;
+      while (p < length && data[p] >= '0' && data[p] <= '9') {
+        if (fractionDigits < 3) {
+          millisOfSecond = millisOfSecond * 10 + (data[p] - '0');
+        }
+        fractionDigits++;
+        p++;
+      }
+      if (fractionDigits == 0 || fractionDigits > 9) {
+        return FAILED;
+      }
+      for (int d = fractionDigits; d < 3; d++) {
+        millisOfSecond *= 10;
+      }
+    }
+    if (p + 1 >= length || data[p] != 'Z' || data[p + 1] != '"') {
+      return FAILED;
+    }
+    long epochDay = epochDay(year, month, day);
+    payload.setEpochMilli(epochDay * MILLIS_IN_DAY + hour * 3600000L + minute * 60000L + second * 1000L + millisOfSecond);
+    return p + 2;
+  }
+
+  private static int digits(byte[] data, int from, int count) {
+    int value = 0;
+    for (int i = from; i < from + count; i++) {
+      byte b = data[i];
+      if (b < '0' || b > '9') {
+        return FAILED;
+      }
+      value = value * 10 + (b - '0');
+    }
+    return value;
+  }
+
+  private static boolean isLeapYear(long year) {
+    return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  private static int monthLength(int year, int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * Same arithmetic as LocalDate.toEpochDay() for non negative years.
+   */
+  private static long epochDay(long year, long month, long day) {
+    long total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+    total += (367 * month - 362) / 12;
+    total += day - 1;
+    if (month > 2) {
+      total--;
+      if (!isLeapYear(year)) {
+        total--;
+      }
+    }
+    return total - DAYS_0000_TO_1970;
+  }
+
+  private static boolean matches(byte[] data, int from, int to, byte[] expected) {
+    if (to - from != expected.length) {
+      return false;
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (data[from + i] != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int skipWhitespace(byte[] data, int i, int length) {
+    while (i < length && (data[i] == ' ' || data[i] == '\n' || data[i] == '\r' || data[i] == '\t')) {
+      i++;
+    }
+    return i;
+  }
+}
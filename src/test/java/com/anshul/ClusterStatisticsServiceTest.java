@@ -0,0 +1,233 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.model.StatisticsResource;
+import com.anshul.service.StatisticsPeer;
+import com.anshul.service.impl.ClusterStatisticsService;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.TransactionStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterStatisticsServiceTest {
+
+  private StatisticsWindows statisticsWindows;
+  private MeterRegistry meterRegistry;
+  private List<ClusterStatisticsService> clusterStatisticsServices;
+
+  @Before
+  public void setup() {
+    statisticsWindows = new StatisticsWindows(60000).withQuantiles(true).withVariance(true);
+    meterRegistry = new SimpleMeterRegistry();
+    clusterStatisticsServices = new ArrayList<>();
+  }
+
+  @After
+  public void tearDown() {
+    clusterStatisticsServices.forEach(ClusterStatisticsService::shutdown);
+  }
+
+  @Test
+  public void testMergedStatisticsOfNodesEqualStatisticsOfSingleStore() {
+    long currentMilli = System.currentTimeMillis();
+    TransactionStore singleStore = new RingBufferTransactionStore(statisticsWindows);
+    List<TransactionStore> nodeStores = Arrays.asList(new RingBufferTransactionStore(statisticsWindows),
+        new PrimitiveTransactionStore(16, statisticsWindows), new RingBufferTransactionStore(statisticsWindows));
+    for (int i = 1; i <= 300; i++) {
+      double amount = i * 1.25;
+      long epochMilli = currentMilli - i * 100;
+      singleStore.addElement(amount, epochMilli);
+      nodeStores.get(i % 3).addElement(amount, epochMilli);
+    }
+    List<StatisticsPeer> peers = new ArrayList<>();
+    for (TransactionStore nodeStore : nodeStores.subList(1, 3)) {
+      ClusterStatisticsService node = clusterStatisticsService(nodeStore, Collections.emptyList());
+      peers.add(windowInMillis -> node.getPartialStatistics(windowInMillis + "ms"));
+    }
+    ClusterStatisticsService aggregator = clusterStatisticsService(nodeStores.get(0), peers);
+    assertTrue(aggregator.isAggregator());
+
+    StatisticsResource merged = aggregator.getGlobalStatisticsSnapshot(null).getStatisticsResource();
+    StatisticsResource single = singleStore.getStatistics(System.currentTimeMillis(), 60000).getStatisticsResource();
+    assertEquals(single.getCount(), merged.getCount());
+    assertEquals(single.getSum(), merged.getSum());
+    assertEquals(single.getAvg(), merged.getAvg());
+    assertEquals(single.getMin(), merged.getMin());
+    assertEquals(single.getMax(), merged.getMax());
+    assertEquals(single.getP50(), merged.getP50());
+    assertEquals(single.getP99(), merged.getP99());
+    assertEquals(Double.parseDouble(single.getVariance()), Double.parseDouble(merged.getVariance()), 0.01);
+  }
+
+  @Test
+  public void testSlowPeerLeftOutWithinFanOutTimeout() {
+    long currentMilli = System.currentTimeMillis();
+    TransactionStore localStore = new RingBufferTransactionStore(statisticsWindows);
+    localStore.addElement(10D, currentMilli - 1000);
+    StatisticsPeer slowPeer = windowInMillis -> {
+      try {
+        Thread.sleep(5000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return partialOf(100D);
+    };
+    StatisticsPeer fastPeer = windowInMillis -> partialOf(20D);
+    ClusterStatisticsService aggregator = clusterStatisticsService(localStore, Arrays.asList(slowPeer, fastPeer));
+
+    long startNanos = System.nanoTime();
+    StatisticsResource statistics = aggregator.getGlobalStatisticsSnapshot(null).getStatisticsResource();
+    assertTrue((System.nanoTime() - startNanos) / 1000000 < 2000);
+    assertEquals(2L, statistics.getCount().longValue());
+    assertEquals("30.00", statistics.getSum());
+    assertEquals(1D, meterRegistry.get("transaction.cluster.peer.failures").counter().count(), 0);
+  }
+
+  @Test
+  public void testFailingPeerLeftOut() {
+    long currentMilli = System.currentTimeMillis();
+    TransactionStore localStore = new RingBufferTransactionStore(statisticsWindows);
+    localStore.addElement(10D, currentMilli - 1000);
+    StatisticsPeer failingPeer = windowInMillis -> {
+      throw new IllegalStateException("connection refused");
+    };
+    ClusterStatisticsService aggregator = clusterStatisticsService(localStore,
+        Arrays.asList(failingPeer, windowInMillis -> null));
+
+    StatisticsResource statistics = aggregator.getGlobalStatisticsSnapshot(null).getStatisticsResource();
+    assertEquals(1L, statistics.getCount().longValue());
+    assertEquals("10.00", statistics.getMax());
+    assertEquals(2D, meterRegistry.get("transaction.cluster.peer.failures").counter().count(), 0);
+  }
+
+  @Test
+  public void testPartialStatisticsSurviveJsonRoundTrip() throws IOException {
+    long currentMilli = System.currentTimeMillis();
+    TransactionStore nodeStore = new RingBufferTransactionStore(statisticsWindows);
+    nodeStore.addElement(0.1D, currentMilli - 1000);
+    nodeStore.addElement(0.2D, currentMilli - 2000);
+    ClusterStatisticsService node = clusterStatisticsService(nodeStore, Collections.emptyList());
+    assertFalse(node.isAggregator());
+    ObjectMapper objectMapper = new ObjectMapper();
+    PartialStatisticsResource partial = objectMapper.readValue(
+        objectMapper.writeValueAsString(node.getPartialStatistics("60s")), PartialStatisticsResource.class);
+
+    ClusterStatisticsService aggregator = clusterStatisticsService(new RingBufferTransactionStore(statisticsWindows),
+        Collections.singletonList(windowInMillis -> partial));
+    StatisticsResource statistics = aggregator.getGlobalStatisticsSnapshot(null).getStatisticsResource();
+    assertEquals(2L, statistics.getCount().longValue());
+    assertEquals("0.30", statistics.getSum());
+    assertEquals("0.10", statistics.getMin());
+    assertEquals(nodeStore.getStatistics(System.currentTimeMillis(), 60000).getStatisticsResource().getP50(),
+        statistics.getP50());
+  }
+
+  private ClusterStatisticsService clusterStatisticsService(TransactionStore transactionStore, List<StatisticsPeer> peers) {
+    return clusterStatisticsService(transactionStore, peers, 0);
+  }
+
+  private ClusterStatisticsService clusterStatisticsService(TransactionStore transactionStore, List<StatisticsPeer> peers,
+                                                            long refreshMillis) {
+    ClusterStatisticsService clusterStatisticsService = new ClusterStatisticsService(transactionStore,
+        statisticsWindows, meterRegistry, peers, 200, refreshMillis);
+    clusterStatisticsServices.add(clusterStatisticsService);
+    return clusterStatisticsService;
+  }
+
+  @Test
+  public void testAggregatedStatisticsReusedWithinRefresh() throws Exception {
+    long currentMilli = System.currentTimeMillis();
+    TransactionStore localStore = new RingBufferTransactionStore(statisticsWindows);
+    localStore.addElement(10D, currentMilli - 1000);
+    AtomicInteger fanOuts = new AtomicInteger();
+    CountDownLatch answer = new CountDownLatch(1);
+    StatisticsPeer peer = windowInMillis -> {
+      fanOuts.incrementAndGet();
+      try {
+        answer.await(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return partialOf(20D);
+    };
+    ClusterStatisticsService aggregator = clusterStatisticsService(localStore, Collections.singletonList(peer), 60000);
+
+    // second request arrives while first one is fanning out
+    CompletableFuture<StatisticsResource> first = CompletableFuture.supplyAsync(
+        () -> aggregator.getGlobalStatisticsSnapshot(null).getStatisticsResource());
+    while (fanOuts.get() == 0) {
+      Thread.sleep(1);
+    }
+    CompletableFuture<StatisticsResource> second = CompletableFuture.supplyAsync(
+        () -> aggregator.getGlobalStatisticsSnapshot(null).getStatisticsResource());
+    answer.countDown();
+    assertEquals("30.00", first.get().getSum());
+    assertEquals("30.00", second.get().getSum());
+    localStore.addElement(40D, currentMilli - 1000);
+    assertEquals("30.00", aggregator.getGlobalStatisticsSnapshot(null).getStatisticsResource().getSum());
+    assertEquals(1, fanOuts.get());
+  }
+
+  @Test
+  public void testPartialStatisticsOfRecordStoreHaveExactSum() {
+    long currentMilli = System.currentTimeMillis();
+    TransactionStore nodeStore = new PrimitiveTransactionStore(16, statisticsWindows);
+    nodeStore.addElement(0.1D, currentMilli - 1000);
+    nodeStore.addElement(0.2D, currentMilli - 2000);
+    nodeStore.addElement(0.0000001D, currentMilli - 3000);
+
+    PartialStatisticsResource partial = clusterStatisticsService(nodeStore, Collections.emptyList())
+        .getPartialStatistics(null);
+    assertEquals(0, new BigDecimal("0.3000001").compareTo(new BigDecimal(partial.getSum())));
+    assertEquals(3, partial.getCount());
+  }
+
+  private PartialStatisticsResource partialOf(double amount) {
+    TransactionStore transactionStore = new RingBufferTransactionStore(statisticsWindows);
+    transactionStore.addElement(amount, System.currentTimeMillis() - 1000);
+    return transactionStore.accumulate(System.currentTimeMillis(), 60000).toPartialStatisticsResource();
+  }
+}
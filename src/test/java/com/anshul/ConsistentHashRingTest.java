@@ -0,0 +1,69 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.util.ConsistentHashRing;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+
+  private static final int KEYS = 30000;
+
+  @Test
+  public void testKeysSpreadEvenlyAndOwnerIsIndependentOfNodeOrder() {
+    ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node-a", "node-b", "node-c"), 128);
+    ConsistentHashRing reordered = new ConsistentHashRing(Arrays.asList("node-c", "node-a", "node-b", "node-a"), 128);
+    Map<String, Integer> keysPerNode = new HashMap<>();
+    for (int i = 0; i < KEYS; i++) {
+      String key = "merchant-" + i;
+      assertEquals(ring.ownerOf(key), reordered.ownerOf(key));
+      keysPerNode.merge(ring.ownerOf(key), 1, Integer::sum);
+    }
+    assertEquals(3, keysPerNode.size());
+    for (int keys : keysPerNode.values()) {
+      assertTrue(keysPerNode.toString(), Math.abs(keys - KEYS / 3) < KEYS / 3 * 0.25);
+    }
+  }
+
+  @Test
+  public void testAddedNodeOnlyTakesKeysFromOthers() {
+    ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node-a", "node-b", "node-c"), 128);
+    ConsistentHashRing grown = new ConsistentHashRing(Arrays.asList("node-a", "node-b", "node-c", "node-d"), 128);
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      String key = "merchant-" + i;
+      if (!ring.ownerOf(key).equals(grown.ownerOf(key))) {
+        assertEquals("node-d", grown.ownerOf(key));
+        moved++;
+      }
+    }
+    assertTrue(String.valueOf(moved), Math.abs(moved - KEYS / 4) < KEYS / 4 * 0.25);
+  }
+}
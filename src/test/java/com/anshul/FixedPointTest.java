@@ -0,0 +1,132 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.store.HeapTransactionStore;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.util.FixedPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FixedPointTest {
+
+  private HeapTransactionStore heapTransactionStore;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    heapTransactionStore = new HeapTransactionStore(StatisticsWindows.defaultWindows());
+    heapTransactionStore.clearStore();
+    currentMilli = Instant.now().toEpochMilli();
+  }
+
+  @After
+  public void tearDown() {
+    heapTransactionStore.clearStore();
+  }
+
+  @Test
+  public void testToMinorUnits() {
+    FixedPoint cents = new FixedPoint(2);
+    assertEquals(1230, cents.toMinorUnits(12.3));
+    assertEquals(28, cents.toMinorUnits(0.28));
+    assertEquals(-1, cents.toMinorUnits(-0.01));
+    // more decimal places than scale are not rounded
+    assertEquals(FixedPoint.NOT_REPRESENTABLE, cents.toMinorUnits(0.285));
+    assertEquals(FixedPoint.NOT_REPRESENTABLE, cents.toMinorUnits(-0.005));
+    assertEquals(285000, FixedPoint.DEFAULT.toMinorUnits(0.285));
+    assertEquals(-123456789, FixedPoint.DEFAULT.toMinorUnits(-123.456789));
+    assertEquals(FixedPoint.NOT_REPRESENTABLE, FixedPoint.DEFAULT.toMinorUnits(0.0049996));
+    assertEquals(FixedPoint.NOT_REPRESENTABLE, FixedPoint.DEFAULT.toMinorUnits(1e10));
+    assertEquals(FixedPoint.NOT_REPRESENTABLE, FixedPoint.DEFAULT.toMinorUnits(Double.NaN));
+    assertEquals("-0.000001", FixedPoint.DEFAULT.toBigDecimal(-1).toPlainString());
+  }
+
+  @Test
+  public void testLongAggregationMatchesBigDecimal() {
+    Random random = new Random(11);
+    BigDecimal sum = BigDecimal.ZERO;
+    BigDecimal min = null;
+    BigDecimal max = null;
+    int count = 5000;
+    for (int i = 0; i < count; i++) {
+      double amount = (random.nextInt(2000000) - 1000000) / 1000D;
+      heapTransactionStore.addElement(amount, currentMilli - random.nextInt(50000));
+      BigDecimal exact = BigDecimal.valueOf(amount);
+      sum = sum.add(exact);
+      min = min == null || exact.compareTo(min) < 0 ? exact : min;
+      max = max == null || exact.compareTo(max) > 0 ? exact : max;
+    }
+    StatisticsResource statisticsResource = heapTransactionStore.getStatistics(currentMilli, 60000)
+        .getStatisticsResource();
+    assertEquals(sum.setScale(2, RoundingMode.HALF_UP).toString(), statisticsResource.getSum());
+    assertEquals(sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP).toString(), statisticsResource.getAvg());
+    assertEquals(min.setScale(2, RoundingMode.HALF_UP).toString(), statisticsResource.getMin());
+    assertEquals(max.setScale(2, RoundingMode.HALF_UP).toString(), statisticsResource.getMax());
+  }
+
+  @Test
+  public void testOverflowFallsBackToBigDecimal() {
+    // 5e15 minor units each, sum overflows long after about 1845 transactions
+    for (int i = 0; i < 2000; i++) {
+      heapTransactionStore.addElement(5e9, currentMilli - 1000);
+    }
+    StatisticsResource statisticsResource = heapTransactionStore.getStatistics(currentMilli, 60000)
+        .getStatisticsResource();
+    assertEquals("10000000000000.00", statisticsResource.getSum());
+    assertEquals("5000000000.00", statisticsResource.getAvg());
+  }
+
+  @Test
+  public void testAmountsBeyondScaleAreRoundedOnlyOnce() {
+    heapTransactionStore.addElement(0.0049996, currentMilli - 1000);
+    for (int i = 0; i < 1000; i++) {
+      heapTransactionStore.addElement(0.0000004, currentMilli - 1000);
+    }
+    StatisticsResource statisticsResource = heapTransactionStore.getStatistics(currentMilli, 60000)
+        .getStatisticsResource();
+    assertEquals("0.00", statisticsResource.getMax());
+    // 0.0049996 + 0.0004
+    assertEquals("0.01", statisticsResource.getSum());
+  }
+
+  @Test
+  public void testUnrepresentableAmountFallsBackToBigDecimal() {
+    heapTransactionStore.addElement(1e12, currentMilli - 1000);
+    heapTransactionStore.addElement(-0.5, currentMilli - 1000);
+    StatisticsResource statisticsResource = heapTransactionStore.getStatistics(currentMilli, 60000)
+        .getStatisticsResource();
+    assertEquals("999999999999.50", statisticsResource.getSum());
+    assertEquals("-0.50", statisticsResource.getMin());
+    assertEquals(Long.valueOf(2), statisticsResource.getCount());
+  }
+}
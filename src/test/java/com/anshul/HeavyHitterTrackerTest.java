@@ -0,0 +1,107 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.TopKeyResource;
+import com.anshul.store.HeavyHitterTracker;
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.StatisticsWindows;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeavyHitterTrackerTest {
+
+  private HeavyHitterTracker heavyHitterTracker;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    heavyHitterTracker = new HeavyHitterTracker(StatisticsWindows.defaultWindows(),
+        KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS, HeavyHitterTracker.DEFAULT_CAPACITY, HeavyHitterTracker.DEFAULT_MAX_K);
+    currentMilli = System.currentTimeMillis();
+  }
+
+  @Test
+  public void testFewKeysAreCountedExactly() {
+    heavyHitterTracker.add("account-1", 10D, currentMilli - 1000);
+    heavyHitterTracker.add("account-1", -15D, currentMilli - 30000);
+    heavyHitterTracker.add("account-2", 20D, currentMilli - 1000);
+    heavyHitterTracker.add("account-3", 1D, currentMilli - 1000);
+
+    List<TopKeyResource> topKeys = heavyHitterTracker.getTopKeys(2, currentMilli);
+    assertEquals(2, topKeys.size());
+    assertEquals("account-1", topKeys.get(0).getKey());
+    assertEquals("25.00", topKeys.get(0).getVolume());
+    assertEquals("0.00", topKeys.get(0).getError());
+    assertEquals(2L, topKeys.get(0).getCount().longValue());
+    assertEquals("account-2", topKeys.get(1).getKey());
+    assertEquals(3, heavyHitterTracker.getTopKeys(20, currentMilli).size());
+  }
+
+  @Test
+  public void testHeavyHittersSurviveManyLightKeys() {
+    Random random = new Random(3);
+    for (int i = 0; i < 200000; i++) {
+      long epochMilli = currentMilli - random.nextInt(50000);
+      if (i % 10 == 0) {
+        heavyHitterTracker.add("heavy-" + random.nextInt(5), 100D, epochMilli);
+      } else {
+        heavyHitterTracker.add("light-" + random.nextInt(100000), 1D, epochMilli);
+      }
+    }
+
+    Set<String> top = new HashSet<>();
+    for (TopKeyResource topKey : heavyHitterTracker.getTopKeys(5, currentMilli)) {
+      top.add(topKey.getKey());
+    }
+    assertEquals(5, top.size());
+    for (int i = 0; i < 5; i++) {
+      assertTrue(top.contains("heavy-" + i));
+    }
+  }
+
+  @Test
+  public void testKeysAgeOutWithWindow() {
+    assertFalse(heavyHitterTracker.add("account-1", 10D, currentMilli - 60001));
+    assertTrue(heavyHitterTracker.add("account-1", 10D, currentMilli - 50000));
+
+    assertEquals(1, heavyHitterTracker.getTopKeys(1, currentMilli).size());
+    assertTrue(heavyHitterTracker.getTopKeys(1, currentMilli + 10001).isEmpty());
+    heavyHitterTracker.clear();
+    assertTrue(heavyHitterTracker.getTopKeys(1, currentMilli).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKBeyondMaxKIsRejected() {
+    heavyHitterTracker.getTopKeys(heavyHitterTracker.getMaxK() + 1, currentMilli);
+  }
+}
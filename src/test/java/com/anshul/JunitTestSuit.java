@@ -30,6 +30,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 @Slf4j
 @RunWith(MockitoJUnitRunner.class)
-@SpringBootTest(classes = {TransactionServiceTest.class, StatisticsServiceTest.class})
+@SpringBootTest(classes = {TransactionServiceTest.class, StatisticsServiceTest.class,
+    RingBufferTransactionStoreTest.class, TransactionPayloadParserTest.class,
+    PrimitiveTransactionStoreTest.class, OffHeapTransactionStoreTest.class, StatisticsSnapshotCacheTest.class,
+    TransactionStoreCleanerTest.class, StoreCapacityGovernorTest.class, StatisticsWindowsTest.class,
+    QuantileSketchTest.class, StripedMomentsTest.class,
+    FixedPointTest.class, KeyedStatisticsStoreTest.class, HeavyHitterTrackerTest.class,
+    StatisticsStreamServiceTest.class, TransactionWriteAheadLogTest.class, TransactionStoreSnapshotterTest.class,
+    TransactionJournalTest.class, ClusterStatisticsServiceTest.class, ConsistentHashRingTest.class,
+    KeyPartitionServiceTest.class, TransactionIngestQueueTest.class})
 public class JunitTestSuit {
 }
@@ -0,0 +1,221 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.KeyedTransactionBatchResource;
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.model.StatisticsResource;
+import com.anshul.service.PartitionPeer;
+import com.anshul.service.impl.KeyPartitionService;
+import com.anshul.store.HeavyHitterTracker;
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.util.ConsistentHashRing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyPartitionServiceTest {
+
+  private static final int VIRTUAL_NODES = 128;
+
+  private MeterRegistry meterRegistry;
+  private KeyedStatisticsStore localStore;
+  private KeyedStatisticsStore peerStore;
+  private InProcessPeer peer;
+  private KeyPartitionService keyPartitionService;
+  private ConsistentHashRing ring;
+
+  @Before
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    localStore = keyedStore();
+    peerStore = keyedStore();
+    peer = new InProcessPeer(new KeyPartitionService(peerStore, heavyHitterTracker(), new SimpleMeterRegistry(),
+        null, Collections.emptyMap(), VIRTUAL_NODES, 4, 10, 64));
+    keyPartitionService = new KeyPartitionService(localStore, heavyHitterTracker(), meterRegistry, "node-a",
+        Collections.singletonMap("node-b", peer), VIRTUAL_NODES, 4, 10, 64);
+    ring = new ConsistentHashRing(Arrays.asList("node-a", "node-b"), VIRTUAL_NODES);
+  }
+
+  @After
+  public void tearDown() {
+    peer.release();
+    keyPartitionService.shutdown();
+  }
+
+  @Test
+  public void testKeysOfOtherOwnerAreForwardedInBatches() {
+    long currentMilli = System.currentTimeMillis();
+    List<String> remoteKeys = keysOwnedBy("node-b", 10);
+    String localKey = keysOwnedBy("node-a", 1).get(0);
+    assertFalse(keyPartitionService.forward(localKey, 5D, currentMilli - 1000));
+    for (String key : remoteKeys) {
+      assertTrue(keyPartitionService.forward(key, 10D, currentMilli - 1000));
+    }
+    keyPartitionService.flush();
+
+    assertEquals(10, peer.forwarded.get());
+    assertTrue(peer.batches.get() >= 3);
+    for (String key : remoteKeys) {
+      assertEquals(1L, peerStore.getStatistics(key, currentMilli).getStatisticsResource().getCount().longValue());
+      assertEquals(0L, localStore.getStatistics(key, currentMilli).getStatisticsResource().getCount().longValue());
+      assertEquals("10.00", keyPartitionService.getKeyStatisticsSnapshot(key).getStatisticsResource().getSum());
+    }
+    assertEquals(10D, meterRegistry.get("transaction.partition.forwarded").counter().count(), 0);
+  }
+
+  @Test
+  public void testKeysKeptLocallyWhenOwnerFails() {
+    long currentMilli = System.currentTimeMillis();
+    String remoteKey = keysOwnedBy("node-b", 1).get(0);
+    peer.failing = true;
+    for (int i = 0; i < 3; i++) {
+      assertTrue(keyPartitionService.forward(remoteKey, 10D, currentMilli - 1000));
+    }
+    keyPartitionService.flush();
+
+    assertEquals(3L, localStore.getStatistics(remoteKey, currentMilli).getStatisticsResource().getCount().longValue());
+    // owner not answering, statistics of this node are served
+    assertEquals("30.00", keyPartitionService.getKeyStatisticsSnapshot(remoteKey).getStatisticsResource().getSum());
+    assertEquals(3D, meterRegistry.get("transaction.partition.fallbacks").counter().count(), 0);
+  }
+
+  @Test
+  public void testStatisticsOfOwnerMergedWithThoseKeptLocally() {
+    long currentMilli = System.currentTimeMillis();
+    String remoteKey = keysOwnedBy("node-b", 1).get(0);
+    peer.failing = true;
+    assertTrue(keyPartitionService.forward(remoteKey, 10D, currentMilli - 1000));
+    keyPartitionService.flush();
+    peer.failing = false;
+    assertTrue(keyPartitionService.forward(remoteKey, 25D, currentMilli - 1000));
+    keyPartitionService.flush();
+
+    StatisticsResource statisticsResource = keyPartitionService.getKeyStatisticsSnapshot(remoteKey)
+        .getStatisticsResource();
+    assertEquals(2L, statisticsResource.getCount().longValue());
+    assertEquals("35.00", statisticsResource.getSum());
+    assertEquals("10.00", statisticsResource.getMin());
+    assertEquals("25.00", statisticsResource.getMax());
+  }
+
+  @Test
+  public void testKeysKeptLocallyWhenQueueIsFull() {
+    long currentMilli = System.currentTimeMillis();
+    String remoteKey = keysOwnedBy("node-b", 1).get(0);
+    peer.blocked = true;
+    int forwarded = 0;
+    for (int i = 0; i < 200; i++) {
+      if (keyPartitionService.forward(remoteKey, 1D, currentMilli - 1000)) {
+        forwarded++;
+      }
+    }
+    // max-pending queued, one more batch held by blocked forwarding thread at most
+    assertTrue(String.valueOf(forwarded), forwarded >= 64 && forwarded <= 128);
+    assertEquals(200 - forwarded, meterRegistry.get("transaction.partition.fallbacks").counter().count(), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testForwardedBatchOfUnequalArraysIsRejected() {
+    keyPartitionService.addForwarded(new KeyedTransactionBatchResource(new String[]{"a", "b"}, new double[]{1D},
+        new long[]{System.currentTimeMillis()}));
+  }
+
+  private static KeyedStatisticsStore keyedStore() {
+    return new KeyedStatisticsStore(StatisticsWindows.defaultWindows(), KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS,
+        KeyedStatisticsStore.DEFAULT_MAX_KEYS);
+  }
+
+  private static HeavyHitterTracker heavyHitterTracker() {
+    return new HeavyHitterTracker(StatisticsWindows.defaultWindows(), KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS,
+        HeavyHitterTracker.DEFAULT_CAPACITY, HeavyHitterTracker.DEFAULT_MAX_K);
+  }
+
+  private List<String> keysOwnedBy(String node, int count) {
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; keys.size() < count; i++) {
+      if (ring.ownerOf("merchant-" + i).equals(node)) {
+        keys.add("merchant-" + i);
+      }
+    }
+    return keys;
+  }
+
+  private static final class InProcessPeer implements PartitionPeer {
+
+    private final KeyPartitionService owner;
+    private final AtomicInteger forwarded = new AtomicInteger();
+    private final AtomicInteger batches = new AtomicInteger();
+    private volatile boolean failing;
+    private volatile boolean blocked;
+
+    InProcessPeer(KeyPartitionService owner) {
+      this.owner = owner;
+    }
+
+    @Override
+    public void forward(KeyedTransactionBatchResource batch) {
+      synchronized (this) {
+        while (blocked) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+      if (failing) {
+        throw new IllegalStateException("connection refused");
+      }
+      batches.incrementAndGet();
+      forwarded.addAndGet(owner.addForwarded(batch));
+    }
+
+    @Override
+    public PartialStatisticsResource getKeyPartialStatistics(String key) {
+      if (failing) {
+        throw new IllegalStateException("connection refused");
+      }
+      return owner.getPartialKeyStatistics(key);
+    }
+
+    synchronized void release() {
+      blocked = false;
+      notifyAll();
+    }
+  }
+}
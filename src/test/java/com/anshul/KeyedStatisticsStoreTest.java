@@ -0,0 +1,132 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.model.TransactionBatchResource;
+import com.anshul.model.TransactionStatus;
+import com.anshul.service.impl.TransactionService;
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StatisticsWindows;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedStatisticsStoreTest {
+
+  private KeyedStatisticsStore keyedStatisticsStore;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    keyedStatisticsStore = new KeyedStatisticsStore(StatisticsWindows.defaultWindows(),
+        KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS, KeyedStatisticsStore.DEFAULT_MAX_KEYS);
+    currentMilli = System.currentTimeMillis();
+  }
+
+  @Test
+  public void testKeysAreAggregatedIndependently() {
+    assertTrue(keyedStatisticsStore.addElement("merchant-1", 10D, currentMilli - 1000));
+    assertTrue(keyedStatisticsStore.addElement("merchant-1", 30D, currentMilli - 20000));
+    assertTrue(keyedStatisticsStore.addElement("merchant-2", 5.5D, currentMilli - 1000));
+
+    StatisticsResource merchant1 = keyedStatisticsStore.getStatistics("merchant-1", currentMilli).getStatisticsResource();
+    assertEquals(2L, merchant1.getCount().longValue());
+    assertEquals("40.00", merchant1.getSum());
+    assertEquals("10.00", merchant1.getMin());
+    assertEquals("30.00", merchant1.getMax());
+    assertEquals("20.00", merchant1.getAvg());
+    StatisticsResource merchant2 = keyedStatisticsStore.getStatistics("merchant-2", currentMilli).getStatisticsResource();
+    assertEquals(1L, merchant2.getCount().longValue());
+    assertEquals("5.50", merchant2.getSum());
+    assertEquals(0L, keyedStatisticsStore.getStatistics("unknown", currentMilli).getStatisticsResource()
+        .getCount().longValue());
+  }
+
+  @Test
+  public void testTransactionsLeaveKeyWindowNoLaterThanWindow() {
+    assertFalse(keyedStatisticsStore.addElement("merchant-1", 10D, currentMilli - 60001));
+    assertTrue(keyedStatisticsStore.addElement("merchant-1", 20D, currentMilli - 50000));
+
+    assertEquals(1L, keyedStatisticsStore.getStatistics("merchant-1", currentMilli)
+        .getStatisticsResource().getCount().longValue());
+    long validUntilMilli = keyedStatisticsStore.getStatistics("merchant-1", currentMilli).getValidUntilMilli();
+    assertTrue(validUntilMilli <= currentMilli + 10001);
+    assertTrue(validUntilMilli > currentMilli + 10001 - KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS);
+    assertEquals(0L, keyedStatisticsStore.getStatistics("merchant-1", currentMilli + 10001)
+        .getStatisticsResource().getCount().longValue());
+  }
+
+  @Test
+  public void testIdleKeysAreSweptAndUntrackedBeyondMaxKeys() {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    keyedStatisticsStore = new KeyedStatisticsStore(StatisticsWindows.defaultWindows(), meterRegistry, 1000, 2);
+    keyedStatisticsStore.addElement("merchant-1", 10D, currentMilli - 59000);
+    keyedStatisticsStore.addElement("merchant-2", 10D, currentMilli - 1000);
+    assertFalse(keyedStatisticsStore.addElement("merchant-3", 10D, currentMilli - 1000));
+
+    assertEquals(2D, meterRegistry.get("transaction.keyed.keys").gauge().value(), 0D);
+    assertEquals(1D, meterRegistry.get("transaction.keyed.untracked").counter().count(), 0D);
+    assertEquals(0, keyedStatisticsStore.sweep());
+    // merchant-1 left the window 2 seconds from now
+    assertEquals(1, keyedStatisticsStore.sweep(currentMilli + 2000));
+    assertEquals(1, keyedStatisticsStore.size());
+    assertTrue(keyedStatisticsStore.addElement("merchant-3", 10D, currentMilli - 1000));
+    assertTrue(new KeyedStatisticsStore(StatisticsWindows.defaultWindows(), KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS,
+        KeyedStatisticsStore.DEFAULT_MAX_KEYS).bytesPerKey() < 1000);
+  }
+
+  @Test
+  public void testKeyedTransactionsRollUpIntoGlobalStatistics() throws IOException {
+    RingBufferTransactionStore ringBufferTransactionStore = new RingBufferTransactionStore();
+    TransactionService transactionService = new TransactionServiceFixture(ringBufferTransactionStore)
+        .keyedStatisticsStore(keyedStatisticsStore)
+        .build();
+
+    assertEquals(TransactionStatus.ACCEPTED, transactionService.makeTransaction(
+        "{\"_timestampOffset\":-1000, \"amount\":\"10\", \"key\":\"EUR\"}".getBytes(StandardCharsets.UTF_8)));
+    assertEquals(TransactionStatus.ACCEPTED, transactionService.makeTransaction(
+        "{\"_timestampOffset\":-1000, \"amount\":\"1\"}"));
+    assertEquals(TransactionStatus.UNPROCESSABLE, transactionService.makeTransaction(
+        "{\"_timestampOffset\":-1000, \"amount\":\"1\", \"key\":\"\"}"));
+    TransactionBatchResource result = transactionService.makeTransactions("["
+        + "{\"_timestampOffset\":-2000, \"amount\":\"20\", \"key\":\"EUR\"},"
+        + "{\"_timestampOffset\":-2000, \"amount\":\"7\", \"key\":\"USD\"}]");
+
+    assertEquals(2, result.getCreated());
+    assertEquals("30.00", keyedStatisticsStore.getStatistics("EUR", System.currentTimeMillis())
+        .getStatisticsResource().getSum());
+    assertEquals("7.00", keyedStatisticsStore.getStatistics("USD", System.currentTimeMillis())
+        .getStatisticsResource().getSum());
+    assertEquals("38.00", ringBufferTransactionStore.getStatistics().getSum());
+  }
+}
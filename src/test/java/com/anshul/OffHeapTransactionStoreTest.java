@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.store.OffHeapTransactionStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class OffHeapTransactionStoreTest {
+
+  private OffHeapTransactionStore offHeapTransactionStore;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    offHeapTransactionStore = new OffHeapTransactionStore(4);
+    currentMilli = Instant.now().toEpochMilli();
+  }
+
+  @Test
+  public void testGetStatisticsOnEmptyStore() {
+    StatisticsResource statisticsResource = new StatisticsResource();
+    statisticsResource.setAvg("0.00");
+    statisticsResource.setCount(0L);
+    statisticsResource.setMax("0.00");
+    statisticsResource.setMin("0.00");
+    statisticsResource.setSum("0.00");
+
+    assertEquals(statisticsResource.toString(), offHeapTransactionStore.getStatistics(currentMilli).toString());
+  }
+
+  @Test
+  public void testGetStatistics() {
+    StatisticsResource statisticsResource = new StatisticsResource();
+    statisticsResource.setAvg("272.45");
+    statisticsResource.setCount(3L);
+    statisticsResource.setMax("427.39");
+    statisticsResource.setMin("127.96");
+    statisticsResource.setSum("817.36");
+
+    offHeapTransactionStore.addElement(262.01, currentMilli - 29900);
+    offHeapTransactionStore.addElement(127.96, currentMilli - 30000);
+    offHeapTransactionStore.addElement(427.39, currentMilli - 29600);
+
+    assertEquals(statisticsResource.toString(), offHeapTransactionStore.getStatistics(currentMilli).toString());
+  }
+
+  @Test
+  public void testStatisticsAreSummedExactly() {
+    // summed as double 0.8049999999999999
+    offHeapTransactionStore.addElement(0.7, currentMilli - 1000);
+    offHeapTransactionStore.addElement(0.1, currentMilli - 1000);
+    offHeapTransactionStore.addElement(0.005, currentMilli - 1000);
+
+    assertEquals("0.81", offHeapTransactionStore.getStatistics(currentMilli).getSum());
+    assertEquals("0.805000", offHeapTransactionStore.accumulate(currentMilli, 60000).toPartialStatisticsResource().getSum());
+  }
+
+  @Test
+  public void testWindowHasMillisecondPrecision() {
+    long nowMilli = 1531821600500L;
+    offHeapTransactionStore.addElement(10D, nowMilli - 60001);
+    offHeapTransactionStore.addElement(20D, nowMilli - 60000);
+    offHeapTransactionStore.addElement(30D, nowMilli - 1000);
+
+    StatisticsResource statisticsResource = offHeapTransactionStore.getStatistics(nowMilli);
+    assertEquals(Long.valueOf(2), statisticsResource.getCount());
+    assertEquals("50.00", statisticsResource.getSum());
+  }
+
+  @Test
+  public void testSegmentsReleaseChunksForReuse() {
+    for (int i = 0; i < 10; i++) {
+      offHeapTransactionStore.addElement(i, currentMilli - 50000);
+    }
+    offHeapTransactionStore.addElement(1D, currentMilli - 1000);
+    assertEquals(11, offHeapTransactionStore.size());
+    assertEquals(0, offHeapTransactionStore.pooledChunks());
+
+    assertEquals(10, offHeapTransactionStore.cleanStaleData(Instant.ofEpochMilli(currentMilli - 20000)));
+    assertEquals(3, offHeapTransactionStore.pooledChunks());
+
+    offHeapTransactionStore.addElement(2D, currentMilli);
+    assertEquals(2, offHeapTransactionStore.pooledChunks());
+
+    offHeapTransactionStore.clearStore();
+    assertEquals(0, offHeapTransactionStore.size());
+    assertEquals(4, offHeapTransactionStore.pooledChunks());
+  }
+
+  @Test
+  public void testRecycledSegmentDiscardsOlderSecond() {
+    offHeapTransactionStore.addElement(10D, currentMilli);
+
+    assertFalse(offHeapTransactionStore.addElement(20D, currentMilli - 61000));
+    assertEquals("10.00", offHeapTransactionStore.getStatistics(currentMilli).getSum());
+  }
+
+  @Test
+  public void testConcurrentWriters() throws InterruptedException {
+    int writers = 8;
+    int transactionsPerWriter = 10000;
+    ExecutorService executorService = Executors.newFixedThreadPool(writers);
+    for (int i = 0; i < writers; i++) {
+      executorService.execute(() -> {
+        for (int j = 0; j < transactionsPerWriter; j++) {
+          offHeapTransactionStore.addElement(j % 2 == 0 ? 1D : 3D, currentMilli - (j % 30) * 1000);
+        }
+      });
+    }
+    executorService.shutdown();
+    executorService.awaitTermination(30, TimeUnit.SECONDS);
+
+    StatisticsResource statisticsResource = offHeapTransactionStore.getStatistics(currentMilli);
+    assertEquals(Long.valueOf(writers * transactionsPerWriter), statisticsResource.getCount());
+    assertEquals("160000.00", statisticsResource.getSum());
+    assertEquals("1.00", statisticsResource.getMin());
+    assertEquals("3.00", statisticsResource.getMax());
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.util.TransactionNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PrimitiveTransactionStoreTest {
+
+  private PrimitiveTransactionStore primitiveTransactionStore;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    primitiveTransactionStore = new PrimitiveTransactionStore(4);
+    currentMilli = Instant.now().toEpochMilli();
+  }
+
+  @Test
+  public void testGetStatisticsOnEmptyStore() {
+    StatisticsResource statisticsResource = new StatisticsResource();
+    statisticsResource.setAvg("0.00");
+    statisticsResource.setCount(0L);
+    statisticsResource.setMax("0.00");
+    statisticsResource.setMin("0.00");
+    statisticsResource.setSum("0.00");
+
+    assertEquals(statisticsResource.toString(), primitiveTransactionStore.getStatistics(currentMilli).toString());
+  }
+
+  @Test
+  public void testGetStatistics() {
+    StatisticsResource statisticsResource = new StatisticsResource();
+    statisticsResource.setAvg("272.45");
+    statisticsResource.setCount(3L);
+    statisticsResource.setMax("427.39");
+    statisticsResource.setMin("127.96");
+    statisticsResource.setSum("817.36");
+
+    primitiveTransactionStore.addElement(262.01, currentMilli - 29900);
+    primitiveTransactionStore.addElement(127.96, currentMilli - 30000);
+    primitiveTransactionStore.addElement(427.39, currentMilli - 29600);
+
+    assertEquals(statisticsResource.toString(), primitiveTransactionStore.getStatistics(currentMilli).toString());
+  }
+
+  @Test
+  public void testStatisticsAreSummedExactly() {
+    // summed as double 0.8049999999999999
+    primitiveTransactionStore.addElement(0.7, currentMilli - 1000);
+    primitiveTransactionStore.addElement(0.1, currentMilli - 1000);
+    primitiveTransactionStore.addElement(0.005, currentMilli - 1000);
+
+    assertEquals("0.81", primitiveTransactionStore.getStatistics(currentMilli).getSum());
+    assertEquals("0.805000", primitiveTransactionStore.accumulate(currentMilli, 60000).toPartialStatisticsResource().getSum());
+  }
+
+  @Test
+  public void testOutOfOrderTransactionsLeaveWindowInTimestampOrder() {
+    primitiveTransactionStore.addElement(10D, currentMilli - 10000);
+    primitiveTransactionStore.addElement(20D, currentMilli - 50000);
+    primitiveTransactionStore.addElement(30D, currentMilli - 30000);
+
+    assertEquals(Long.valueOf(3), primitiveTransactionStore.getStatistics(currentMilli).getCount());
+    assertEquals("40.00", primitiveTransactionStore.getStatistics(currentMilli + 20000).getSum());
+    assertEquals("10.00", primitiveTransactionStore.getStatistics(currentMilli + 40000).getSum());
+    assertEquals(1, primitiveTransactionStore.size());
+  }
+
+  @Test
+  public void testBufferGrowsAcrossWrapAround() {
+    primitiveTransactionStore.addElement(1D, currentMilli - 59000);
+    primitiveTransactionStore.addElement(1D, currentMilli - 58000);
+    primitiveTransactionStore.addElement(1D, currentMilli - 57000);
+    // moves head to the middle of the buffer
+    assertEquals(2, primitiveTransactionStore.cleanStaleData(Instant.ofEpochMilli(currentMilli - 57500)));
+
+    for (int i = 0; i < 20; i++) {
+      primitiveTransactionStore.addElement(i, currentMilli - 1000 * (i % 7));
+    }
+
+    assertEquals(21, primitiveTransactionStore.size());
+    StatisticsResource statisticsResource = primitiveTransactionStore.getStatistics(currentMilli);
+    assertEquals("191.00", statisticsResource.getSum());
+    assertEquals("0.00", statisticsResource.getMin());
+    assertEquals("19.00", statisticsResource.getMax());
+
+    long previousMilli = Long.MIN_VALUE;
+    TransactionNode node;
+    while ((node = primitiveTransactionStore.getTopElement()) != null) {
+      long epochMilli = node.getInstant().toEpochMilli();
+      assertEquals(true, epochMilli >= previousMilli);
+      previousMilli = epochMilli;
+    }
+  }
+
+  @Test
+  public void testRandomArrivalMatchesSortedOrder() {
+    Random random = new Random(7);
+    List<Long> expected = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      long epochMilli = currentMilli - random.nextInt(60000);
+      primitiveTransactionStore.addElement(1D, epochMilli);
+      expected.add(epochMilli);
+      if (i % 250 == 249) {
+        long thresholdMilli = currentMilli - 60000 + i * 25;
+        int removed = expected.size();
+        expected.removeIf(milli -> milli < thresholdMilli);
+        removed -= expected.size();
+        assertEquals(removed, primitiveTransactionStore.cleanStaleData(Instant.ofEpochMilli(thresholdMilli)));
+      }
+    }
+    Collections.sort(expected);
+
+    for (Long epochMilli : expected) {
+      assertEquals(epochMilli.longValue(), primitiveTransactionStore.getTopElement().getInstant().toEpochMilli());
+    }
+    assertNull(primitiveTransactionStore.getTopElement());
+  }
+
+  @Test
+  public void testAddElementsAndClearStore() {
+    double[] amounts = {10D, 20D, 30D};
+    long[] epochMillis = {currentMilli - 1000, currentMilli - 3000, currentMilli - 2000};
+
+    assertEquals(3, primitiveTransactionStore.addElements(amounts, epochMillis, 3));
+    assertEquals(Double.valueOf(20D), primitiveTransactionStore.getTopElement().getAmount());
+
+    primitiveTransactionStore.clearStore();
+    assertEquals(0, primitiveTransactionStore.size());
+    assertNull(primitiveTransactionStore.getTopElement());
+  }
+}
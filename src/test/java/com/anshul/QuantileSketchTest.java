@@ -0,0 +1,126 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.store.HeapTransactionStore;
+import com.anshul.store.OffHeapTransactionStore;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.QuantileSketch;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.TransactionStore;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+  private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+  @Test
+  public void testBinsAreOrderedAndAccurate() {
+    double previous = Double.NEGATIVE_INFINITY;
+    for (int bin = 0; bin < QuantileSketch.BIN_COUNT; bin++) {
+      double value = QuantileSketch.valueOf(bin);
+      assertTrue(value > previous);
+      assertEquals(bin, QuantileSketch.binOf(value));
+      previous = value;
+    }
+    for (double amount : new double[]{0.01, 0.5, 1, 12.3, 999.99, 123456.78, -0.02, -42.5}) {
+      double value = QuantileSketch.valueOf(QuantileSketch.binOf(amount));
+      assertTrue(amount + " read as " + value,
+          Math.abs(value - amount) <= Math.abs(amount) * QuantileSketch.RELATIVE_ACCURACY + 1e-9);
+    }
+    assertEquals(0, QuantileSketch.valueOf(QuantileSketch.binOf(0.001)), 0);
+  }
+
+  @Test
+  public void testMergedSketchesMatchSortedAmounts() {
+    Random random = new Random(17);
+    double[] amounts = new double[20000];
+    QuantileSketch[] sketches = new QuantileSketch[60];
+    for (int i = 0; i < sketches.length; i++) {
+      sketches[i] = new QuantileSketch();
+    }
+    for (int i = 0; i < amounts.length; i++) {
+      // log normal amounts with a few refunds
+      amounts[i] = Math.exp(random.nextGaussian() * 2 + 4) * (random.nextInt(20) == 0 ? -1 : 1);
+      sketches[i % sketches.length].add(amounts[i]);
+    }
+    long[] histogram = QuantileSketch.newHistogram();
+    for (QuantileSketch sketch : sketches) {
+      sketch.mergeInto(histogram);
+    }
+    Arrays.sort(amounts);
+    for (double quantile : QUANTILES) {
+      double exact = amounts[(int) Math.ceil(quantile * amounts.length) - 1];
+      double estimate = QuantileSketch.quantile(histogram, quantile);
+      assertTrue(quantile + ": " + exact + " estimated as " + estimate,
+          Math.abs(estimate - exact) <= Math.abs(exact) * QuantileSketch.RELATIVE_ACCURACY);
+    }
+  }
+
+  @Test
+  public void testEveryStoreReportsQuantiles() {
+    StatisticsWindows statisticsWindows = new StatisticsWindows(60000).withQuantiles(true);
+    long currentMilli = Instant.now().toEpochMilli();
+    List<TransactionStore> transactionStores = Arrays.asList(new HeapTransactionStore(statisticsWindows),
+        new RingBufferTransactionStore(statisticsWindows), new PrimitiveTransactionStore(16, statisticsWindows),
+        new OffHeapTransactionStore(16, statisticsWindows));
+    for (TransactionStore transactionStore : transactionStores) {
+      transactionStore.clearStore();
+      String name = transactionStore.getClass().getSimpleName();
+      StatisticsResource empty = transactionStore.getStatistics(currentMilli, 60000).getStatisticsResource();
+      assertEquals(name, "0.00", empty.getP99());
+
+      for (int i = 1; i <= 100; i++) {
+        transactionStore.addElement(i, currentMilli - i * 100);
+      }
+      transactionStore.addElement(5000, currentMilli - 61000);
+      StatisticsResource statisticsResource = transactionStore.getStatistics(currentMilli, 60000).getStatisticsResource();
+      assertEquals(name, Long.valueOf(100), statisticsResource.getCount());
+      assertEquals(name, 50, Double.parseDouble(statisticsResource.getP50()), 50 * QuantileSketch.RELATIVE_ACCURACY);
+      assertEquals(name, 95, Double.parseDouble(statisticsResource.getP95()), 95 * QuantileSketch.RELATIVE_ACCURACY);
+      // clamped to max
+      assertTrue(name, Double.parseDouble(statisticsResource.getP99()) <= 100);
+      transactionStore.clearStore();
+    }
+  }
+
+  @Test
+  public void testQuantilesAreOmittedByDefault() {
+    RingBufferTransactionStore ringBufferTransactionStore = new RingBufferTransactionStore();
+    ringBufferTransactionStore.addElement(10D, Instant.now().toEpochMilli());
+    StatisticsResource statisticsResource = ringBufferTransactionStore.getStatistics();
+    assertNull(statisticsResource.getP50());
+    assertNull(statisticsResource.getP99());
+  }
+}
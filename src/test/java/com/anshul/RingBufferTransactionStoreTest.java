@@ -0,0 +1,129 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.store.RingBufferTransactionStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RingBufferTransactionStoreTest {
+
+  private RingBufferTransactionStore ringBufferTransactionStore;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    ringBufferTransactionStore = new RingBufferTransactionStore();
+    currentMilli = Instant.now().toEpochMilli();
+  }
+
+  @Test
+  public void testGetStatisticsOnEmptyStore() {
+    StatisticsResource statisticsResource = new StatisticsResource();
+    statisticsResource.setAvg("0.00");
+    statisticsResource.setCount(0L);
+    statisticsResource.setMax("0.00");
+    statisticsResource.setMin("0.00");
+    statisticsResource.setSum("0.00");
+
+    assertEquals(statisticsResource.toString(), ringBufferTransactionStore.getStatistics(currentMilli).toString());
+  }
+
+  @Test
+  public void testGetStatistics() {
+    StatisticsResource statisticsResource = new StatisticsResource();
+    statisticsResource.setAvg("272.45");
+    statisticsResource.setCount(3L);
+    statisticsResource.setMax("427.39");
+    statisticsResource.setMin("127.96");
+    statisticsResource.setSum("817.36");
+
+    ringBufferTransactionStore.addElement(262.01, currentMilli - 29900);
+    ringBufferTransactionStore.addElement(127.96, currentMilli - 30000);
+    ringBufferTransactionStore.addElement(427.39, currentMilli - 29600);
+
+    assertEquals(statisticsResource.toString(), ringBufferTransactionStore.getStatistics(currentMilli).toString());
+  }
+
+  @Test
+  public void testBucketsLeaveWindow() {
+    ringBufferTransactionStore.addElement(10D, currentMilli - 55000);
+    ringBufferTransactionStore.addElement(20D, currentMilli - 10000);
+
+    assertEquals(Long.valueOf(2), ringBufferTransactionStore.getStatistics(currentMilli).getCount());
+    assertEquals(Long.valueOf(1), ringBufferTransactionStore.getStatistics(currentMilli + 6000).getCount());
+    assertEquals("20.00", ringBufferTransactionStore.getStatistics(currentMilli + 6000).getSum());
+  }
+
+  @Test
+  public void testRecycledSlotDiscardsOlderSecond() {
+    ringBufferTransactionStore.addElement(10D, currentMilli);
+
+    assertFalse(ringBufferTransactionStore.addElement(20D, currentMilli - 60000));
+    assertEquals("10.00", ringBufferTransactionStore.getStatistics(currentMilli).getSum());
+  }
+
+  @Test
+  public void testCleanStaleDataAndClearStore() {
+    ringBufferTransactionStore.addElement(10D, currentMilli - 50000);
+    ringBufferTransactionStore.addElement(20D, currentMilli - 40000);
+    ringBufferTransactionStore.addElement(30D, currentMilli - 5000);
+
+    assertEquals(2, ringBufferTransactionStore.cleanStaleData(Instant.ofEpochMilli(currentMilli - 20000)));
+    assertEquals(Long.valueOf(1), ringBufferTransactionStore.getStatistics(currentMilli).getCount());
+
+    ringBufferTransactionStore.clearStore();
+    assertEquals(Long.valueOf(0), ringBufferTransactionStore.getStatistics(currentMilli).getCount());
+  }
+
+  @Test
+  public void testConcurrentWriters() throws InterruptedException {
+    int writers = 8;
+    int transactionsPerWriter = 10000;
+    ExecutorService executorService = Executors.newFixedThreadPool(writers);
+    for (int i = 0; i < writers; i++) {
+      executorService.execute(() -> {
+        for (int j = 0; j < transactionsPerWriter; j++) {
+          ringBufferTransactionStore.addElement(j % 2 == 0 ? 1D : 3D, currentMilli - (j % 30) * 1000);
+        }
+      });
+    }
+    executorService.shutdown();
+    executorService.awaitTermination(30, TimeUnit.SECONDS);
+
+    StatisticsResource statisticsResource = ringBufferTransactionStore.getStatistics(currentMilli);
+    assertEquals(Long.valueOf(writers * transactionsPerWriter), statisticsResource.getCount());
+    assertEquals("160000.00", statisticsResource.getSum());
+    assertEquals("1.00", statisticsResource.getMin());
+    assertEquals("3.00", statisticsResource.getMax());
+  }
+}
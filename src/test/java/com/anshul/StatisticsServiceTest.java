@@ -59,7 +59,6 @@ public class StatisticsServiceTest {
     statisticsResource.setMax("0.00");
     statisticsResource.setMin("0.00");
     statisticsResource.setSum("0.00");
-    ` `
 
     assertEquals(statisticsResource.toString(), minPriorityQueue.heapNodeFactory.getStatisticsFromHeap().toString());
   }
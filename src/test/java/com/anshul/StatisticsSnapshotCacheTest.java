@@ -0,0 +1,160 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StatisticsSnapshotCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticsSnapshotCacheTest {
+
+  private RingBufferTransactionStore ringBufferTransactionStore;
+  private PrimitiveTransactionStore primitiveTransactionStore;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    ringBufferTransactionStore = new RingBufferTransactionStore();
+    primitiveTransactionStore = new PrimitiveTransactionStore();
+    currentMilli = System.currentTimeMillis();
+  }
+
+  @Test
+  public void testSnapshotIsRefreshedOnWrite() {
+    StatisticsSnapshotCache statisticsSnapshotCache = new StatisticsSnapshotCache(ringBufferTransactionStore, 60000, true);
+    StatisticsSnapshot empty = statisticsSnapshotCache.getSnapshot();
+    assertEquals(Long.valueOf(0), empty.getStatisticsResource().getCount());
+    assertSame(empty, statisticsSnapshotCache.getSnapshot());
+
+    ringBufferTransactionStore.addElement(10D, currentMilli - 1000);
+    statisticsSnapshotCache.markDirty();
+
+    StatisticsSnapshot refreshed = statisticsSnapshotCache.getSnapshot();
+    assertNotSame(empty, refreshed);
+    assertEquals("10.00", refreshed.getStatisticsResource().getSum());
+  }
+
+  @Test
+  public void testSnapshotIsStaleUntilRefreshWithoutRefreshOnWrite() throws InterruptedException {
+    StatisticsSnapshotCache statisticsSnapshotCache = new StatisticsSnapshotCache(ringBufferTransactionStore, 20, false);
+    assertEquals(Long.valueOf(0), statisticsSnapshotCache.getSnapshot().getStatisticsResource().getCount());
+
+    ringBufferTransactionStore.addElement(10D, currentMilli - 1000);
+    statisticsSnapshotCache.markDirty();
+    assertEquals(Long.valueOf(0), statisticsSnapshotCache.getSnapshot().getStatisticsResource().getCount());
+
+    statisticsSnapshotCache.start();
+    try {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (statisticsSnapshotCache.getSnapshot().getStatisticsResource().getCount() == 0
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      StatisticsSnapshot statisticsSnapshot = statisticsSnapshotCache.getSnapshot();
+      assertEquals(Long.valueOf(1), statisticsSnapshot.getStatisticsResource().getCount());
+      assertTrue(statisticsSnapshot.ageMillis(System.currentTimeMillis()) < 5000);
+    } finally {
+      statisticsSnapshotCache.stop();
+    }
+  }
+
+  @Test
+  public void testSnapshotIsRefreshedWhenTransactionLeavesWindow() throws InterruptedException {
+    StatisticsSnapshotCache statisticsSnapshotCache = new StatisticsSnapshotCache(primitiveTransactionStore, 60000, false);
+    primitiveTransactionStore.addElement(10D, currentMilli - 59950);
+    primitiveTransactionStore.addElement(20D, currentMilli - 1000);
+
+    StatisticsSnapshot statisticsSnapshot = statisticsSnapshotCache.getSnapshot();
+    assertEquals(Long.valueOf(2), statisticsSnapshot.getStatisticsResource().getCount());
+    assertEquals(currentMilli + 51, statisticsSnapshot.getValidUntilMilli());
+
+    Thread.sleep(Math.max(0, statisticsSnapshot.getValidUntilMilli() - System.currentTimeMillis()) + 1);
+    assertEquals("20.00", statisticsSnapshotCache.getSnapshot().getStatisticsResource().getSum());
+  }
+
+  @Test
+  public void testExpiredSnapshotWaitsForRefreshInProgress() throws Exception {
+    CountDownLatch refreshing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean blocking = new AtomicBoolean();
+    PrimitiveTransactionStore slowStore = new PrimitiveTransactionStore() {
+      @Override
+      public StatisticsSnapshot getStatistics(long nowMilli, long windowInMillis) {
+        if (blocking.compareAndSet(true, false)) {
+          refreshing.countDown();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.getStatistics(nowMilli, windowInMillis);
+      }
+    };
+    StatisticsSnapshotCache statisticsSnapshotCache = new StatisticsSnapshotCache(slowStore, 60000, false);
+    slowStore.addElement(10D, currentMilli - 59950);
+    slowStore.addElement(20D, currentMilli - 1000);
+    StatisticsSnapshot statisticsSnapshot = statisticsSnapshotCache.getSnapshot();
+    Thread.sleep(Math.max(0, statisticsSnapshot.getValidUntilMilli() - System.currentTimeMillis()) + 1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      blocking.set(true);
+      executor.submit(() -> statisticsSnapshotCache.getSnapshot());
+      assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+      Future<StatisticsSnapshot> racing = executor.submit(() -> statisticsSnapshotCache.getSnapshot());
+      Thread.sleep(50);
+      assertFalse(racing.isDone());
+      release.countDown();
+      assertEquals("20.00", racing.get(5, TimeUnit.SECONDS).getStatisticsResource().getSum());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testZeroRefreshIntervalDisablesCache() {
+    StatisticsSnapshotCache statisticsSnapshotCache = new StatisticsSnapshotCache(ringBufferTransactionStore, 0, false);
+    statisticsSnapshotCache.getSnapshot();
+
+    ringBufferTransactionStore.addElement(10D, currentMilli - 1000);
+    assertEquals(Long.valueOf(1), statisticsSnapshotCache.getSnapshot().getStatisticsResource().getCount());
+  }
+}
@@ -0,0 +1,254 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.service.IStatisticsService;
+import com.anshul.service.impl.StatisticsStreamService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticsStreamServiceTest {
+
+  private IStatisticsService statisticsService;
+  private MeterRegistry meterRegistry;
+  private StatisticsStreamService statisticsStreamService;
+  private long count;
+
+  @Before
+  public void setup() {
+    statisticsService = Mockito.mock(IStatisticsService.class);
+    Mockito.when(statisticsService.getStatisticsSnapshot()).thenAnswer(invocation -> {
+      StatisticsResource statisticsResource = new StatisticsResource();
+      statisticsResource.setCount(++count);
+      return new StatisticsSnapshot(statisticsResource, System.currentTimeMillis(), Long.MAX_VALUE);
+    });
+    meterRegistry = new SimpleMeterRegistry();
+    statisticsStreamService = new StatisticsStreamService(statisticsService, meterRegistry, 2, 0, 3, 3, 10000);
+  }
+
+  @After
+  public void tearDown() {
+    statisticsStreamService.shutdown();
+  }
+
+  @Test
+  public void testFrameIsComputedOnceAndFannedOut() throws Exception {
+    RecordingEmitter first = new RecordingEmitter(null);
+    RecordingEmitter second = new RecordingEmitter(null);
+    statisticsStreamService.subscribe(first);
+    statisticsStreamService.subscribe(second);
+
+    assertEquals(2, statisticsStreamService.publish());
+    first.awaitFrames(1);
+    second.awaitFrames(1);
+
+    Mockito.verify(statisticsService, Mockito.times(1)).getStatisticsSnapshot();
+    assertTrue(first.frames.get(0).contains("\"count\":1"));
+    assertEquals(first.frames, second.frames);
+    assertEquals(2D, meterRegistry.get("transaction.statistics.stream.subscribers").gauge().value(), 0D);
+  }
+
+  @Test
+  public void testSlowSubscriberReceivesLatestFrameOnly() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingEmitter slow = new RecordingEmitter(release);
+    statisticsStreamService.subscribe(slow);
+
+    statisticsStreamService.publish();
+    slow.awaitSending();
+    // frames 2 and 3 are offered while frame 1 is being written, 3 replaces 2
+    statisticsStreamService.publish();
+    statisticsStreamService.publish();
+    release.countDown();
+    slow.awaitFrames(2);
+
+    assertEquals(2, slow.frames.size());
+    assertTrue(slow.frames.get(0).contains("\"count\":1"));
+    assertTrue(slow.frames.get(1).contains("\"count\":3"));
+    assertEquals(1D, meterRegistry.get("transaction.statistics.stream.dropped").counter().count(), 0D);
+    assertEquals(1, statisticsStreamService.getSubscriberCount());
+  }
+
+  @Test
+  public void testStuckSubscriberIsDisconnected() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingEmitter stuck = new RecordingEmitter(release);
+    statisticsStreamService.subscribe(stuck);
+
+    statisticsStreamService.publish();
+    stuck.awaitSending();
+    for (int i = 0; i < 4; i++) {
+      statisticsStreamService.publish();
+    }
+    release.countDown();
+
+    assertEquals(0, statisticsStreamService.getSubscriberCount());
+  }
+
+  @Test
+  public void testStalledSubscribersDoNotStarveOthers() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingEmitter firstStuck = new RecordingEmitter(release);
+    RecordingEmitter secondStuck = new RecordingEmitter(release);
+    RecordingEmitter healthy = new RecordingEmitter(null);
+    statisticsStreamService.subscribe(firstStuck);
+    statisticsStreamService.subscribe(secondStuck);
+
+    statisticsStreamService.publish();
+    firstStuck.awaitSending();
+    secondStuck.awaitSending();
+    // both sender threads are blocked, frames replaced while healthy waits for one are not held against it
+    statisticsStreamService.subscribe(healthy);
+    for (int i = 0; i < 4; i++) {
+      statisticsStreamService.publish();
+    }
+    statisticsStreamService.publish();
+    healthy.awaitLatest(6);
+
+    assertEquals(1, statisticsStreamService.getSubscriberCount());
+    release.countDown();
+  }
+
+  @Test
+  public void testWriteBeyondSendTimeoutIsDisconnected() throws Exception {
+    statisticsStreamService.shutdown();
+    statisticsStreamService = new StatisticsStreamService(statisticsService, meterRegistry, 1, 0, 3, 3, 50);
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingEmitter stuck = new RecordingEmitter(release);
+    RecordingEmitter healthy = new RecordingEmitter(null);
+    statisticsStreamService.subscribe(stuck);
+    statisticsStreamService.subscribe(healthy);
+
+    statisticsStreamService.publish();
+    stuck.awaitSending();
+    Thread.sleep(100);
+    long started = System.nanoTime();
+    statisticsStreamService.publish();
+    // tick does not wait for monitor held by stalled write
+    assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+    healthy.awaitLatest(2);
+
+    assertEquals(1, statisticsStreamService.getSubscriberCount());
+    assertEquals(1, stuck.completed.getCount());
+    release.countDown();
+    assertTrue(stuck.completed.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSubscribersBeyondMaxAreRefused() {
+    for (int i = 0; i < 4; i++) {
+      statisticsStreamService.subscribe(new RecordingEmitter(null));
+    }
+  }
+
+  /**
+   * Emitter recording data of sent events, optionally blocking every send
+   * until released like a client not reading its socket. Like the real
+   * emitter it holds its monitor while sending and completing, and a
+   * blocked socket write does not return on interrupt.
+   */
+  private static final class RecordingEmitter extends SseEmitter {
+
+    private final List<String> frames = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release;
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    private RecordingEmitter(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public synchronized void send(SseEventBuilder builder) throws IOException {
+      sending.countDown();
+      if (release != null) {
+        awaitRelease();
+      }
+      StringBuilder frame = new StringBuilder();
+      for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+        frame.append(data.getData());
+      }
+      frames.add(frame.toString());
+    }
+
+    @Override
+    public synchronized void complete() {
+      super.complete();
+      completed.countDown();
+    }
+
+    private void awaitRelease() {
+      long deadline = System.currentTimeMillis() + 5000;
+      boolean interrupted = false;
+      while (release.getCount() > 0 && System.currentTimeMillis() < deadline) {
+        try {
+          release.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void awaitSending() throws InterruptedException {
+      assertTrue(sending.await(5, TimeUnit.SECONDS));
+    }
+
+    private void awaitFrames(int expected) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (frames.size() < expected && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      assertEquals(expected, frames.size());
+    }
+
+    private void awaitLatest(long count) throws InterruptedException {
+      String latest = "\"count\":" + count;
+      long deadline = System.currentTimeMillis() + 5000;
+      while ((frames.isEmpty() || !frames.get(frames.size() - 1).contains(latest))
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      assertTrue(frames.get(frames.size() - 1).contains(latest));
+    }
+  }
+}
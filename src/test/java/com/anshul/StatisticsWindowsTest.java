@@ -0,0 +1,132 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsSnapshot;
+import com.anshul.store.HeapTransactionStore;
+import com.anshul.store.OffHeapTransactionStore;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StatisticsSnapshotCache;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.TransactionStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticsWindowsTest {
+
+  private StatisticsWindows statisticsWindows;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    statisticsWindows = new StatisticsWindows(new String[]{"1s", "10s", "5m"}, "60s");
+    currentMilli = Instant.now().toEpochMilli();
+  }
+
+  @Test
+  public void testWindowsAreParsedAndSorted() {
+    assertArrayEquals(new long[]{1000, 10000, 60000, 300000}, statisticsWindows.getWindowsInMillis());
+    assertEquals(60000, statisticsWindows.getDefaultWindowInMillis());
+    assertEquals(300000, statisticsWindows.getRetentionInMillis());
+    assertEquals(500, StatisticsWindows.parseDuration("500ms"));
+    assertEquals(3600000, StatisticsWindows.parseDuration("1h"));
+  }
+
+  @Test
+  public void testResolve() {
+    assertEquals(60000, statisticsWindows.resolve(null));
+    assertEquals(10000, statisticsWindows.resolve("10s"));
+    assertEquals(10000, statisticsWindows.resolve("10000ms"));
+    for (String window : new String[]{"20s", "10", "s", "-1s", "10 s", "10d"}) {
+      try {
+        statisticsWindows.resolve(window);
+        assertTrue("expected rejection of " + window, false);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testEveryStoreServesConfiguredWindows() {
+    List<TransactionStore> transactionStores = Arrays.asList(new HeapTransactionStore(statisticsWindows),
+        new RingBufferTransactionStore(statisticsWindows), new PrimitiveTransactionStore(16, statisticsWindows),
+        new OffHeapTransactionStore(16, statisticsWindows));
+    for (TransactionStore transactionStore : transactionStores) {
+      transactionStore.clearStore();
+      transactionStore.addElement(1D, currentMilli - 200);
+      transactionStore.addElement(2D, currentMilli - 5000);
+      transactionStore.addElement(4D, currentMilli - 30000);
+      transactionStore.addElement(8D, currentMilli - 120000);
+      String name = transactionStore.getClass().getSimpleName();
+
+      assertEquals(name, Long.valueOf(1), transactionStore.getStatistics(currentMilli, 1000).getStatisticsResource().getCount());
+      assertEquals(name, "3.00", transactionStore.getStatistics(currentMilli, 10000).getStatisticsResource().getSum());
+      assertEquals(name, "7.00", transactionStore.getStatistics(currentMilli, 60000).getStatisticsResource().getSum());
+      StatisticsSnapshot fiveMinutes = transactionStore.getStatistics(currentMilli, 300000);
+      assertEquals(name, "15.00", fiveMinutes.getStatisticsResource().getSum());
+      assertEquals(name, "8.00", fiveMinutes.getStatisticsResource().getMax());
+      // oldest counted transaction leaves 5 minute window in 3 minutes
+      assertTrue(name, fiveMinutes.getValidUntilMilli() > currentMilli + 179000);
+      assertTrue(name, fiveMinutes.getValidUntilMilli() <= currentMilli + 180001);
+      transactionStore.clearStore();
+    }
+  }
+
+  @Test
+  public void testTransactionsBeyondLongestWindowAreStale() {
+    RingBufferTransactionStore ringBufferTransactionStore = new RingBufferTransactionStore(statisticsWindows);
+    ringBufferTransactionStore.addElement(1D, currentMilli);
+    assertFalse(ringBufferTransactionStore.addElement(2D, currentMilli - 300000));
+    assertEquals(1, ringBufferTransactionStore.size());
+  }
+
+  @Test
+  public void testSnapshotCacheKeepsSnapshotPerWindow() {
+    PrimitiveTransactionStore primitiveTransactionStore = new PrimitiveTransactionStore(16, statisticsWindows);
+    StatisticsSnapshotCache statisticsSnapshotCache = new StatisticsSnapshotCache(primitiveTransactionStore,
+        statisticsWindows, 60000, true);
+    primitiveTransactionStore.addElement(10D, currentMilli - 30000);
+    primitiveTransactionStore.addElement(20D, currentMilli - 500);
+    statisticsSnapshotCache.markDirty();
+
+    assertEquals("20.00", statisticsSnapshotCache.getSnapshot(1000).getStatisticsResource().getSum());
+    assertEquals("30.00", statisticsSnapshotCache.getSnapshot().getStatisticsResource().getSum());
+    try {
+      statisticsSnapshotCache.getSnapshot(20000);
+      assertTrue("expected rejection of unconfigured window", false);
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
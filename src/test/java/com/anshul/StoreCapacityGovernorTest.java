@@ -0,0 +1,102 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StoreCapacityGovernor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StoreCapacityGovernorTest {
+
+  private PrimitiveTransactionStore primitiveTransactionStore;
+  private MeterRegistry meterRegistry;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    primitiveTransactionStore = new PrimitiveTransactionStore();
+    meterRegistry = new SimpleMeterRegistry();
+    currentMilli = System.currentTimeMillis();
+  }
+
+  @Test
+  public void testAdmitUpToMaxEntries() {
+    StoreCapacityGovernor storeCapacityGovernor = new StoreCapacityGovernor(primitiveTransactionStore, meterRegistry, 3, 0, 429);
+
+    assertEquals(2, storeCapacityGovernor.admit(2));
+    assertEquals(1, storeCapacityGovernor.admit(2));
+    assertEquals(0, storeCapacityGovernor.admit(1));
+    assertEquals(2D, meterRegistry.get("transaction.capacity.rejected").counter().count(), 0D);
+    assertEquals(HttpStatus.TOO_MANY_REQUESTS, storeCapacityGovernor.getRejectStatus());
+
+    // nothing was actually stored, sample frees admitted room
+    storeCapacityGovernor.sample();
+    assertEquals(3, storeCapacityGovernor.admit(5));
+  }
+
+  @Test
+  public void testMaxBytesLimitsEntries() {
+    StoreCapacityGovernor storeCapacityGovernor = new StoreCapacityGovernor(primitiveTransactionStore, meterRegistry, 0, 40, 503);
+    primitiveTransactionStore.addElement(1D, currentMilli - 1000);
+    storeCapacityGovernor.sample();
+
+    // 16 bytes per transaction, room for 2 of which 1 is taken
+    assertEquals(1, storeCapacityGovernor.admit(3));
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, storeCapacityGovernor.getRejectStatus());
+  }
+
+  @Test
+  public void testRetryAfterFollowsOldestTransaction() {
+    StoreCapacityGovernor storeCapacityGovernor = new StoreCapacityGovernor(primitiveTransactionStore, meterRegistry, 1, 0, 503);
+    primitiveTransactionStore.addElement(1D, currentMilli - 58500);
+    primitiveTransactionStore.addElement(1D, currentMilli - 1000);
+    storeCapacityGovernor.sample();
+
+    assertEquals(0, storeCapacityGovernor.admit(1));
+    long retryAfterSeconds = storeCapacityGovernor.getRetryAfterSeconds();
+    assertTrue(retryAfterSeconds >= 1 && retryAfterSeconds <= 2);
+  }
+
+  @Test
+  public void testAggregatingStoreIsNotLimited() {
+    StoreCapacityGovernor storeCapacityGovernor = new StoreCapacityGovernor(new RingBufferTransactionStore(),
+        meterRegistry, 3, 40, 503);
+
+    assertEquals(1000, storeCapacityGovernor.admit(1000));
+  }
+
+  @Test
+  public void testUnlimitedByDefault() {
+    StoreCapacityGovernor storeCapacityGovernor = new StoreCapacityGovernor(primitiveTransactionStore, meterRegistry, 0, 0, 503);
+
+    assertEquals(Integer.MAX_VALUE, storeCapacityGovernor.admit(Integer.MAX_VALUE));
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.store.HeapTransactionStore;
+import com.anshul.store.OffHeapTransactionStore;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StatisticsAccumulator;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.StripedMoments;
+import com.anshul.store.TransactionStore;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StripedMomentsTest {
+
+  /**
+   * Exact population variance by two passes over BigDecimal amounts.
+   */
+  private static BigDecimal bruteForceVariance(double[] amounts) {
+    BigDecimal sum = BigDecimal.ZERO;
+    for (double amount : amounts) {
+      sum = sum.add(BigDecimal.valueOf(amount));
+    }
+    BigDecimal count = BigDecimal.valueOf(amounts.length);
+    BigDecimal mean = sum.divide(count, MathContext.DECIMAL128);
+    BigDecimal squares = BigDecimal.ZERO;
+    for (double amount : amounts) {
+      BigDecimal deviation = BigDecimal.valueOf(amount).subtract(mean);
+      squares = squares.add(deviation.multiply(deviation));
+    }
+    return squares.divide(count, MathContext.DECIMAL128);
+  }
+
+  private static double[] amounts(long seed, int length, double offset) {
+    Random random = new Random(seed);
+    double[] amounts = new double[length];
+    for (int i = 0; i < length; i++) {
+      // whole cents on top of a large offset, where naive sum of squares loses digits
+      amounts[i] = offset + random.nextInt(1000000) / 100D;
+    }
+    return amounts;
+  }
+
+  @Test
+  public void testMergedStripesMatchBruteForce() throws InterruptedException {
+    double[] amounts = amounts(3, 40000, 1e9);
+    StripedMoments[] buckets = {new StripedMoments(), new StripedMoments(), new StripedMoments()};
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    for (int writer = 0; writer < 4; writer++) {
+      int first = writer;
+      executorService.execute(() -> {
+        for (int i = first; i < amounts.length; i += 4) {
+          buckets[i % buckets.length].add(amounts[i]);
+        }
+      });
+    }
+    executorService.shutdown();
+    executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(false, true);
+    for (StripedMoments bucket : buckets) {
+      accumulator.merge(bucket);
+    }
+    StatisticsResource statisticsResource = new StatisticsResource();
+    accumulator.applyDistribution(statisticsResource);
+    BigDecimal expected = bruteForceVariance(amounts);
+    assertEquals(expected.setScale(2, RoundingMode.HALF_UP).toString(), statisticsResource.getVariance());
+  }
+
+  @Test
+  public void testWelfordUpdateMatchesBruteForce() {
+    double[] amounts = amounts(5, 10000, 0);
+    StatisticsAccumulator accumulator = new StatisticsAccumulator(false, true);
+    for (double amount : amounts) {
+      accumulator.accept(amount);
+    }
+    StatisticsResource statisticsResource = accumulator.toStatisticsResource();
+    BigDecimal expected = bruteForceVariance(amounts);
+    assertEquals(expected.setScale(2, RoundingMode.HALF_UP).toString(), statisticsResource.getVariance());
+    assertEquals(BigDecimal.valueOf(Math.sqrt(expected.doubleValue())).setScale(2, RoundingMode.HALF_UP).toString(),
+        statisticsResource.getStddev());
+    assertNull(statisticsResource.getP50());
+  }
+
+  @Test
+  public void testEveryStoreReportsVariance() {
+    StatisticsWindows statisticsWindows = new StatisticsWindows(60000).withVariance(true);
+    long currentMilli = Instant.now().toEpochMilli();
+    List<TransactionStore> transactionStores = Arrays.asList(new HeapTransactionStore(statisticsWindows),
+        new RingBufferTransactionStore(statisticsWindows), new PrimitiveTransactionStore(16, statisticsWindows),
+        new OffHeapTransactionStore(16, statisticsWindows));
+    double[] amounts = amounts(7, 500, 100);
+    for (TransactionStore transactionStore : transactionStores) {
+      transactionStore.clearStore();
+      String name = transactionStore.getClass().getSimpleName();
+      StatisticsResource empty = transactionStore.getStatistics(currentMilli, 60000).getStatisticsResource();
+      assertEquals(name, "0.00", empty.getVariance());
+      assertEquals(name, "0.00", empty.getStddev());
+
+      for (int i = 0; i < amounts.length; i++) {
+        transactionStore.addElement(amounts[i], currentMilli - i * 100);
+      }
+      transactionStore.addElement(1e6, currentMilli - 61000);
+      StatisticsResource statisticsResource = transactionStore.getStatistics(currentMilli, 60000).getStatisticsResource();
+      assertEquals(name, bruteForceVariance(amounts).setScale(2, RoundingMode.HALF_UP).toString(),
+          statisticsResource.getVariance());
+      transactionStore.clearStore();
+    }
+  }
+}
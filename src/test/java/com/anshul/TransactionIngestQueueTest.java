@@ -0,0 +1,146 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.store.TransactionIngestQueue;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionIngestQueueTest {
+
+  private MeterRegistry meterRegistry;
+  private TransactionIngestQueue transactionIngestQueue;
+
+  @Before
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    transactionIngestQueue = new TransactionIngestQueue(1024, 64, meterRegistry);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    transactionIngestQueue.close();
+  }
+
+  @Test
+  public void testTransactionsOfManyProducersStoredInBatchesByOneThread() throws InterruptedException {
+    LongAdder stored = new LongAdder();
+    LongAdder sum = new LongAdder();
+    AtomicInteger largestBatch = new AtomicInteger();
+    Set<Thread> handlerThreads = ConcurrentHashMap.newKeySet();
+    transactionIngestQueue.start((amounts, epochMillis, keys, length) -> {
+      handlerThreads.add(Thread.currentThread());
+      largestBatch.accumulateAndGet(length, Math::max);
+      for (int i = 0; i < length; i++) {
+        sum.add((long) amounts[i] + epochMillis[i] + Long.parseLong(keys[i]));
+      }
+      stored.add(length);
+      return length;
+    });
+
+    int producers = 4;
+    int perProducer = 20000;
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 1; i <= perProducer; i++) {
+          while (!transactionIngestQueue.offer(i, i, String.valueOf(i))) {
+            Thread.yield();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    transactionIngestQueue.awaitStored();
+
+    assertEquals((long) producers * perProducer, stored.sum());
+    assertEquals(3L * producers * perProducer * (perProducer + 1) / 2, sum.sum());
+    assertEquals(1, handlerThreads.size());
+    assertTrue(largestBatch.get() <= 64);
+    assertEquals(0, transactionIngestQueue.pending());
+  }
+
+  @Test
+  public void testFullQueueRefusesTransactions() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    transactionIngestQueue.start((amounts, epochMillis, keys, length) -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return length;
+    });
+    int published = 0;
+    while (published < 4096 && transactionIngestQueue.offer(1D, 1L, null)) {
+      published++;
+    }
+    // capacity slots plus at most one batch held by blocked aggregator
+    assertTrue(String.valueOf(published), published >= 1024 && published <= 1024 + 64);
+    assertFalse(transactionIngestQueue.offer(1D, 1L, null));
+    assertEquals(2D, meterRegistry.get("transaction.ingest.full").counter().count(), 0);
+    release.countDown();
+    transactionIngestQueue.awaitStored();
+    assertTrue(transactionIngestQueue.offer(1D, 1L, null));
+  }
+
+  @Test
+  public void testCloseStoresPublishedTransactionsAndCountsDiscarded() throws InterruptedException {
+    LongAdder handled = new LongAdder();
+    transactionIngestQueue.start((amounts, epochMillis, keys, length) -> {
+      handled.add(length);
+      // odd amounts already left the window
+      int stored = 0;
+      for (int i = 0; i < length; i++) {
+        stored += (long) amounts[i] % 2 == 0 ? 1 : 0;
+      }
+      return stored;
+    });
+    for (int i = 0; i < 500; i++) {
+      assertTrue(transactionIngestQueue.offer(i, i, null));
+    }
+    transactionIngestQueue.close();
+
+    assertEquals(500, handled.sum());
+    assertEquals(250D, meterRegistry.get("transaction.ingest.discarded").counter().count(), 0);
+  }
+}
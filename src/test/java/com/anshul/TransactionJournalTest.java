@@ -0,0 +1,145 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.model.StatisticsResource;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.TransactionJournal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransactionJournalTest {
+
+  private static final long RECORD_SIZE = 20;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path directory;
+  private TransactionJournal transactionJournal;
+
+  @Before
+  public void setup() throws IOException {
+    directory = temporaryFolder.getRoot().toPath();
+    transactionJournal = openJournal(TransactionJournal.DEFAULT_SEGMENT_BYTES, TransactionJournal.DEFAULT_MAX_SEGMENTS);
+  }
+
+  @After
+  public void tearDown() {
+    transactionJournal.close();
+  }
+
+  @Test
+  public void testStatisticsAtPastInstantOnlyCountTransactionsArrivedBy() throws InterruptedException {
+    long firstMilli = System.currentTimeMillis();
+    transactionJournal.append(10D, firstMilli - 1000);
+    transactionJournal.appendAll(new double[]{20D, 30D}, new long[]{firstMilli - 2000, firstMilli - 90000}, 2);
+    Thread.sleep(20);
+    long atMilli = System.currentTimeMillis();
+    Thread.sleep(20);
+    transactionJournal.append(40D, atMilli - 500);
+
+    StatisticsResource atInstant = transactionJournal.getStatistics(atMilli, 60000);
+    assertEquals(2L, atInstant.getCount().longValue());
+    assertEquals("30.00", atInstant.getSum());
+    assertEquals(3L, transactionJournal.getStatistics(System.currentTimeMillis(), 60000).getCount().longValue());
+    assertEquals(4L, transactionJournal.getStatistics(System.currentTimeMillis(), 120000).getCount().longValue());
+    assertEquals(0L, transactionJournal.getStatistics(firstMilli - 3000, 60000).getCount().longValue());
+  }
+
+  @Test
+  public void testStatisticsAfterClearOnlyCountLaterTransactions() throws InterruptedException {
+    long currentMilli = System.currentTimeMillis();
+    transactionJournal.append(10D, currentMilli - 1000);
+    Thread.sleep(20);
+    long beforeClearMilli = System.currentTimeMillis();
+    Thread.sleep(20);
+    transactionJournal.markCleared();
+    transactionJournal.append(20D, currentMilli - 1000);
+
+    assertEquals("10.00", transactionJournal.getStatistics(beforeClearMilli, 60000).getSum());
+    assertEquals("20.00", transactionJournal.getStatistics(System.currentTimeMillis(), 60000).getSum());
+  }
+
+  @Test
+  public void testStatisticsAreSummedExactly() {
+    long currentMilli = System.currentTimeMillis();
+    // summed as double 0.8049999999999999
+    transactionJournal.appendAll(new double[]{0.7, 0.1, 0.005}, new long[]{currentMilli - 1000, currentMilli - 1000,
+        currentMilli - 1000}, 3);
+
+    assertEquals("0.81", transactionJournal.getStatistics(System.currentTimeMillis(), 60000).getSum());
+  }
+
+  @Test
+  public void testRollsSegmentsAndDeletesOldest() throws IOException {
+    transactionJournal.close();
+    transactionJournal = openJournal(4 * RECORD_SIZE, 2);
+    long currentMilli = System.currentTimeMillis();
+    for (int i = 1; i <= 10; i++) {
+      transactionJournal.append(i, currentMilli - 1000);
+    }
+    // segments of 4 records: 1-4 deleted, 5-8 and 9-10 kept
+    assertEquals(2, segmentFiles());
+    StatisticsResource statistics = transactionJournal.getStatistics(System.currentTimeMillis(), 60000);
+    assertEquals(6L, statistics.getCount().longValue());
+    assertEquals("5.00", statistics.getMin());
+  }
+
+  @Test
+  public void testReopenedJournalQueriesSegmentsOfPreviousRun() throws IOException {
+    long currentMilli = System.currentTimeMillis();
+    transactionJournal.append(10D, currentMilli - 1000);
+    transactionJournal.append(20D, currentMilli - 2000);
+    transactionJournal.close();
+
+    transactionJournal = openJournal(TransactionJournal.DEFAULT_SEGMENT_BYTES, TransactionJournal.DEFAULT_MAX_SEGMENTS);
+    transactionJournal.append(30D, currentMilli - 3000);
+    StatisticsResource statistics = transactionJournal.getStatistics(System.currentTimeMillis(), 60000);
+    assertEquals(3L, statistics.getCount().longValue());
+    assertEquals("60.00", statistics.getSum());
+  }
+
+  private TransactionJournal openJournal(long segmentBytes, int maxSegments) throws IOException {
+    TransactionJournal journal = new TransactionJournal(directory, segmentBytes, maxSegments,
+        StatisticsWindows.defaultWindows());
+    journal.open();
+    return journal;
+  }
+
+  private long segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+}
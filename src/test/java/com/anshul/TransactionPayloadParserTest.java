@@ -0,0 +1,116 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.util.TransactionPayload;
+import com.anshul.util.TransactionPayloadParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionPayloadParserTest {
+
+  private TransactionPayloadParser transactionPayloadParser;
+  private TransactionPayload transactionPayload;
+
+  @Before
+  public void setup() {
+    transactionPayloadParser = new TransactionPayloadParser();
+    transactionPayload = transactionPayloadParser.payload();
+  }
+
+  @Test
+  public void testParseOffsetPayload() {
+    assertTrue(parse("{\"_timestampOffset\":-30000, \"amount\":\"127.96\"}"));
+
+    assertEquals(127.96, transactionPayload.getAmount(), 0);
+    assertEquals(-30000, transactionPayload.getTimestampOffset());
+    assertFalse(transactionPayload.isTimestampPresent());
+  }
+
+  @Test
+  public void testParseTimestampPayload() {
+    assertTrue(parse(" {\n  \"amount\" : 12.5 ,\"timestamp\":\"2018-07-17T09:59:51.312Z\" }\n"));
+
+    assertEquals(12.5, transactionPayload.getAmount(), 0);
+    assertEquals(Instant.parse("2018-07-17T09:59:51.312Z").toEpochMilli(), transactionPayload.getEpochMilli());
+  }
+
+  @Test
+  public void testParseKeyedPayload() {
+    assertTrue(parse("{\"amount\":\"10\",\"_timestampOffset\":-1,\"key\":\"merchant-42/EUR\"}"));
+
+    assertEquals("merchant-42/EUR", transactionPayload.getKey());
+    assertTrue(parse("{\"amount\":\"10\",\"_timestampOffset\":-1}"));
+    assertEquals(null, transactionPayload.getKey());
+    assertFalse(parse("{\"amount\":\"10\",\"_timestampOffset\":-1,\"key\":\"caf\u00e9\"}"));
+    assertFalse(parse("{\"amount\":\"10\",\"_timestampOffset\":-1,\"key\":42}"));
+  }
+
+  @Test
+  public void testAmountsMatchDoubleParsing() {
+    Random random = new Random(7);
+    for (int i = 0; i < 10000; i++) {
+      String amount = (random.nextBoolean() ? "-" : "") + random.nextInt(1000000) + "." + random.nextInt(100000);
+      assertTrue(parse("{\"amount\":\"" + amount + "\",\"_timestampOffset\":-1}"));
+      assertEquals(amount, Double.doubleToLongBits(Double.parseDouble(amount)),
+          Double.doubleToLongBits(transactionPayload.getAmount()));
+    }
+  }
+
+  @Test
+  public void testTimestampsMatchInstantParsing() {
+    Random random = new Random(11);
+    for (int i = 0; i < 10000; i++) {
+      Instant instant = Instant.ofEpochSecond(random.nextInt(Integer.MAX_VALUE), random.nextInt(1000000000));
+      String timestamp = instant.toString();
+      assertTrue(timestamp, parse("{\"amount\":\"1\",\"timestamp\":\"" + timestamp + "\"}"));
+      assertEquals(timestamp, instant.toEpochMilli(), transactionPayload.getEpochMilli());
+    }
+  }
+
+  @Test
+  public void testUncommonPayloadsFallBack() {
+    assertFalse(parse("Hello world!"));
+    assertFalse(parse("{\"amount\":\"One hundred\",\"_timestampOffset\":-1}"));
+    assertFalse(parse("{\"amount\":\"1e3\",\"_timestampOffset\":-1}"));
+    assertFalse(parse("{\"amount\":\"12345678901234567\",\"_timestampOffset\":-1}"));
+    assertFalse(parse("{\"amount\":null,\"_timestampOffset\":-1}"));
+    assertFalse(parse("{\"amount\":\"1\",\"timestamp\":\"4/23/2018 11:32 PM\"}"));
+    assertFalse(parse("{\"amount\":\"1\",\"timestamp\":\"2018-02-30T10:00:00Z\"}"));
+    assertFalse(parse("{\"amount\":\"1\",\"currency\":\"EUR\"}"));
+    assertFalse(parse("{\"amount\":\"1\"} trailing"));
+    assertFalse(parse("{\"amount\":01}"));
+  }
+
+  private boolean parse(String json) {
+    return transactionPayloadParser.parse(json.getBytes(StandardCharsets.UTF_8), transactionPayload);
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.service.IKeyPartitionService;
+import com.anshul.service.impl.KeyPartitionService;
+import com.anshul.service.impl.TransactionService;
+import com.anshul.store.HeavyHitterTracker;
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.StatisticsSnapshotCache;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.StoreCapacityGovernor;
+import com.anshul.store.TransactionIngestQueue;
+import com.anshul.store.TransactionJournal;
+import com.anshul.store.TransactionStore;
+import com.anshul.store.TransactionStoreSnapshotter;
+import com.anshul.store.TransactionWriteAheadLog;
+import com.anshul.util.TransactionInputValidationUtil;
+import com.anshul.util.TransactionPayloadParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.Collections;
+
+/**
+ * Builds a TransactionService through its constructor. Collaborators a
+ * test does not set are explicit disabled instances, transactions are
+ * parsed, validated and stored into the store without capacity limit or
+ * caching.
+ */
+final class TransactionServiceFixture {
+
+  private final StatisticsWindows statisticsWindows = StatisticsWindows.defaultWindows();
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final TransactionStore transactionStore;
+  private StoreCapacityGovernor storeCapacityGovernor;
+  private KeyedStatisticsStore keyedStatisticsStore;
+  private TransactionWriteAheadLog transactionWriteAheadLog;
+  private TransactionIngestQueue transactionIngestQueue;
+  private IKeyPartitionService keyPartitionService;
+
+  TransactionServiceFixture(TransactionStore transactionStore) {
+    this.transactionStore = transactionStore;
+    this.storeCapacityGovernor = new StoreCapacityGovernor(transactionStore, meterRegistry, 0, 0, 503);
+    this.keyedStatisticsStore = new KeyedStatisticsStore(statisticsWindows, KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS,
+        KeyedStatisticsStore.DEFAULT_MAX_KEYS);
+    this.transactionWriteAheadLog = new TransactionWriteAheadLog(false, "wal", statisticsWindows, 10, false, 5000);
+  }
+
+  /**
+   * @param transactionStore store of the service
+   * @return service with every optional collaborator disabled
+   */
+  static TransactionService transactionService(TransactionStore transactionStore) {
+    return new TransactionServiceFixture(transactionStore).build();
+  }
+
+  TransactionServiceFixture storeCapacityGovernor(StoreCapacityGovernor storeCapacityGovernor) {
+    this.storeCapacityGovernor = storeCapacityGovernor;
+    return this;
+  }
+
+  TransactionServiceFixture keyedStatisticsStore(KeyedStatisticsStore keyedStatisticsStore) {
+    this.keyedStatisticsStore = keyedStatisticsStore;
+    return this;
+  }
+
+  TransactionServiceFixture transactionWriteAheadLog(TransactionWriteAheadLog transactionWriteAheadLog) {
+    this.transactionWriteAheadLog = transactionWriteAheadLog;
+    return this;
+  }
+
+  TransactionServiceFixture transactionIngestQueue(TransactionIngestQueue transactionIngestQueue) {
+    this.transactionIngestQueue = transactionIngestQueue;
+    return this;
+  }
+
+  TransactionServiceFixture keyPartitionService(IKeyPartitionService keyPartitionService) {
+    this.keyPartitionService = keyPartitionService;
+    return this;
+  }
+
+  TransactionService build() {
+    HeavyHitterTracker heavyHitterTracker = new HeavyHitterTracker(statisticsWindows,
+        KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS, HeavyHitterTracker.DEFAULT_CAPACITY, HeavyHitterTracker.DEFAULT_MAX_K);
+    TransactionStoreSnapshotter transactionStoreSnapshotter = new TransactionStoreSnapshotter(false,
+        "snapshot/statistics.snapshot", transactionStore, keyedStatisticsStore, statisticsWindows, transactionWriteAheadLog);
+    TransactionJournal transactionJournal = new TransactionJournal(false, "journal",
+        TransactionJournal.DEFAULT_SEGMENT_BYTES, TransactionJournal.DEFAULT_MAX_SEGMENTS, statisticsWindows);
+    IKeyPartitionService partitionService = keyPartitionService != null ? keyPartitionService
+        : new KeyPartitionService(keyedStatisticsStore, heavyHitterTracker, meterRegistry, null, Collections.emptyMap(),
+        1, 1, 1, 1);
+    TransactionIngestQueue ingestQueue = transactionIngestQueue != null ? transactionIngestQueue
+        : new TransactionIngestQueue(false, 2, 1, meterRegistry, transactionWriteAheadLog);
+    return new TransactionService(new TransactionInputValidationUtil(), new TransactionPayloadParser(), transactionStore,
+        new StatisticsSnapshotCache(transactionStore, 0, true), storeCapacityGovernor, statisticsWindows,
+        keyedStatisticsStore, heavyHitterTracker, transactionWriteAheadLog, transactionStoreSnapshotter,
+        transactionJournal, partitionService, ingestQueue);
+  }
+}
@@ -24,12 +24,20 @@ package com.anshul;
 
 import com.anshul.exception.FutureDatedOrNonParsableFieldException;
 import com.anshul.exception.StaleTransactionException;
+import com.anshul.model.TransactionBatchResource;
 import com.anshul.model.TransactionResource;
+import com.anshul.model.TransactionStatus;
 import com.anshul.service.impl.TransactionService;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StoreCapacityGovernor;
+import com.anshul.store.TransactionIngestQueue;
 import com.anshul.util.HeapNode;
 import com.anshul.util.MinPriorityQueue;
 import com.anshul.util.TransactionInputValidationUtil;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -38,10 +46,14 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TransactionServiceTest {
 
@@ -51,6 +63,8 @@ public class TransactionServiceTest {
   @InjectMocks
   private TransactionService transactionServiceMock;
   private MinPriorityQueue<HeapNode> minPriorityQueue;
+  private RingBufferTransactionStore ringBufferTransactionStore;
+  private TransactionService transactionService;
   private Instant currentUTC;
   private Instant threshold;
 
@@ -60,12 +74,16 @@ public class TransactionServiceTest {
     currentUTC = Instant.now();
     threshold = currentUTC.minusMillis(MILLIS_TO_SUBTRACT);
     minPriorityQueue = MinPriorityQueue.heapNodeFactory;
+    ringBufferTransactionStore = new RingBufferTransactionStore();
+    transactionService = TransactionServiceFixture.transactionService(ringBufferTransactionStore);
   }
 
   @After
   public void tearDown() throws Exception {
     transactionServiceMock = null;
     minPriorityQueue = null;
+    ringBufferTransactionStore = null;
+    transactionService = null;
     currentUTC = null;
     threshold = null;
   }
@@ -210,4 +228,202 @@ public class TransactionServiceTest {
     assertEquals(0, minPriorityQueue.size());
   }
 
-}
\ No newline at end of file
+  /**
+   * Testing batch transaction post request functionality.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMakeTransactions() throws IOException {
+
+    TransactionBatchResource result = transactionService.makeTransactions("["
+        + "{\"_timestampOffset\":-30000, \"amount\":\"127.96\"},"
+        + "{\"_timestampOffset\":-20000, \"amount\":\"12.04\"},"
+        + "{\"_timestampOffset\":-60001, \"amount\":\"262.01\"},"
+        + "{\"_timestampOffset\":60000, \"amount\":\"5\"},"
+        + "{\"_timestampOffset\":-10000, \"amount\":\"One hundred\"}]");
+
+    assertEquals(2, result.getCreated());
+    assertEquals(1, result.getStale());
+    assertEquals(2, result.getUnprocessable());
+    assertEquals("140.00", ringBufferTransactionStore.getStatistics().getSum());
+  }
+
+  /**
+   * Testing batch transaction post request on a store at capacity.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMakeTransactionsRejectedAtCapacity() throws IOException {
+    PrimitiveTransactionStore primitiveTransactionStore = new PrimitiveTransactionStore();
+    TransactionService transactionService = new TransactionServiceFixture(primitiveTransactionStore)
+        .storeCapacityGovernor(new StoreCapacityGovernor(primitiveTransactionStore, new SimpleMeterRegistry(), 2, 0, 503))
+        .build();
+
+    TransactionBatchResource result = transactionService.makeTransactions("["
+        + "{\"_timestampOffset\":-30000, \"amount\":\"127.96\"},"
+        + "{\"_timestampOffset\":-20000, \"amount\":\"12.04\"},"
+        + "{\"_timestampOffset\":-10000, \"amount\":\"10\"}]");
+
+    assertEquals(2, result.getCreated());
+    assertEquals(1, result.getRejected());
+    assertEquals(TransactionStatus.REJECTED,
+        transactionService.makeTransaction("{\"_timestampOffset\":-1000, \"amount\":\"1\"}".getBytes(StandardCharsets.UTF_8)));
+    assertEquals("140.00", primitiveTransactionStore.getStatistics().getSum());
+  }
+
+  /**
+   * Testing stream whose known fields hold objects or arrays, nested fields
+   * are not read as fields of the transaction.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMakeTransactionsFromStreamWithStructuredFields() throws IOException {
+
+    String ndjson = "{\"key\":{\"amount\":\"5\",\"_timestampOffset\":-1000}}\n"
+        + "{\"amount\":[\"7\"], \"_timestampOffset\":-1000}\n"
+        + "{\"_timestampOffset\":-1000, \"amount\":\"2.5\", \"tags\":{\"amount\":\"9\"}}\n";
+    TransactionBatchResource result = transactionService.makeTransactions(
+        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+    assertTrue(result.isComplete());
+    assertEquals(1, result.getCreated());
+    assertEquals(2, result.getUnprocessable());
+    assertEquals("2.50", ringBufferTransactionStore.getStatistics().getSum());
+  }
+
+  /**
+   * Testing stream whose _timestampOffset is not numeric, such
+   * transactions are unprocessable like when posted alone.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMakeTransactionsFromStreamWithNonNumericOffset() throws IOException {
+
+    String ndjson = "{\"_timestampOffset\":\"abc\", \"amount\":\"5\"}\n"
+        + "{\"_timestampOffset\":true, \"amount\":\"7\"}\n"
+        + "{\"_timestampOffset\":\"-1000\", \"amount\":\"2.5\"}\n";
+    TransactionBatchResource result = transactionService.makeTransactions(
+        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+    assertTrue(result.isComplete());
+    assertEquals(1, result.getCreated());
+    assertEquals(2, result.getUnprocessable());
+    assertEquals("2.50", ringBufferTransactionStore.getStatistics().getSum());
+    assertEquals(TransactionStatus.ACCEPTED,
+        transactionService.makeTransaction("{\"_timestampOffset\":\"-1000\", \"amount\":\"2.5\"}"));
+  }
+
+  /**
+   * Testing asynchronous ingest, transactions are stored by aggregator and
+   * cleared by a later delete.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMakeTransactionAsynchronously() throws Exception {
+    TransactionIngestQueue transactionIngestQueue = new TransactionIngestQueue(1024, 16, new SimpleMeterRegistry());
+    transactionService = new TransactionServiceFixture(ringBufferTransactionStore)
+        .transactionIngestQueue(transactionIngestQueue)
+        .build();
+    transactionService.restore();
+    try {
+      for (int i = 0; i < 100; i++) {
+        assertEquals(TransactionStatus.ACCEPTED, transactionService.makeTransaction(
+            "{\"_timestampOffset\":-1000, \"amount\":\"1.5\"}".getBytes(StandardCharsets.UTF_8)));
+      }
+      assertEquals(TransactionStatus.STALE, transactionService.makeTransaction(
+          "{\"_timestampOffset\":-70000, \"amount\":\"1.5\"}".getBytes(StandardCharsets.UTF_8)));
+      assertEquals(TransactionStatus.UNPROCESSABLE, transactionService.makeTransaction(
+          "{\"_timestampOffset\":5000, \"amount\":\"1.5\"}".getBytes(StandardCharsets.UTF_8)));
+      transactionIngestQueue.awaitStored();
+      assertEquals("150.00", ringBufferTransactionStore.getStatistics().getSum());
+
+      assertEquals(TransactionStatus.ACCEPTED, transactionService.makeTransaction(
+          "{\"_timestampOffset\":-1000, \"amount\":\"1.5\"}".getBytes(StandardCharsets.UTF_8)));
+      transactionService.deleteTransaction();
+      assertEquals(Long.valueOf(0), ringBufferTransactionStore.getStatistics().getCount());
+    } finally {
+      transactionIngestQueue.close();
+    }
+  }
+
+  /**
+   * Testing batch request which is not a JSON array
+   *
+   * @throws IOException
+   */
+  @Test(expected = JsonMappingException.class)
+  public void testMakeTransactionsRequiresArray() throws IOException {
+    transactionService.makeTransactions("{\"_timestampOffset\":-30000, \"amount\":\"127.96\"}");
+  }
+
+  /**
+   * Testing newline delimited JSON stream functionality.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMakeTransactionsFromStream() throws IOException {
+
+    StringBuilder ndjson = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      ndjson.append("{\"_timestampOffset\":-").append(1000 + i % 50000).append(", \"amount\":\"1.5\"}\n");
+    }
+    ndjson.append("{\"_timestampOffset\":-70000, \"amount\":\"262.01\", \"tags\":{\"a\":[1,2]}}\n");
+    ndjson.append("{\"_timestampOffset\":5000, \"amount\":\"5\"}\n");
+
+    TransactionBatchResource result = transactionService.makeTransactions(
+        new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+
+    assertTrue(result.isComplete());
+    assertEquals(3000, result.getCreated());
+    assertEquals(1, result.getStale());
+    assertEquals(1, result.getUnprocessable());
+    assertEquals("4500.00", ringBufferTransactionStore.getStatistics().getSum());
+  }
+
+  /**
+   * Testing newline delimited JSON stream holding malformed record.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMakeTransactionsFromMalformedStream() throws IOException {
+
+    String ndjson = "{\"_timestampOffset\":-1000, \"amount\":\"3\"}\nHello world!\n{\"_timestampOffset\":-1000, \"amount\":\"4\"}";
+    TransactionBatchResource result = transactionService.makeTransactions(
+        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+    assertFalse(result.isComplete());
+    assertEquals(1, result.getCreated());
+    assertEquals(1, result.getUnprocessable());
+  }
+
+  /**
+   * Testing validation outcome reported without exceptions
+   */
+  @Test
+  public void testCheckInputStatus() {
+    TransactionInputValidationUtil validationUtil = new TransactionInputValidationUtil();
+    TransactionResource transactionResource = new TransactionResource();
+    transactionResource.setAmount("127.96");
+
+    transactionResource.setTimestampOffset(-30000);
+    assertEquals(TransactionStatus.ACCEPTED, validationUtil.checkInput(transactionResource, currentUTC, threshold));
+
+    transactionResource.setTimestampOffset(-160003);
+    assertEquals(TransactionStatus.STALE, validationUtil.checkInput(transactionResource, currentUTC, threshold));
+
+    transactionResource.setTimestampOffset(60003);
+    assertEquals(TransactionStatus.UNPROCESSABLE, validationUtil.checkInput(transactionResource, currentUTC, threshold));
+
+    transactionResource.setTimestampOffset(0);
+    transactionResource.setTimestamp("4/23/2018 11:32 PM");
+    assertEquals(TransactionStatus.UNPROCESSABLE, validationUtil.checkInput(transactionResource, currentUTC, threshold));
+  }
+
+}
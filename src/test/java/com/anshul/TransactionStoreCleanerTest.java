@@ -0,0 +1,107 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.store.HeapTransactionStore;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.TransactionStoreCleaner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionStoreCleanerTest {
+
+  private PrimitiveTransactionStore primitiveTransactionStore;
+  private MeterRegistry meterRegistry;
+  private TransactionStoreCleaner transactionStoreCleaner;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    primitiveTransactionStore = new PrimitiveTransactionStore();
+    meterRegistry = new SimpleMeterRegistry();
+    transactionStoreCleaner = new TransactionStoreCleaner(primitiveTransactionStore, meterRegistry, 4);
+    currentMilli = System.currentTimeMillis();
+  }
+
+  @Test
+  public void testEvictionIsBoundedPerTick() {
+    for (int i = 0; i < 10; i++) {
+      primitiveTransactionStore.addElement(i, currentMilli - 70000 - i);
+    }
+    primitiveTransactionStore.addElement(1D, currentMilli - 1000);
+    assertTrue(transactionStoreCleaner.evictionLagMillis(System.currentTimeMillis()) >= 9999);
+
+    assertEquals(4, transactionStoreCleaner.evictStaleData());
+    assertEquals(4, transactionStoreCleaner.evictStaleData());
+    assertEquals(2, transactionStoreCleaner.evictStaleData());
+    assertEquals(0, transactionStoreCleaner.evictStaleData());
+
+    assertEquals(1, primitiveTransactionStore.size());
+    assertEquals(0, transactionStoreCleaner.evictionLagMillis(System.currentTimeMillis()));
+    assertEquals(10D, meterRegistry.get("transaction.store.evicted").counter().count(), 0D);
+  }
+
+  @Test
+  public void testBoundedEvictionOfHeapNeverRemovesTransactionsOfWindow() throws InterruptedException {
+    HeapTransactionStore heapTransactionStore = new HeapTransactionStore();
+    heapTransactionStore.clearStore();
+    try {
+      for (int i = 0; i < 20000; i++) {
+        heapTransactionStore.addElement(1D, currentMilli - 70000 - i);
+        if (i % 20 == 0) {
+          heapTransactionStore.addElement(2D, currentMilli - 1000 - i);
+        }
+      }
+      TransactionStoreCleaner heapCleaner = new TransactionStoreCleaner(heapTransactionStore, meterRegistry, 7);
+      Thread reader = new Thread(() -> {
+        for (int i = 0; i < 50; i++) {
+          heapTransactionStore.getStatistics(System.currentTimeMillis(), 60000);
+        }
+      });
+      reader.start();
+      while (heapCleaner.evictStaleData() > 0 || reader.isAlive()) {
+        Thread.yield();
+      }
+      reader.join();
+
+      assertEquals(1000, heapTransactionStore.size());
+      assertEquals("2000.00", heapTransactionStore.getStatistics(System.currentTimeMillis(), 60000)
+          .getStatisticsResource().getSum());
+    } finally {
+      heapTransactionStore.clearStore();
+    }
+  }
+
+  @Test
+  public void testEvictionLagGauge() {
+    primitiveTransactionStore.addElement(1D, currentMilli - 65000);
+
+    double lag = meterRegistry.get("transaction.store.eviction.lag").gauge().value();
+    assertTrue(lag >= 4999 && lag < 60000);
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.OffHeapTransactionStore;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.RingBufferTransactionStore;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.TransactionStore;
+import com.anshul.store.TransactionStoreSnapshotter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionStoreSnapshotterTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path file;
+  private long currentMilli;
+
+  @Before
+  public void setup() {
+    file = temporaryFolder.getRoot().toPath().resolve("statistics.snapshot");
+    currentMilli = System.currentTimeMillis();
+  }
+
+  @Test
+  public void testRestoresTransactionsAndKeysOfWindow() throws IOException {
+    PrimitiveTransactionStore store = new PrimitiveTransactionStore();
+    KeyedStatisticsStore keyedStore = keyedStore();
+    store.addElement(10.5, currentMilli - 1000);
+    store.addElement(20.25, currentMilli - 2000);
+    store.addElement(-3D, currentMilli - 30000);
+    keyedStore.addElement("merchant-1", 10.5, currentMilli - 1000);
+    keyedStore.addElement("merchant-1", 20.25, currentMilli - 2000);
+    assertTrue(snapshotter(store, keyedStore).writeSnapshot() > 0);
+    assertFalse(Files.exists(file.resolveSibling("statistics.snapshot.tmp")));
+
+    PrimitiveTransactionStore restoredStore = new PrimitiveTransactionStore();
+    KeyedStatisticsStore restoredKeyedStore = keyedStore();
+    assertEquals(3, snapshotter(restoredStore, restoredKeyedStore).restore());
+    long nowMilli = System.currentTimeMillis();
+    assertEquals(store.getStatistics(nowMilli).toString(), restoredStore.getStatistics(nowMilli).toString());
+    assertEquals(keyedStore.getStatistics("merchant-1", nowMilli).getStatisticsResource().toString(),
+        restoredKeyedStore.getStatistics("merchant-1", nowMilli).getStatisticsResource().toString());
+  }
+
+  @Test
+  public void testRestoresBucketsWithQuantilesAndVariance() throws IOException {
+    StatisticsWindows statisticsWindows = StatisticsWindows.defaultWindows().withQuantiles(true).withVariance(true);
+    RingBufferTransactionStore store = new RingBufferTransactionStore(statisticsWindows);
+    for (int i = 1; i <= 100; i++) {
+      store.addElement(i, currentMilli - i * 100);
+    }
+    snapshotter(store, keyedStore()).writeSnapshot();
+
+    RingBufferTransactionStore restoredStore = new RingBufferTransactionStore(statisticsWindows);
+    assertEquals(100, snapshotter(restoredStore, keyedStore()).restore());
+    long nowMilli = System.currentTimeMillis();
+    assertEquals(store.getStatistics(nowMilli).toString(), restoredStore.getStatistics(nowMilli).toString());
+  }
+
+  @Test
+  public void testIgnoresCorruptSnapshot() throws IOException {
+    PrimitiveTransactionStore store = new PrimitiveTransactionStore();
+    store.addElement(10D, currentMilli - 1000);
+    snapshotter(store, keyedStore()).writeSnapshot();
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(file, bytes);
+
+    PrimitiveTransactionStore restoredStore = new PrimitiveTransactionStore();
+    assertEquals(0, snapshotter(restoredStore, keyedStore()).restore());
+    assertEquals(0, restoredStore.size());
+  }
+
+  @Test
+  public void testIgnoresSnapshotOfOtherStoreAndClearedSnapshot() throws IOException {
+    PrimitiveTransactionStore store = new PrimitiveTransactionStore();
+    store.addElement(10D, currentMilli - 1000);
+    TransactionStoreSnapshotter snapshotter = snapshotter(store, keyedStore());
+    snapshotter.writeSnapshot();
+    assertEquals(0, snapshotter(new OffHeapTransactionStore(), keyedStore()).restore());
+
+    snapshotter.clear();
+    assertEquals(0, snapshotter(new PrimitiveTransactionStore(), keyedStore()).restore());
+  }
+
+  private static KeyedStatisticsStore keyedStore() {
+    return new KeyedStatisticsStore(StatisticsWindows.defaultWindows(), KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS,
+        KeyedStatisticsStore.DEFAULT_MAX_KEYS);
+  }
+
+  private TransactionStoreSnapshotter snapshotter(TransactionStore store, KeyedStatisticsStore keyedStore) {
+    return new TransactionStoreSnapshotter(file, store, keyedStore, StatisticsWindows.defaultWindows());
+  }
+}
@@ -0,0 +1,299 @@
+/**
+ * The MIT License
+ * Copyright (c) ${project.inceptionYear} Anshul Mohil
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.anshul;
+
+import com.anshul.exception.WriteAheadLogException;
+import com.anshul.model.KeyedTransactionBatchResource;
+import com.anshul.model.PartialStatisticsResource;
+import com.anshul.model.TransactionStatus;
+import com.anshul.service.PartitionPeer;
+import com.anshul.service.impl.KeyPartitionService;
+import com.anshul.service.impl.TransactionService;
+import com.anshul.store.HeavyHitterTracker;
+import com.anshul.store.KeyedStatisticsStore;
+import com.anshul.store.PrimitiveTransactionStore;
+import com.anshul.store.StatisticsWindows;
+import com.anshul.store.TransactionWriteAheadLog;
+import com.anshul.util.ConsistentHashRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionWriteAheadLogTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path directory;
+  private TransactionWriteAheadLog transactionWriteAheadLog;
+  private long currentMilli;
+
+  @Before
+  public void setup() throws IOException {
+    directory = temporaryFolder.getRoot().toPath();
+    transactionWriteAheadLog = openLog(false);
+    currentMilli = System.currentTimeMillis();
+  }
+
+  @After
+  public void tearDown() {
+    transactionWriteAheadLog.close();
+  }
+
+  @Test
+  public void testReplaySkipsTransactionsOlderThanWindow() throws IOException {
+    transactionWriteAheadLog.append(10D, currentMilli - 1000, "merchant-1");
+    transactionWriteAheadLog.append(20D, currentMilli - 61000, null);
+    transactionWriteAheadLog.appendAll(new double[]{30D, 40D}, new long[]{currentMilli - 2000, currentMilli - 3000},
+        new String[]{null, "merchant-2"}, 2);
+    transactionWriteAheadLog.close();
+
+    List<String> replayed = replay();
+    assertEquals(3, replayed.size());
+    assertEquals("10.0@" + (currentMilli - 1000) + "/merchant-1", replayed.get(0));
+    assertEquals("30.0@" + (currentMilli - 2000) + "/null", replayed.get(1));
+    assertEquals("40.0@" + (currentMilli - 3000) + "/merchant-2", replayed.get(2));
+  }
+
+  @Test
+  public void testReplayStopsAtTornRecord() throws IOException {
+    transactionWriteAheadLog.append(10D, currentMilli - 1000, null);
+    transactionWriteAheadLog.append(20D, currentMilli - 1000, null);
+    transactionWriteAheadLog.close();
+    Path segment = segments().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    assertEquals(1, replay().size());
+  }
+
+  @Test
+  public void testAwaitSyncAnswersOnceForced() throws IOException {
+    transactionWriteAheadLog.close();
+    transactionWriteAheadLog = openLog(true);
+
+    transactionWriteAheadLog.append(10D, currentMilli - 1000, null);
+
+    long logged = 0;
+    for (Path segment : segments()) {
+      logged += Files.size(segment);
+    }
+    assertTrue(logged > 0);
+  }
+
+  @Test
+  public void testFailedFlushFailsWritersAndIsRequeued() throws Exception {
+    transactionWriteAheadLog.close();
+    transactionWriteAheadLog = openLog(true);
+    // segment vanishing under the flusher like a failing disk
+    ((FileChannel) ReflectionTestUtils.getField(transactionWriteAheadLog, "channel")).close();
+
+    try {
+      transactionWriteAheadLog.append(10D, currentMilli - 1000, null);
+      fail("flush of closed segment must fail writer");
+    } catch (WriteAheadLogException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    transactionWriteAheadLog.append(20D, currentMilli - 1000, null);
+    transactionWriteAheadLog.close();
+
+    List<String> replayed = replay();
+    assertEquals(2, replayed.size());
+    assertEquals("10.0@" + (currentMilli - 1000) + "/null", replayed.get(0));
+  }
+
+  @Test
+  public void testInterruptedWriterIsNotAnsweredAsDurable() throws IOException {
+    transactionWriteAheadLog.close();
+    transactionWriteAheadLog = openLog(true);
+
+    Thread.currentThread().interrupt();
+    try {
+      transactionWriteAheadLog.append(10D, currentMilli - 1000, null);
+      fail("interrupted wait must not be taken for durable");
+    } catch (WriteAheadLogException e) {
+      assertTrue(Thread.interrupted());
+    }
+  }
+
+  @Test
+  public void testTransactionsSurviveRestartButNotDelete() throws IOException {
+    TransactionService transactionService = transactionService(new PrimitiveTransactionStore());
+    assertEquals(TransactionStatus.ACCEPTED, transactionService.makeTransaction(
+        "{\"_timestampOffset\":-1000, \"amount\":\"12.50\"}".getBytes(StandardCharsets.UTF_8)));
+    transactionService.makeTransactions("[{\"_timestampOffset\":-2000, \"amount\":\"7.50\"}]");
+    transactionWriteAheadLog.close();
+
+    transactionWriteAheadLog = openLog(false);
+    PrimitiveTransactionStore restoredStore = new PrimitiveTransactionStore();
+    TransactionService restarted = transactionService(restoredStore);
+    assertEquals(2, restarted.restoreFromWriteAheadLog());
+    assertEquals("20.00", restoredStore.getStatistics().getSum());
+
+    restarted.deleteTransaction();
+    transactionWriteAheadLog.close();
+    transactionWriteAheadLog = openLog(false);
+    assertEquals(0, transactionService(new PrimitiveTransactionStore()).restoreFromWriteAheadLog());
+  }
+
+  @Test
+  public void testOnlyTransactionsKeptByStoreAreLogged() throws IOException {
+    // store discarding amounts of 13 like transactions which left its window meanwhile
+    PrimitiveTransactionStore store = new PrimitiveTransactionStore() {
+      @Override
+      public synchronized boolean addElement(double amount, long epochMilli) {
+        return amount != 13D && super.addElement(amount, epochMilli);
+      }
+
+      @Override
+      public synchronized int addElements(double[] amounts, long[] epochMillis, int length, boolean[] stored) {
+        int added = 0;
+        for (int i = 0; i < length; i++) {
+          stored[i] = addElement(amounts[i], epochMillis[i]);
+          added += stored[i] ? 1 : 0;
+        }
+        return added;
+      }
+    };
+    TransactionService transactionService = transactionService(store);
+    assertEquals(TransactionStatus.STALE, transactionService.makeTransaction(
+        "{\"_timestampOffset\":-1000, \"amount\":\"13\"}".getBytes(StandardCharsets.UTF_8)));
+    assertEquals(TransactionStatus.STALE, transactionService.makeTransaction(
+        "{\"timestamp\":\"" + Instant.ofEpochMilli(currentMilli - 1000) + "\", \"amount\":\"13\"}"));
+    assertEquals(2, transactionService.makeTransactions("[{\"_timestampOffset\":-1000, \"amount\":\"7\"},"
+        + " {\"_timestampOffset\":-1000, \"amount\":\"13\"}, {\"_timestampOffset\":-1000, \"amount\":\"9\"}]")
+        .getCreated());
+    transactionWriteAheadLog.close();
+
+    List<String> replayed = replay();
+    assertEquals(2, replayed.size());
+    assertTrue(replayed.get(0).startsWith("7.0@"));
+    assertTrue(replayed.get(1).startsWith("9.0@"));
+  }
+
+  @Test
+  public void testKeyedTransactionsOfOtherOwnerAreNotForwardedAgainOnReplay() throws IOException {
+    ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node-a", "node-b"), 16);
+    String localKey = keyOwnedBy(ring, "node-a");
+    String remoteKey = keyOwnedBy(ring, "node-b");
+    transactionWriteAheadLog.append(10D, currentMilli - 1000, localKey);
+    transactionWriteAheadLog.append(20D, currentMilli - 1000, remoteKey);
+    transactionWriteAheadLog.close();
+
+    transactionWriteAheadLog = openLog(false);
+    List<KeyedTransactionBatchResource> forwarded = new CopyOnWriteArrayList<>();
+    PartitionPeer peer = new PartitionPeer() {
+      @Override
+      public void forward(KeyedTransactionBatchResource batch) {
+        forwarded.add(batch);
+      }
+
+      @Override
+      public PartialStatisticsResource getKeyPartialStatistics(String key) {
+        return null;
+      }
+    };
+    StatisticsWindows statisticsWindows = StatisticsWindows.defaultWindows();
+    KeyedStatisticsStore keyedStatisticsStore = new KeyedStatisticsStore(statisticsWindows,
+        KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS, KeyedStatisticsStore.DEFAULT_MAX_KEYS);
+    KeyPartitionService keyPartitionService = new KeyPartitionService(keyedStatisticsStore,
+        new HeavyHitterTracker(statisticsWindows, KeyedStatisticsStore.DEFAULT_BUCKET_MILLIS,
+            HeavyHitterTracker.DEFAULT_CAPACITY, HeavyHitterTracker.DEFAULT_MAX_K),
+        new SimpleMeterRegistry(), "node-a", Collections.singletonMap("node-b", peer), 16, 4, 10, 64);
+    PrimitiveTransactionStore restoredStore = new PrimitiveTransactionStore();
+    try {
+      assertEquals(2, new TransactionServiceFixture(restoredStore)
+          .transactionWriteAheadLog(transactionWriteAheadLog)
+          .keyedStatisticsStore(keyedStatisticsStore)
+          .keyPartitionService(keyPartitionService)
+          .build()
+          .restoreFromWriteAheadLog());
+      keyPartitionService.flush();
+    } finally {
+      keyPartitionService.shutdown();
+    }
+
+    assertEquals("30.00", restoredStore.getStatistics().getSum());
+    assertTrue(forwarded.isEmpty());
+    assertEquals(1, keyedStatisticsStore.size());
+    assertEquals("10.00", keyedStatisticsStore.getStatistics(localKey, System.currentTimeMillis())
+        .getStatisticsResource().getSum());
+  }
+
+  private static String keyOwnedBy(ConsistentHashRing ring, String node) {
+    for (int i = 0; ; i++) {
+      if (ring.ownerOf("key-" + i).equals(node)) {
+        return "key-" + i;
+      }
+    }
+  }
+
+  private TransactionWriteAheadLog openLog(boolean awaitSync) throws IOException {
+    TransactionWriteAheadLog log = new TransactionWriteAheadLog(directory, StatisticsWindows.defaultWindows(), 5, awaitSync);
+    log.open();
+    return log;
+  }
+
+  private List<String> replay() throws IOException {
+    transactionWriteAheadLog = openLog(false);
+    List<String> replayed = new ArrayList<>();
+    transactionWriteAheadLog.replay((amount, epochMilli, key) -> replayed.add(amount + "@" + epochMilli + "/" + key));
+    return replayed;
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  private TransactionService transactionService(PrimitiveTransactionStore store) {
+    return new TransactionServiceFixture(store)
+        .transactionWriteAheadLog(transactionWriteAheadLog)
+        .build();
+  }
+}